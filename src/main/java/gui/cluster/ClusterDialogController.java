@@ -470,14 +470,14 @@ public class ClusterDialogController {
 		private ClusteredAxisData calculateAxis(final int similarity, 
 		                                        final int axisID) {
 			
-			final DistanceMatrix distMatrix = new DistanceMatrix(0);
 			final String axisType = (axisID == ROW_IDX) ? "row" : "column";
 
 			// progressBar label
 			publish("Calculating " + axisType + " distances...");
 
 			// calculating the distance matrix
-			distMatrix.setMatrix(processor.calcDistance(similarity, axisID));
+			final DistanceMatrix distMatrix = processor.calcDistance(similarity,
+					axisID);
 
 			if (isCancelled()) {
 				ClusteredAxisData cad = new ClusteredAxisData(axisID);
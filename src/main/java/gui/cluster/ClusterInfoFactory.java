@@ -14,7 +14,7 @@ import javax.swing.*;
 public class ClusterInfoFactory {
 
 	private static JPanel mainPanel;
-	private final static int KMEANS_INDEX = 3;
+	private final static int KMEANS_INDEX = -1;
 
 	static {
 
@@ -165,6 +165,15 @@ public class ClusterInfoFactory {
 			similarity = StringRes.clusterInfo_Compl_Similarity;
 			break;
 		case 3:
+			similarity = StringRes.clusterInfo_Weighted_Similarity;
+			break;
+		case 4:
+			similarity = StringRes.clusterInfo_Ward_Similarity;
+			break;
+		case 5:
+			similarity = StringRes.clusterInfo_Centroid_Similarity;
+			break;
+		case KMEANS_INDEX:
 			similarity = StringRes.clusterInfo_KMeans;
 			break;
 		default:
@@ -195,6 +204,15 @@ public class ClusterInfoFactory {
 		case 2:
 			type = StringRes.clusterInfo_Compl_Type;
 			break;
+		case 3:
+			type = StringRes.clusterInfo_Weighted_Type;
+			break;
+		case 4:
+			type = StringRes.clusterInfo_Ward_Type;
+			break;
+		case 5:
+			type = StringRes.clusterInfo_Centroid_Type;
+			break;
 		default:
 			type = "N/ A";
 			break;
@@ -223,6 +241,15 @@ public class ClusterInfoFactory {
 		case 2:
 			time = StringRes.clusterInfo_Compl_Time;
 			break;
+		case 3:
+			time = StringRes.clusterInfo_Weighted_Time;
+			break;
+		case 4:
+			time = StringRes.clusterInfo_Ward_Time;
+			break;
+		case 5:
+			time = StringRes.clusterInfo_Centroid_Time;
+			break;
 		default:
 			time = "N/ A";
 			break;
@@ -252,6 +279,15 @@ public class ClusterInfoFactory {
 			advantage = StringRes.clusterInfo_Compl_Adv;
 			break;
 		case 3:
+			advantage = StringRes.clusterInfo_Weighted_Adv;
+			break;
+		case 4:
+			advantage = StringRes.clusterInfo_Ward_Adv;
+			break;
+		case 5:
+			advantage = StringRes.clusterInfo_Centroid_Adv;
+			break;
+		case KMEANS_INDEX:
 			advantage = StringRes.clusterInfo_KMeans_Adv;
 			break;
 		default:
@@ -283,6 +319,15 @@ public class ClusterInfoFactory {
 			disadvantage = StringRes.clusterInfo_Compl_DisAdv;
 			break;
 		case 3:
+			disadvantage = StringRes.clusterInfo_Weighted_DisAdv;
+			break;
+		case 4:
+			disadvantage = StringRes.clusterInfo_Ward_DisAdv;
+			break;
+		case 5:
+			disadvantage = StringRes.clusterInfo_Centroid_DisAdv;
+			break;
+		case KMEANS_INDEX:
 			disadvantage = StringRes.clusterInfo_KMeans_DisAdv;
 			break;
 		default:
@@ -60,7 +60,8 @@ public class ClusterView {
 	private JSpinner colIterationsSettr;
 
 	private final String[] linkageMethods = { "Average Linkage",
-			"Single Linkage", "Complete Linkage" };
+			"Single Linkage", "Complete Linkage", "Weighted Linkage",
+			"Ward's Method", "Centroid Linkage" };
 
 	private int clusterType;
 
@@ -13,6 +13,7 @@ import model.export.RegionType;
 import model.export.labels.ExportPreviewLabels;
 import model.export.labels.LabelExportOption;
 import model.export.matrix.ExportPreviewMatrix;
+import model.export.matrix.MatrixExportOption;
 import model.export.trees.ExportPreviewTrees;
 import model.export.trees.TreeExportOption;
 import net.miginfocom.swing.MigLayout;
@@ -52,6 +53,7 @@ public class ExportDialog extends CustomDialog {
 	private JComboBox<FormatType> formatBox;
 	private JComboBox<PaperType> paperBox;
 	private JComboBox<String> orientBox;
+	private JComboBox<MatrixExportOption> cellsBox;
 	private ButtonGroup regionRadioBtns;
 	private ButtonGroup rowLabelBtns;
 	private ButtonGroup colLabelBtns;
@@ -129,6 +131,7 @@ public class ExportDialog extends CustomDialog {
 		JLabel matrix = GUIFactory.createLabel("<HTML><U>Matrix</U></HTML>",GUIFactory.FONTS);
 		JLabel region = GUIFactory.createLabel("Region:",GUIFactory.FONTS);
 		JLabel aspect = GUIFactory.createLabel("Tile Aspect:",GUIFactory.FONTS);
+		JLabel cells = GUIFactory.createLabel("Cells:",GUIFactory.FONTS);
 
 		JLabel labels = GUIFactory.createLabel("<HTML><U>Labels</U></HTML>",GUIFactory.FONTS);
 		JLabel rlabel = GUIFactory.createLabel("Row:",GUIFactory.FONTS);
@@ -176,6 +179,13 @@ public class ExportDialog extends CustomDialog {
 		orientBox.setSelectedItem(PageConstants.LANDSCAPE);
 		orientBox.setEnabled(selectedFormat.isDocumentFormat());
 
+		this.cellsBox = new JComboBox<MatrixExportOption>(
+			MatrixExportOption.values());
+		cellsBox.setSelectedItem(eh.getMatrixOption());
+		cellsBox.setEnabled(selectedFormat.isDocumentFormat());
+		cellsBox.setToolTipText("Shapes stay sharp at any zoom level, " +
+			"an image keeps large documents small");
+
 		previewPanel.add(previewComp, "grow, push");
 
 		optionsPanel.add(format, "label, aligny 0");
@@ -197,6 +207,9 @@ public class ExportDialog extends CustomDialog {
 		optionsPanel.add(aspect, "label, aligny 0");
 		addAspectRadioButtons(optionsPanel,selectedRegion,selectedFormat);
 
+		optionsPanel.add(cells, "label");
+		optionsPanel.add(cellsBox, "growx, span, wrap");
+
 		optionsPanel.add(spacer2,"wrap");
 
 		optionsPanel.add(labels,"align right, wrap");
@@ -563,6 +576,7 @@ public class ExportDialog extends CustomDialog {
 		formatBox.addItemListener(l);
 		paperBox.addItemListener(l);
 		orientBox.addItemListener(l);
+		cellsBox.addItemListener(l);
 		
 		Enumeration<AbstractButton> rab = regionRadioBtns.getElements();
 		while(rab.hasMoreElements()) {
@@ -606,6 +620,33 @@ public class ExportDialog extends CustomDialog {
 		return(paperBox);
 	}
 
+	/**
+	 * Add cells action to the cells dropdown.  Determines what region radio
+	 * buttons are valid when the way the matrix is drawn changes.
+	 * @param l The ActionListener
+	 */
+	public void addCellsListener(final ActionListener l) {
+		cellsBox.addActionListener(l);
+	}
+
+	/**
+	 * Passes the selected cells option on to the export handler, because only
+	 * documents which embed the matrix as an image are limited by its size.
+	 * Before the layout exists, the handler keeps the option it chose itself.
+	 */
+	private void applyMatrixOption() {
+		if(cellsBox != null) {
+			eh.setMatrixOption((MatrixExportOption) cellsBox.getSelectedItem());
+		}
+	}
+
+	/**
+	 * @return the cellsBox
+	 */
+	public JComboBox<MatrixExportOption> getCellsBox() {
+		return(cellsBox);
+	}
+
 	/**
 	 * @return the orientBox
 	 */
@@ -935,10 +976,14 @@ public class ExportDialog extends CustomDialog {
 		//Determine whether image and document formats are too big
 		RegionType minReg = RegionType.getMinDefault(selectionsExist);
 
+		//Documents can always draw the cells as shapes, which embeds no
+		//matrix image, so the cells option does not limit them here
 		boolean docTooBig = false;
 		eh.setFormat(FormatType.getDefaultDocumentFormat());
+		eh.setMatrixOption(MatrixExportOption.SHAPES);
 		eh.setCalculatedDimensions(minReg);
 		docTooBig = eh.isOversized(minReg);
+		applyMatrixOption();
 		boolean imageTooBig = false;
 		eh.setFormat(FormatType.getDefaultImageFormat());
 		eh.setCalculatedDimensions(minReg);
@@ -1022,9 +1067,21 @@ public class ExportDialog extends CustomDialog {
 		//Which specific format does not matter here - only whether it's a
 		//document format or image format because of the size limits imposed by
 		//BufferedImage.  Doc format uses BufferedImage for the matrix only.
-		//Image format uses it for the whole image.
+		//The image formats offered here are written in strips of rows.
 		eh.setFormat(isDocFormat ?
 			FormatType.getDefaultDocumentFormat() : FormatType.PNG);
+		applyMatrixOption();
+
+		//If not even the smallest region fits into the matrix image, switch
+		//the document to drawing the cells as shapes
+		RegionType minReg = RegionType.getMinDefault(selectionsExist);
+		eh.setCalculatedDimensions(minReg);
+		if(isDocFormat && cellsBox != null &&
+			!eh.getMatrixOption().isVector() && eh.isOversized(minReg)) {
+
+			cellsBox.setSelectedItem(MatrixExportOption.SHAPES);
+			applyMatrixOption();
+		}
 
 		//Check if region radio buttons need to be disabled/enabled based on
 		//selected region
@@ -1101,9 +1158,10 @@ public class ExportDialog extends CustomDialog {
 		//Which specific format does not matter here - only whether it's a
 		//document format or image format because of the size limits imposed by
 		//BufferedImage.  Doc format uses BufferedImage for the matrix only.
-		//Image format uses it for the whole image.
+		//The image formats offered here are written in strips of rows.
 		eh.setFormat(isDocFormat ?
 			FormatType.getDefaultDocumentFormat() : FormatType.PNG);
+		applyMatrixOption();
 
 		Enumeration<AbstractButton> aBtns = aspectRadioBtns.getElements();
 		boolean changeSelected = false;
@@ -1262,9 +1320,10 @@ public class ExportDialog extends CustomDialog {
 		//Which specific format does not matter here - only whether it's a
 		//document format or image format because of the size limits imposed by
 		//BufferedImage.  Doc format uses BufferedImage for the matrix only.
-		//Image format uses it for the whole image.
+		//The image formats offered here are written in strips of rows.
 		eh.setFormat(isDocFormat ?
 			FormatType.getDefaultDocumentFormat() : FormatType.PNG);
+		applyMatrixOption();
 
 		//Check if row label buttons need to be disabled/enabled based on
 		//selected region
@@ -1346,9 +1405,10 @@ public class ExportDialog extends CustomDialog {
 		//Which specific format does not matter here - only whether it's a
 		//document format or image format because of the size limits imposed by
 		//BufferedImage.  Doc format uses BufferedImage for the matrix only.
-		//Image format uses it for the whole image.
+		//The image formats offered here are written in strips of rows.
 		eh.setFormat(isDocFormat ?
 			FormatType.getDefaultDocumentFormat() : FormatType.PNG);
+		applyMatrixOption();
 
 		//Check if col label buttons need to be disabled/enabled based on
 		//selected region
@@ -1546,6 +1606,8 @@ public class ExportDialog extends CustomDialog {
 		exportOptions.setFormatType((FormatType) formatBox.getSelectedItem());
 		exportOptions.setPaperType((PaperType) paperBox.getSelectedItem());
 		exportOptions.setOrientation((String) orientBox.getSelectedItem());
+		exportOptions.setMatrixOption(
+			(MatrixExportOption) cellsBox.getSelectedItem());
 
 		/* Aspect ratio */
 		AspectType aspectType = AspectType.getDefault();
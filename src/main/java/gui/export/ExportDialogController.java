@@ -98,6 +98,7 @@ public class ExportDialogController {
 
 		exportDialog.addExportListener(new ExportListener());
 		exportDialog.addFormatListener(new FormatListener());
+		exportDialog.addCellsListener(new CellsListener());
 		exportDialog.addRegionListener(new RegionListener());
 		exportDialog.addAspectListener(new AspectListener());
 		exportDialog.addItemStateListener(new RadioItemStateListener());
@@ -303,10 +304,13 @@ public class ExportDialogController {
 			exportDialog.getPaperBox().setEnabled(selFormat.isDocumentFormat());
 			exportDialog.getOrientBox().setEnabled(
 				selFormat.isDocumentFormat());
+			exportDialog.getCellsBox().setEnabled(
+				selFormat.isDocumentFormat());
 
 			ExportHandler eh = new ExportHandler(tvFrame.getDendroView(),
 				interactiveXmap,interactiveYmap,tvFrame.getColSelection(),
 				tvFrame.getRowSelection());
+			eh.setMatrixOption(exportOptions.getMatrixOption());
 
 			List<RegionType> tooBigs = new ArrayList<RegionType>();
 			tooBigs = eh.getOversizedRegions(true,selFormat.isDocumentFormat());
@@ -316,6 +320,21 @@ public class ExportDialogController {
 		}
 	}
 
+	/**
+	 * Documents which draw the cells as shapes are not limited by the size of
+	 * the matrix image, so the valid regions change with the cells option.
+	 */
+	private class CellsListener implements ActionListener {
+
+		@Override
+		public void actionPerformed(ActionEvent arg0) {
+
+			FormatType selFormat = exportOptions.getFormatType();
+
+			exportDialog.updateRegionRadioBtns(selFormat.isDocumentFormat());
+		}
+	}
+
 	private class RegionListener implements ActionListener {
 
 		@Override
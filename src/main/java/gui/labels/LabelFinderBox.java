@@ -35,9 +35,8 @@ import java.lang.reflect.Field;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /** This class allows users to look for row or column elements by choosing them
  * in a drop down menu. The menu is populated with labels from the loaded data
@@ -53,6 +52,11 @@ public abstract class LabelFinderBox {
 	private LabelSummary labelSummary;
 
 	private String[][] searchDataArray;
+	private LabelSearchIndex searchIndex;
+
+	/* Autocompletion index of each label type in the dropdown, null for
+	 * excluded label types */
+	private LabelPrefixIndex[] prefixIndexes = new LabelPrefixIndex[0];
 	private int primarySearchIndex;
 	private int maxSearchIndex;
 	private boolean[] searchExclusions;
@@ -260,6 +264,7 @@ public abstract class LabelFinderBox {
 		searchTermBox.setFocusable(true);
 		searchTermBox.setBorder(null);
 		searchTermBox.setBackground(GUIFactory.DARK_BG);
+		prefixIndexes = new LabelPrefixIndex[0];
 	}
 
 	private String[] setupData() {
@@ -269,6 +274,7 @@ public abstract class LabelFinderBox {
 		defaultText = "Search " + type + "s...";
 
 		searchDataArray = copy2DStringArray(labelArray);
+		searchIndex = new LabelSearchIndex(searchDataArray);
 		String[] searchDataLabels = {""};
 		updateSearchIndexes();
 
@@ -300,6 +306,12 @@ public abstract class LabelFinderBox {
 
 		int startIndex = 1;
 
+		//Label types whose labels did not change (e.g. when label types were
+		//added) keep their autocompletion index
+		final LabelPrefixIndex[] oldPrefixIndexes = prefixIndexes;
+		final LabelPrefixIndex[] newPrefixIndexes =
+			new LabelPrefixIndex[maxSearchIndex + 1];
+
 		for(int i = 0; i <= maxSearchIndex; i++) {
 			if(searchExclusions[i]) {
 				continue;
@@ -309,12 +321,22 @@ public abstract class LabelFinderBox {
 
 			Arrays.sort(searchDataLabels, Collator.getInstance());
 
+			if(i < oldPrefixIndexes.length && oldPrefixIndexes[i] != null &&
+				oldPrefixIndexes[i].isFor(searchDataLabels)) {
+				newPrefixIndexes[i] = oldPrefixIndexes[i];
+			}
+			else {
+				newPrefixIndexes[i] = new LabelPrefixIndex(searchDataLabels);
+			}
+
 			System.arraycopy(searchDataLabels, 0, labels, startIndex,
 				searchDataLabels.length);
 
 			startIndex += searchDataLabels.length;
 		}
 
+		prefixIndexes = newPrefixIndexes;
+
 		//Returns an array of labels for use by the combobox's dropdown list
 		return(labels);
 	}
@@ -561,43 +583,55 @@ public abstract class LabelFinderBox {
 			wildcardsub = wildcardsub + "*";
 		}
 
-		for(int i = 0; i < searchDataArray.length; i++) {
-			String label = searchDataArray[i][primarySearchIndex];
-			if(wildCardMatch(label, sub)) {
-				primaryIndexList.add(i);
-			}
-			if(wildCardMatch(label, wildcardsub)) {
-				primarySubstrList.add(i);
+		//Both patterns are compiled once for all labels
+		final LabelSearchIndex.Query subQuery = LabelSearchIndex.compile(sub);
+		final LabelSearchIndex.Query wildcardQuery =
+			LabelSearchIndex.compile(wildcardsub);
+
+		//Only returns a perfect match in the visible label type if a match
+		//exists.  If not, it steps through: substring matches in the visible
+		//label type, perfect matches to labels that are not visible, and
+		//substring matches to labels that are not visible
+		addAll(primaryIndexList,searchIndex.find(subQuery,primarySearchIndex));
+		if(primaryIndexList.size() > 0) {
+			return(primaryIndexList);
+		}
+
+		addAll(primarySubstrList,
+			searchIndex.find(wildcardQuery,primarySearchIndex));
+		if(primarySubstrList.size() > 0) {
+			return(primarySubstrList);
+		}
+
+		//This searches secondary labels (those not visible)
+		final BitSet[] subMatches = new BitSet[maxSearchIndex + 1];
+		final BitSet[] wildcardMatches = new BitSet[maxSearchIndex + 1];
+		for(int j = 0; j <= maxSearchIndex; j++) {
+			if(j == primarySearchIndex || searchExclusions[j]) {
+				continue;
 			}
+			subMatches[j] = searchIndex.find(subQuery,j);
+			wildcardMatches[j] = searchIndex.find(wildcardQuery,j);
+		}
 
-			//This searches secondary labels (those not visible)
+		//The first secondary label type which matches decides the list
+		for(int i = 0; i < searchDataArray.length; i++) {
 			for(int j = 0; j <= maxSearchIndex; j++) {
-				if(j == primarySearchIndex || searchExclusions[j]) {
+				if(subMatches[j] == null) {
 					continue;
 				}
-				label = searchDataArray[i][j];
-				if(wildCardMatch(label, sub)) {
+				if(subMatches[j].get(i)) {
 					secondaryIndexList.add(i);
 					break;
 				}
-				if(wildCardMatch(label, wildcardsub)) {
+				if(wildcardMatches[j].get(i)) {
 					secondarySubstrList.add(i);
 					break;
 				}
 			}
 		}
 
-		//Only returns a perfect match in the visible label type if a match
-		//exists.  If not, it steps through: substring matches in the visible
-		//label type, perfect matches to labels that are not visible, and
-		//substring matches to labels that are not visible
-		if(primaryIndexList.size() > 0) {
-			return(primaryIndexList);
-		}
-		else if(primarySubstrList.size() > 0) {
-			return(primarySubstrList);
-		}
-		else if(secondaryIndexList.size() > 0) {
+		if(secondaryIndexList.size() > 0) {
 			return(secondaryIndexList);
 		}
 		else {
@@ -605,6 +639,17 @@ public abstract class LabelFinderBox {
 		}
 	}
 
+	/** Adds the indexes of all set bits to the list, in ascending order.
+	 * 
+	 * @param list
+	 * @param indexes */
+	private static void addAll(final List<Integer> list, final BitSet indexes) {
+		for(int i = indexes.nextSetBit(0); i >= 0;
+			i = indexes.nextSetBit(i + 1)) {
+			list.add(i);
+		}
+	}
+
 	/** This method retrieves the search term that was entered into the finder
 	 * box by the user.
 	 * 
@@ -629,21 +674,7 @@ public abstract class LabelFinderBox {
 
 		if(text == null || pattern == null) return false;
 
-		// Escape all metacharacters except our supported wildcards
-		pattern = pattern.replaceAll("([^A-Za-z0-9 \\?\\*])", "\\\\$1");
-		// Convert our wildcards to regular expression syntax
-		pattern = pattern.replaceAll("\\?", ".");
-		pattern = pattern.replaceAll("\\*", ".*");
-
-		//This code allows the pattern match to be case insensitive.
-		Pattern p = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
-		Matcher m = p.matcher(text);
-		boolean isMatch = false;
-		if(m.find()) {
-			isMatch = true;
-		}
-
-		return isMatch;
+		return LabelSearchIndex.compile(pattern).matches(text);
 	}
 
 	abstract public void scrollToIndex(int i);
@@ -1282,13 +1313,12 @@ public abstract class LabelFinderBox {
 				//Capture the actual typed text
 				lcprefix = lcprefix.substring(0, editor.getSelectionStart());
 
-				//Search the dropdown list for a matching item
-				for(int i = 1; i < searchTermBox.getItemCount(); i++) {
-					String item =
-						(String) searchTermBox.getModel().getElementAt(i);
-
-					if(item != null &&
-						item.toLowerCase().startsWith(lcprefix)) {
+				//Look up the first matching item in the dropdown list
+				final int[] matches = getDropDownMatches(lcprefix, 1);
+				for(final int i : matches) {
+					if(i < searchTermBox.getItemCount()) {
+						String item =
+							(String) searchTermBox.getModel().getElementAt(i);
 
 						//Update all the necessary values used to correct
 						//the editor later.  This should update the editor's
@@ -1311,6 +1341,34 @@ public abstract class LabelFinderBox {
 		}
 	}
 
+	/** Finds the first items in the dropdown list which start with a prefix,
+	 * ignoring case. The default text item is skipped.
+	 * 
+	 * @param lcprefix - A lowercased prefix
+	 * @param max - The most items to return
+	 * @return The dropdown indexes of the matching items, ascending */
+	public int[] getDropDownMatches(final String lcprefix, final int max) {
+		final int[] matches = new int[Math.max(0, max)];
+		int n = 0;
+
+		//Each label type occupies one block of the dropdown list, after the
+		//default text
+		int offset = 1;
+		for(int i = 0; i < prefixIndexes.length && n < matches.length; i++) {
+			if(prefixIndexes[i] == null) {
+				continue;
+			}
+
+			for(final int pos : prefixIndexes[i].getCompletions(lcprefix,
+				matches.length - n)) {
+				matches[n++] = offset + pos;
+			}
+			offset += prefixIndexes[i].size();
+		}
+
+		return(Arrays.copyOf(matches, n));
+	}
+
 	/** Test method for wild card search.
 	 *
 	 * @param args */
@@ -0,0 +1,311 @@
+package gui.labels;
+
+import model.data.labels.LabelInfo;
+import model.data.labels.LabelSummary;
+import model.data.trees.TreeSelectionI;
+import util.LogBuffer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Caches the summary strings of all labels of an axis and their widths, so
+ * that the longest label does not have to be found by measuring every label
+ * again whenever the font or the zoom level changes.
+ *
+ * Widths are measured once per font face and style at a reference size and
+ * scaled linearly to the size in use. Since scaled widths are only estimates
+ * (hinting rounds advances at small sizes), the labels whose estimates are
+ * closest to the longest one are measured exactly. Measuring the labels for a
+ * new face or style is done in the background; until it is done, the labels
+ * with the most characters are used as candidates.
+ */
+class LabelMetricsIndex {
+
+	/* Widths are measured at this size and scaled to the actual size */
+	private static final float REFERENCE_SIZE = 100f;
+
+	private static final int MAX_CACHED_FONTS = 4;
+
+	/* Most labels measured exactly to find the longest one */
+	private static final int MAX_CANDIDATES = 64;
+
+	/* Relative tolerance of scaled widths */
+	private static final double TOLERANCE = 0.02;
+
+	private static final FontRenderContext RENDER_CONTEXT =
+		new FontRenderContext(null,true,true);
+
+	private final LabelInfo labelInfo;
+	private final int[] included;
+	private final String[] summaries;
+
+	/* Label indices, the ones with the most characters first */
+	private final int[] byLength;
+
+	private final Map<String,FontWidths> fontWidths;
+	private final Set<String> pendingFonts = new HashSet<String>();
+	private final Runnable onWidthsMeasured;
+
+	/**
+	 * Widths of all labels at the reference size of a font.
+	 */
+	private static class FontWidths {
+
+		private final float[] widths;
+
+		/* Label indices, the widest first */
+		private final int[] byWidth;
+
+		private FontWidths(final float[] widths) {
+			this.widths = widths;
+			this.byWidth = sortDescending(widths);
+		}
+	}
+
+	/**
+	 * Creates the summaries of all labels.
+	 * @param labelInfo - The labels of the axis
+	 * @param labelSummary - Defines which label types are shown
+	 * @param numLabels - The amount of labels
+	 * @param onWidthsMeasured - Run on the EDT when the widths for a new font
+	 * are available
+	 */
+	LabelMetricsIndex(final LabelInfo labelInfo,
+		final LabelSummary labelSummary,final int numLabels,
+		final Runnable onWidthsMeasured) {
+
+		this.labelInfo = labelInfo;
+		this.included = labelSummary.getIncluded().clone();
+		this.onWidthsMeasured = onWidthsMeasured;
+		this.summaries = new String[Math.max(0,numLabels)];
+
+		final float[] lengths = new float[summaries.length];
+		for(int j = 0;j < summaries.length;j++) {
+			String out = labelSummary.getSummary(labelInfo,j);
+			if(out == null) {
+				out = "No Label";
+			}
+			summaries[j] = out;
+			lengths[j] = out.length();
+		}
+		this.byLength = sortDescending(lengths);
+
+		this.fontWidths = new LinkedHashMap<String,FontWidths>(16,0.75f,true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<String,FontWidths> eldest) {
+
+				return(size() > MAX_CACHED_FONTS);
+			}
+		};
+	}
+
+	/**
+	 * @return Whether this index was built for the label source, amount of
+	 * labels and selected label types. Changes of the labels themselves are
+	 * reported by the label source, the LabelView discards the index then.
+	 */
+	boolean isFor(final LabelInfo otherInfo,final LabelSummary labelSummary,
+		final int numLabels) {
+
+		return(otherInfo == labelInfo && numLabels == summaries.length &&
+			Arrays.equals(included,labelSummary.getIncluded()));
+	}
+
+	int getNumLabels() {
+		return(summaries.length);
+	}
+
+	/**
+	 * @param idx - A label index
+	 * @return The summary of the label, "No Label" if it has none
+	 */
+	String getSummary(final int idx) {
+		return(summaries[idx]);
+	}
+
+	/**
+	 * Finds the longest label when drawn with the font of the metrics. Widths
+	 * for a new face or style are measured in the background.
+	 * @param metrics - The metrics of the font
+	 * @return The index of the longest label or -1 if there are no labels
+	 */
+	int getLongestIndex(final FontMetrics metrics) {
+		return(getLongestIndex(metrics,0,summaries.length - 1,null,false));
+	}
+
+	/**
+	 * Finds the longest label in a range of labels.
+	 * @param metrics - The metrics of the font
+	 * @param start - The first label index
+	 * @param end - The last label index
+	 * @param selection - If not null, only selected labels are considered
+	 * @param wait - Whether widths for a new font are measured right away
+	 * instead of in the background
+	 * @return The index of the longest label or -1 if there are none
+	 */
+	int getLongestIndex(final FontMetrics metrics,final int start,
+		final int end,final TreeSelectionI selection,final boolean wait) {
+
+		final int first = Math.max(0,start);
+		final int last = Math.min(summaries.length - 1,end);
+		if(first > last) {
+			return(-1);
+		}
+
+		final Font font = metrics.getFont();
+		final FontWidths fw = getFontWidths(font,wait);
+		final double scale = font.getSize2D() / REFERENCE_SIZE;
+		final int[] order = (fw == null) ? byLength : fw.byWidth;
+		final boolean fullRange = (first == 0 &&
+			last == summaries.length - 1 && selection == null);
+
+		//The widest estimate in the range
+		double maxEstimate = -1;
+		if(fw != null) {
+			if(fullRange) {
+				maxEstimate = fw.widths[order[0]] * scale;
+			} else {
+				for(int j = first;j <= last;j++) {
+					if(isIncluded(j,selection)) {
+						maxEstimate = Math.max(maxEstimate,
+							fw.widths[j] * scale);
+					}
+				}
+			}
+		}
+
+		int longestIdx = -1;
+		int maxWidth = -1;
+		int candidates = 0;
+		for(int k = 0;k < order.length && candidates < MAX_CANDIDATES;k++) {
+			final int j = order[k];
+			if(j < first || j > last || !isIncluded(j,selection)) {
+				continue;
+			}
+
+			//Labels are ordered by their estimate, so the rest is shorter
+			if(fw != null &&
+				fw.widths[j] * scale < maxEstimate * (1 - TOLERANCE) - 1) {
+				break;
+			}
+
+			final int width = metrics.stringWidth(summaries[j]);
+			if(width > maxWidth) {
+				maxWidth = width;
+				longestIdx = j;
+			}
+			candidates++;
+		}
+
+		return(longestIdx);
+	}
+
+	private static boolean isIncluded(final int idx,
+		final TreeSelectionI selection) {
+
+		return(selection == null || selection.isIndexSelected(idx));
+	}
+
+	/**
+	 * @return The widths for the face and style of the font, or null if they
+	 * are being measured in the background
+	 */
+	private FontWidths getFontWidths(final Font font,final boolean wait) {
+
+		final String key = font.getFontName() + "/" + font.getStyle();
+		synchronized(fontWidths) {
+			final FontWidths fw = fontWidths.get(key);
+			if(fw != null) {
+				return(fw);
+			}
+		}
+
+		if(wait) {
+			final FontWidths fw = new FontWidths(measure(font));
+			synchronized(fontWidths) {
+				fontWidths.put(key,fw);
+			}
+			return(fw);
+		}
+
+		if(pendingFonts.add(key)) {
+			measureInBackground(font,key);
+		}
+
+		return(null);
+	}
+
+	private void measureInBackground(final Font font,final String key) {
+
+		new SwingWorker<float[],Void>() {
+
+			@Override
+			protected float[] doInBackground() throws Exception {
+				return(measure(font));
+			}
+
+			@Override
+			protected void done() {
+				pendingFonts.remove(key);
+				try {
+					final FontWidths fw = new FontWidths(get());
+					synchronized(fontWidths) {
+						fontWidths.put(key,fw);
+					}
+					onWidthsMeasured.run();
+				}
+				catch(InterruptedException | ExecutionException e) {
+					LogBuffer.logException(e);
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Measures all labels at the reference size of the font.
+	 */
+	private float[] measure(final Font font) {
+
+		final Font refFont = font.deriveFont(REFERENCE_SIZE);
+		final float[] widths = new float[summaries.length];
+		for(int j = 0;j < summaries.length;j++) {
+			widths[j] = (float) refFont.getStringBounds(summaries[j],
+				RENDER_CONTEXT).getWidth();
+		}
+
+		return(widths);
+	}
+
+	/**
+	 * @return The indices of the values, the largest value first
+	 */
+	private static int[] sortDescending(final float[] values) {
+
+		//Non-negative floats sort like their bits
+		final long[] keys = new long[values.length];
+		for(int j = 0;j < values.length;j++) {
+			final int bits = Float.floatToIntBits(Math.max(0,values[j]));
+			keys[j] = ((long) (Integer.MAX_VALUE - bits) << 32) | j;
+		}
+		Arrays.sort(keys);
+
+		final int[] order = new int[keys.length];
+		for(int j = 0;j < keys.length;j++) {
+			order[j] = (int) keys[j];
+		}
+
+		return(order);
+	}
+}
@@ -0,0 +1,170 @@
+package gui.labels;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the labels of one label type which start with a prefix, ignoring case.
+ * The labels keep the order in which they appear in the search box dropdown.
+ * Their lowercased forms are sorted once, so all labels with a prefix form one
+ * range which is found by binary search. A tree of range minimums over that
+ * range returns the matching labels in dropdown order, the first ones first,
+ * without looking at the other matches.
+ */
+class LabelPrefixIndex {
+
+	/* The labels in dropdown order */
+	private final String[] labels;
+
+	/* Lowercased labels, sorted */
+	private final String[] keys;
+
+	/* Smallest dropdown position in each subtree, the leaves are in the order
+	 * of keys */
+	private final int[] minPositions;
+	private final int leaves;
+
+	/**
+	 * @param labels - The labels of a label type in dropdown order
+	 */
+	LabelPrefixIndex(final String[] labels) {
+
+		this.labels = labels;
+
+		final Integer[] order = new Integer[labels.length];
+		final String[] lower = new String[labels.length];
+		int numKeys = 0;
+		for(int i = 0;i < labels.length;i++) {
+			if(labels[i] != null) {
+				lower[i] = labels[i].toLowerCase();
+				order[numKeys++] = i;
+			}
+		}
+		Arrays.sort(order,0,numKeys,new Comparator<Integer>() {
+
+			@Override
+			public int compare(final Integer a,final Integer b) {
+				return(lower[a].compareTo(lower[b]));
+			}
+		});
+		this.keys = new String[numKeys];
+		for(int k = 0;k < numKeys;k++) {
+			keys[k] = lower[order[k]];
+		}
+
+		int size = 1;
+		while(size < numKeys) {
+			size <<= 1;
+		}
+		this.leaves = size;
+		this.minPositions = new int[2 * size];
+		Arrays.fill(minPositions,Integer.MAX_VALUE);
+		for(int k = 0;k < numKeys;k++) {
+			minPositions[size + k] = order[k];
+		}
+		for(int node = size - 1;node > 0;node--) {
+			minPositions[node] = Math.min(minPositions[2 * node],
+				minPositions[2 * node + 1]);
+		}
+	}
+
+	/**
+	 * @param otherLabels - Labels in dropdown order
+	 * @return Whether this index was built for the same labels
+	 */
+	boolean isFor(final String[] otherLabels) {
+		return(Arrays.equals(labels,otherLabels));
+	}
+
+	int size() {
+		return(labels.length);
+	}
+
+	/**
+	 * Finds the first labels in dropdown order which start with a prefix.
+	 * @param lcprefix - A lowercased prefix
+	 * @param max - The most labels to return
+	 * @return The dropdown positions of the matching labels, ascending
+	 */
+	int[] getCompletions(final String lcprefix,final int max) {
+
+		final int start = lowerBound(lcprefix);
+		final int end = prefixEnd(lcprefix,start);
+		if(start >= end || max <= 0) {
+			return(new int[0]);
+		}
+
+		//The subtrees which exactly cover the range, smallest minimum first
+		final PriorityQueue<Integer> queue =
+			new PriorityQueue<Integer>(16,new Comparator<Integer>() {
+
+				@Override
+				public int compare(final Integer a,final Integer b) {
+					return(Integer.compare(minPositions[a],minPositions[b]));
+				}
+			});
+		for(int lo = start + leaves, hi = end + leaves;lo < hi;
+			lo >>= 1, hi >>= 1) {
+			if((lo & 1) == 1) {
+				queue.add(lo++);
+			}
+			if((hi & 1) == 1) {
+				queue.add(--hi);
+			}
+		}
+
+		final int[] found = new int[Math.min(max,end - start)];
+		int n = 0;
+		while(n < found.length) {
+			final int node = queue.poll();
+			if(node >= leaves) {
+				found[n++] = minPositions[node];
+			} else {
+				queue.add(2 * node);
+				queue.add(2 * node + 1);
+			}
+		}
+
+		return(found);
+	}
+
+	/**
+	 * @return The first key which is not smaller than the prefix
+	 */
+	private int lowerBound(final String lcprefix) {
+
+		int lo = 0;
+		int hi = keys.length;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(keys[mid].compareTo(lcprefix) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+
+		return(lo);
+	}
+
+	/**
+	 * @return The first key after start which does not start with the prefix.
+	 * Keys which do start with it all follow start.
+	 */
+	private int prefixEnd(final String lcprefix,final int start) {
+
+		int lo = start;
+		int hi = keys.length;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(keys[mid].startsWith(lcprefix)) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+
+		return(lo);
+	}
+}
@@ -0,0 +1,329 @@
+package gui.labels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Answers wildcard searches over the labels of an axis. A search pattern is
+ * compiled once per query instead of once per label. Each label type gets a
+ * trigram index of its lowercased labels when it is first searched, so only
+ * labels which contain every trigram of the longest literal part of a pattern
+ * are checked.
+ *
+ * Patterns behave like wildCardMatch() in LabelFinderBox: '*' matches any
+ * characters, '?' matches one character, matching is case insensitive (ASCII
+ * only) and may start anywhere in a label.
+ */
+class LabelSearchIndex {
+
+	private static final int GRAM = 3;
+
+	/* [label type][label index] */
+	private final String[][] labels;
+	private final String[][] lowerLabels;
+
+	/* Trigram posting lists of each label type, built when first needed */
+	private final List<Map<Long,int[]>> grams;
+
+	/**
+	 * A compiled search pattern.
+	 */
+	static class Query {
+
+		private final Pattern regex;
+
+		/* Lowercased literal parts between '*' if there is no '?', else null */
+		private final String[] segments;
+
+		/* The longest part without any wildcard, lowercased */
+		private final String longestRun;
+
+		private Query(final String pattern) {
+
+			final StringBuilder regexBuilder = new StringBuilder();
+			final StringBuilder run = new StringBuilder();
+			String longest = "";
+			for(int i = 0;i <= pattern.length();i++) {
+				final char c = (i < pattern.length()) ? pattern.charAt(i) : '*';
+				if(c == '*' || c == '?') {
+					if(run.length() > 0) {
+						regexBuilder.append(Pattern.quote(run.toString()));
+						if(run.length() > longest.length()) {
+							longest = run.toString();
+						}
+						run.setLength(0);
+					}
+					if(i < pattern.length()) {
+						regexBuilder.append((c == '*') ? ".*" : ".");
+					}
+				} else {
+					run.append(c);
+				}
+			}
+
+			this.regex = Pattern.compile(regexBuilder.toString(),
+				Pattern.CASE_INSENSITIVE);
+			this.longestRun = toLowerCase(longest);
+
+			if(pattern.indexOf('?') < 0) {
+				final List<String> parts = new ArrayList<String>();
+				for(final String part : toLowerCase(pattern).split("\\*")) {
+					if(!part.isEmpty()) {
+						parts.add(part);
+					}
+				}
+				this.segments = parts.toArray(new String[parts.size()]);
+			} else {
+				this.segments = null;
+			}
+		}
+
+		/**
+		 * @param text - A label
+		 * @return Whether the pattern is found in the label
+		 */
+		boolean matches(final String text) {
+
+			if(text == null) {
+				return(false);
+			}
+
+			return(matches(text,toLowerCase(text)));
+		}
+
+		private boolean matches(final String text,final String lowerText) {
+
+			if(segments == null ||
+				(segments.length > 1 && hasLineTerminator(text))) {
+				return(regex.matcher(text).find());
+			}
+
+			//The literal parts have to appear in order
+			int from = 0;
+			for(final String segment : segments) {
+				final int found = lowerText.indexOf(segment,from);
+				if(found < 0) {
+					return(false);
+				}
+				from = found + segment.length();
+			}
+
+			return(true);
+		}
+	}
+
+	/**
+	 * @param searchData - The labels as [label index][label type]
+	 */
+	LabelSearchIndex(final String[][] searchData) {
+
+		final int numTypes = (searchData.length == 0 || searchData[0] == null)
+			? 0 : searchData[0].length;
+
+		this.labels = new String[numTypes][searchData.length];
+		this.lowerLabels = new String[numTypes][searchData.length];
+		this.grams = new ArrayList<Map<Long,int[]>>(numTypes);
+
+		for(int type = 0;type < numTypes;type++) {
+			for(int i = 0;i < searchData.length;i++) {
+				final String label = searchData[i][type];
+				labels[type][i] = label;
+				lowerLabels[type][i] = (label == null) ? null :
+					toLowerCase(label);
+			}
+			grams.add(null);
+		}
+	}
+
+	/**
+	 * @param pattern - A search pattern with the wildcards '*' and '?'
+	 * @return The compiled pattern
+	 */
+	static Query compile(final String pattern) {
+		return(new Query(pattern));
+	}
+
+	/**
+	 * Finds all labels of a label type which match the query.
+	 * @param query - A compiled pattern
+	 * @param type - The label type to search
+	 * @return The indices of the matching labels
+	 */
+	BitSet find(final Query query,final int type) {
+
+		final BitSet found = new BitSet();
+		if(type < 0 || type >= labels.length) {
+			return(found);
+		}
+
+		final String[] typeLabels = labels[type];
+		final String[] typeLower = lowerLabels[type];
+
+		final int[] candidates = (query.longestRun.length() >= GRAM) ?
+			getCandidates(type,query.longestRun) : null;
+
+		if(candidates == null) {
+			for(int i = 0;i < typeLabels.length;i++) {
+				if(typeLabels[i] != null &&
+					query.matches(typeLabels[i],typeLower[i])) {
+					found.set(i);
+				}
+			}
+		} else {
+			for(final int i : candidates) {
+				if(query.matches(typeLabels[i],typeLower[i])) {
+					found.set(i);
+				}
+			}
+		}
+
+		return(found);
+	}
+
+	/**
+	 * @return The labels which contain all trigrams of the text
+	 */
+	private int[] getCandidates(final int type,final String lowerText) {
+
+		final Map<Long,int[]> typeGrams = getGrams(type);
+
+		//Intersect the shortest posting lists first
+		final List<int[]> postings = new ArrayList<int[]>();
+		for(int i = 0;i + GRAM <= lowerText.length();i++) {
+			final int[] posting = typeGrams.get(getGramKey(lowerText,i));
+			if(posting == null) {
+				return(new int[0]);
+			}
+			postings.add(posting);
+		}
+		Collections.sort(postings,new Comparator<int[]>() {
+
+			@Override
+			public int compare(final int[] a,final int[] b) {
+				return(Integer.compare(a.length,b.length));
+			}
+		});
+
+		int[] result = postings.get(0);
+		for(int p = 1;p < postings.size() && result.length > 0;p++) {
+			result = intersect(result,postings.get(p));
+		}
+
+		return(result);
+	}
+
+	private synchronized Map<Long,int[]> getGrams(final int type) {
+
+		Map<Long,int[]> typeGrams = grams.get(type);
+		if(typeGrams != null) {
+			return(typeGrams);
+		}
+
+		final Map<Long,int[]> building = new HashMap<Long,int[]>();
+		final String[] typeLower = lowerLabels[type];
+		for(int i = 0;i < typeLower.length;i++) {
+			final String label = typeLower[i];
+			if(label == null) {
+				continue;
+			}
+			for(int c = 0;c + GRAM <= label.length();c++) {
+				final Long key = getGramKey(label,c);
+				int[] posting = building.get(key);
+				//posting[0] holds the amount of entries
+				if(posting == null) {
+					posting = new int[4];
+					building.put(key,posting);
+				} else if(posting[posting[0]] == i) {
+					continue;
+				} else if(posting[0] + 1 == posting.length) {
+					posting = Arrays.copyOf(posting,posting.length * 2);
+					building.put(key,posting);
+				}
+				posting[++posting[0]] = i;
+			}
+		}
+
+		typeGrams = new HashMap<Long,int[]>(building.size() * 2);
+		for(final Map.Entry<Long,int[]> entry : building.entrySet()) {
+			final int[] posting = entry.getValue();
+			typeGrams.put(entry.getKey(),
+				Arrays.copyOfRange(posting,1,posting[0] + 1));
+		}
+		grams.set(type,typeGrams);
+
+		return(typeGrams);
+	}
+
+	private static long getGramKey(final String text,final int start) {
+
+		return(((long) text.charAt(start) << 32) |
+			((long) text.charAt(start + 1) << 16) | text.charAt(start + 2));
+	}
+
+	/**
+	 * @return The values contained in both sorted arrays
+	 */
+	private static int[] intersect(final int[] a,final int[] b) {
+
+		final int[] result = new int[Math.min(a.length,b.length)];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while(i < a.length && j < b.length) {
+			if(a[i] < b[j]) {
+				i++;
+			} else if(a[i] > b[j]) {
+				j++;
+			} else {
+				result[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+
+		return(Arrays.copyOf(result,n));
+	}
+
+	/**
+	 * Lowercases ASCII letters only, like Pattern.CASE_INSENSITIVE does.
+	 */
+	private static String toLowerCase(final String text) {
+
+		char[] chars = null;
+		for(int i = 0;i < text.length();i++) {
+			final char c = text.charAt(i);
+			if(c >= 'A' && c <= 'Z') {
+				if(chars == null) {
+					chars = text.toCharArray();
+				}
+				chars[i] = (char) (c + ('a' - 'A'));
+			}
+		}
+
+		return((chars == null) ? text : new String(chars));
+	}
+
+	/**
+	 * '.' in a regex does not match line terminators, so labels which
+	 * contain any are matched with the regex.
+	 */
+	private static boolean hasLineTerminator(final String text) {
+
+		for(int i = 0;i < text.length();i++) {
+			final char c = text.charAt(i);
+			if(c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' ||
+				c == '\u2029') {
+				return(true);
+			}
+		}
+
+		return(false);
+	}
+}
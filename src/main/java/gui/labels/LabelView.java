@@ -61,6 +61,8 @@ public abstract class LabelView extends ModelView implements MouseListener,
 	/* Required label data */
 	protected LabelInfo labelInfo;
 	protected LabelSummary labelSummary;
+	/* Cached label summaries and widths for finding the longest label */
+	private volatile LabelMetricsIndex labelMetrics;
 
 	/* Maps label position to GlobalView */
 	protected MapContainer map;
@@ -374,7 +376,14 @@ public abstract class LabelView extends ModelView implements MouseListener,
 
 	public void setLabelInfo(final LabelInfo labelInfo) {
 
+		if(this.labelInfo instanceof Observable) {
+			((Observable) this.labelInfo).deleteObserver(this);
+		}
 		this.labelInfo = labelInfo;
+		labelMetrics = null;
+		if(labelInfo instanceof Observable) {
+			((Observable) labelInfo).addObserver(this);
+		}
 
 		if(labelSummary == null) {
 			LogBuffer.println("Could not update labels for labelSummary in " +
@@ -425,7 +434,13 @@ public abstract class LabelView extends ModelView implements MouseListener,
 
 	@Override
 	public void update(final Observable o,final Object arg) {
-		// update method not used, no updates from observing another object...
+		//The labels were replaced or edited, e.g. reordered or custom labels
+		//loaded, so their cached summaries and widths are stale
+		if(o == labelInfo) {
+			labelMetrics = null;
+			revalidate();
+			repaint();
+		}
 	}
 
 	@Override
@@ -1701,7 +1716,6 @@ public abstract class LabelView extends ModelView implements MouseListener,
 	 * @return maxStrLen
 	 */
 	public int getMaxStringLength(FontMetrics metrics) {
-		int end = map.getMaxIndex();
 		int maxStrLen = 0;
 
 		// No labels have been loaded for this LabelView's axis
@@ -1711,106 +1725,52 @@ public abstract class LabelView extends ModelView implements MouseListener,
 			return maxStrLen;
 		}
 
-		// TODO - ideally this code would not be necessary because a data change
-		// should prompt a state reset of the entire class.
-		// If we detect that the data has changed, re-initialize the last drawn
-		// longest string variables. Note, this can be thwarted in the rare case
-		// that 2 different data files happen to have the same label in the same
-		// position and there exists a longer label elsewhere
-		if(labelAttr.isLongestStrIdxDefined() &&
-			((labelAttr.getLongestStrIdx() > map.getMaxIndex()) ||
-				(labelAttr.getLongestStr() == null) ||
-				"".equals(labelAttr.getLongestStr()) ||
-				(labelAttr.getLongestStrIdx() == -1) ||
-				!labelAttr.isLongestStrEqualTo(labelSummary.getSummary(labelInfo,
-					labelAttr.getLongestStrIdx())))) {
-			LogBuffer.println("Data changed. Prompting recalculation of max " +
-				"string length.");
+		final LabelMetricsIndex index = getLabelMetricsIndex();
+		final int longestIdx = index.getLongestIndex(metrics);
+		if(longestIdx < 0) {
 			labelAttr.setLongestStrIdx(-1);
 			labelAttr.setLongestStr("");
+			return maxStrLen;
 		}
 
-		boolean isLongestStrEqual = false;
-		String tempLongest = null;
-		if(labelAttr.isLongestStrIdxDefined()) {
-			tempLongest = labelSummary.getSummary(labelInfo,
-				labelAttr.getLongestStrIdx());
-			isLongestStrEqual = labelAttr.isLongestStrEqualTo(tempLongest);
-		}
-
-		// If nothing about the font has changed, calculate the length of the
-		// longest string
-		if(isLongestStrEqual && !labelAttr.hasFontChanged()) {
+		final String longest = index.getSummary(longestIdx);
+		labelAttr.setLongestStrIdx(longestIdx);
+		labelAttr.setLongestStr(longest);
+		maxStrLen = metrics.stringWidth(longest);
 
-			debug("Regurgitating maxstrlen",1);
-			labelAttr.setLongestStr(tempLongest);
-			maxStrLen = labelAttr.getLongestStrLen();
-			debug("Everything fontwise is the same, including size [" +
-				labelAttr
-				.getPoints() +
-				"]. returning saved maxStrLen [" + maxStrLen + "]",18);
-		}
-		// Else if the font attributes have changed, recalculate the longest
-		// string's length
-		else if(isLongestStrEqual && labelAttr.hasFontChanged()) {
+		debug(getPaneType() + ": MaxStrLen: [" + maxStrLen + "] MaxStr: [" +
+			labelAttr.getLongestStr() + "] Start Index: [" + 0 +
+			"] End Index: [" + map.getMaxIndex() + "] height [" +
+			offscreenSize.height + "] width [" + offscreenSize.width + "]",1);
 
-			debug("Refining maxstrlen",1);
-			labelAttr.setLongestStr(tempLongest);
-			maxStrLen = metrics.stringWidth(tempLongest);
-			debug("Font size only changed. Recalculating length of longest " +
-				"string [" + labelAttr.getLongestStr() + "] & returning " +
-				"maxStrLen [" + maxStrLen + "]",18);
-		}
-		// Else find the longest string and return its length
-		else {
-			debug("Calculating maxstrlen because not [lastDrawnFace == face " +
-				"&& lastDrawnStyle == style && longest_str_index > -1 && " +
-				"lastDrawnSize != size && longest_str.equals(labelSummary." +
-				"getSummary(labelInfo,longest_str_index))]",18);
-			debug("Calculating maxstrlen because not [" +
-				labelAttr.getLastDrawnFace() + " == " + labelAttr.getFace() +
-				" && " + labelAttr.getLastDrawnStyle() + " == " +
-				labelAttr.getStyle() + " && " + labelAttr.getLastDrawnStyle() +
-				" > -1 && " + labelAttr.getLastDrawnSize() + " != " +
-				labelAttr.getPoints() + " && " + labelAttr.getLongestStr() +
-				".equals(labelSummary.getSummary(labelInfo," +
-				labelAttr.getLongestStrIdx() + "))]",18);
-			for(int j = 0;j <= end;j++) {
-				try {
-					String out = labelSummary.getSummary(labelInfo,j);
-
-					if(out == null) {
-						out = "No Label";
-					}
+		return(maxStrLen);
+	}
 
-					if(maxStrLen < metrics.stringWidth(out)) {
-						maxStrLen = metrics.stringWidth(out);
-						labelAttr.setLongestStrIdx(j);
-						labelAttr.setLongestStr(out);
+	/**
+	 * Returns the index of label summaries and widths, which is rebuilt when
+	 * the labels or the selected label types have changed.
+	 * @return The label metrics index for the current labels
+	 */
+	private LabelMetricsIndex getLabelMetricsIndex() {
+		final int numLabels = map.getMaxIndex() + 1;
+		LabelMetricsIndex index = labelMetrics;
+		if(index == null || !index.isFor(labelInfo,labelSummary,numLabels)) {
+
+			debug("Labels changed. Rebuilding the label metrics index.",1);
+			index = new LabelMetricsIndex(labelInfo,labelSummary,
+				numLabels,new Runnable() {
+
+					@Override
+					public void run() {
+						//The longest label may differ from the estimate
+						revalidate();
+						repaint();
 					}
-
-				}
-				catch(final java.lang.ArrayIndexOutOfBoundsException e) {
-					LogBuffer.logException(e);
-					break;
-				}
-			}
-
-			debug(
-				"Full-on recalculating [" + labelAttr.getLongestStr() +
-				"] maxStrLen [" + maxStrLen + "] at face [" +
-				labelAttr.getFace() +
-				"] style [" + labelAttr.getStyle() + "] size [" + labelAttr
-				.getPoints() +
-				"]",12);
+				});
+			labelMetrics = index;
 		}
 
-		debug(getPaneType() + ": MaxStrLen: [" + maxStrLen + "] MaxStr: [" +
-			labelAttr.getLongestStr() + "] Start Index: [" + 0 +
-			"] End Index: [" + end + "] height [" + offscreenSize.height +
-			"] width [" + offscreenSize.width + "]",1);
-
-		return(maxStrLen);
+		return(index);
 	}
 
 	/**
@@ -1848,40 +1808,19 @@ public abstract class LabelView extends ModelView implements MouseListener,
 			fontSize);
 		FontMetrics fm = getFontMetrics(tmpFont);
 
-		int maxStrLen = 0;
-
-		//If we want to global max string length
-		if(!selected && start == map.getMinIndex() && end == map.getMaxIndex()) {
-			//Calling this because it updates longest_str (which may not have
-			//been calculated if labels were never drawn on the screen)
-			getMaxStringLength(fm);
-			maxStrLen = fm.stringWidth(labelAttr.getLongestStr());
+		if(labelInfo.getNumLabelTypes() == 0) {
+			return(0);
 		}
-		//This isn't fully implemented yet...
-		else {
-			for(int j = start;j <= end;j++) {
-				if(selected && !drawSelection.isIndexSelected(j)) {
-					continue;
-				}
-				try {
-					String out = labelSummary.getSummary(labelInfo,j);
 
-					if(out == null) {
-						out = "No Label";
-					}
-
-					if(maxStrLen < fm.stringWidth(out)) {
-						maxStrLen = fm.stringWidth(out);
-					}
-				}
-				catch(final java.lang.ArrayIndexOutOfBoundsException e) {
-					LogBuffer.logException(e);
-					break;
-				}
-			}
+		//Exports measure a new font right away instead of in the background
+		final LabelMetricsIndex index = getLabelMetricsIndex();
+		final int longestIdx = index.getLongestIndex(fm,start,end,
+			selected ? drawSelection : null,true);
+		if(longestIdx < 0) {
+			return(0);
 		}
 
-		return(maxStrLen);
+		return(fm.stringWidth(index.getSummary(longestIdx)));
 	}
 
 	/**
@@ -3238,6 +3177,29 @@ public abstract class LabelView extends ModelView implements MouseListener,
 			fontSize,region);
 	}
 
+	/**
+	 * Exports an image with a set of labels whose length is already known,
+	 * e.g. when the image is drawn in several parts
+	 *
+	 * @param g - graphics object
+	 * @param xIndent - size of the indent where to start drawing the labels
+	 * @param yIndent - size of the indent where to start drawing the labels
+	 * @param size - size of a matrix tile or rather, font height area
+	 * @param region - what portion of the labels to model.export
+	 * @param showSelections - whether of not to highlight selections
+	 * @param drawSelectedOnly - whether or not to only draw labels that are selected
+	 * @param fontSize - the size of the font to use for model.export
+	 * @param labelLength - the result of getMaxExportStringLength
+	 */
+	public void export(final Graphics g,final int xIndent,final int yIndent,
+		final int size,final RegionType region,final boolean showSelections,
+		final boolean drawSelectedOnly,final int fontSize,
+		final int labelLength) {
+
+		exportRange(g,xIndent,yIndent,size,showSelections,drawSelectedOnly,
+			fontSize,region,labelLength);
+	}
+
 	/**
 	 * Exports the portion of the labels corresponding to the visible portion of
 	 * the matrix
@@ -3257,6 +3219,23 @@ public abstract class LabelView extends ModelView implements MouseListener,
 		final boolean drawSelectedOnly,final int fontSize,
 		final RegionType region) {
 
+		exportRange(g,xIndent,yIndent,size,showSelections,drawSelectedOnly,
+			fontSize,region,
+			getMaxExportStringLength(region,drawSelectedOnly,fontSize));
+	}
+
+	/**
+	 * Exports the labels like exportRange above. Only the labels which
+	 * intersect the clip of the graphics object are drawn.
+	 *
+	 * @param xSize - the length of the longest label, see
+	 * getMaxExportStringLength
+	 */
+	public void exportRange(final Graphics g,final int xIndent,
+		final int yIndent,final int size,final boolean showSelections,
+		final boolean drawSelectedOnly,final int fontSize,
+		final RegionType region,final int xSize) {
+
 		int start = 0;
 		int end = 0;
 		if(region == RegionType.ALL) {
@@ -3282,22 +3261,37 @@ public abstract class LabelView extends ModelView implements MouseListener,
 		Font exportFont = new Font(labelAttr.getFace(),
 				labelAttr.getStyle(),fontSize);
 		final FontMetrics metrics = getFontMetrics(exportFont);
-		int xSize = getMaxExportStringLength(region,drawSelectedOnly,fontSize);
 		final int ascent = metrics.getAscent();
  
 		/* Rotate plane for array axis (not for zoomHint) */
 		orientLabelExport(g2d,xIndent,yIndent,xSize);
 
+		//Skip the labels outside of the clip (in label coordinates), e.g. when
+		//only one strip of the image is drawn.  One label of margin on either
+		//side covers text which extends past its tile.
+		final Rectangle clip = g2d.getClipBounds();
+		int first = start;
+		int last = end;
+		if(clip != null && size > 0) {
+			if(clip.x >= xIndent + xSize || clip.x + clip.width <= xIndent) {
+				return;
+			}
+			first = Math.max(start,start +
+				Math.floorDiv(clip.y - yIndent,size) - 1);
+			last = Math.min(end,start +
+				Math.floorDiv(clip.y + clip.height - 1 - yIndent,size) + 1);
+		}
+
 		//Labels are always drawn horizontally.  orientLabelPane does its magic
 		//to rotate the whole thing, so we don't have to worry about it.  Thus
 		//yPos is the "pixel" (i.e. "point") position referring to lines of
 		//labels.  yOffset is to center the label on a tile.
 		//yPos and xPos are assumed to start at 0.
-		int yPos = yIndent;
+		int yPos = yIndent + (first - start) * size;
 		int yOffset = (int) Math.floor((double) size / 2.0);
 		int xPos = xIndent;
 
-		for(int j = start;j <= end;j++) {
+		for(int j = first;j <= last;j++) {
 
 			debug("Getting data index [" + j + "]",1);
 
@@ -11,7 +11,10 @@ import model.data.trees.TreeSelectionI;
 import model.export.ExportHandler.ExportWorker;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
@@ -42,6 +45,12 @@ import java.util.prefs.Preferences;
  */
 public abstract class ArrayDrawer extends Observable implements Observer {
 
+	/**
+	 * Passed to observers when more of an incomplete downsampled image can be
+	 * painted, see paintDownsampled().
+	 */
+	public static final Object TILES_CALCULATED = new Object();
+
 	private Preferences root;
 
 	/**
@@ -95,6 +104,61 @@ public abstract class ArrayDrawer extends Observable implements Observer {
 	public abstract void paint(int[] pixels, Rectangle source, Rectangle dest,
 			int scanSize);
 
+	/**
+	 * Renders an area of the array into an image which is not larger than
+	 * needed for the available pixels. If there are more values than pixels,
+	 * each pixel of the image stands for a block of values, see
+	 * MatrixTilePyramid. This implementation shows the first value of each
+	 * block.
+	 *
+	 * @param source
+	 *            Specifies Rectangle of values to draw from
+	 * @param maxWidth
+	 *            The available horizontal pixels.
+	 * @param maxHeight
+	 *            The available vertical pixels.
+	 * @return The image of the area.
+	 */
+	public BufferedImage paintDownsampled(final Rectangle source,
+			final int maxWidth, final int maxHeight) {
+
+		return paintDownsampled(source, maxWidth, maxHeight, true);
+	}
+
+	/**
+	 * Like paintDownsampled(Rectangle, int, int), but parts which take a
+	 * while to calculate may be left out of the image. Observers are notified
+	 * with TILES_CALCULATED once more of the area can be painted.
+	 *
+	 * @param source
+	 *            Specifies Rectangle of values to draw from
+	 * @param maxWidth
+	 *            The available horizontal pixels.
+	 * @param maxHeight
+	 *            The available vertical pixels.
+	 * @param complete
+	 *            Whether the whole area has to be painted before returning.
+	 * @return The image of the area.
+	 */
+	public BufferedImage paintDownsampled(final Rectangle source,
+			final int maxWidth, final int maxHeight, final boolean complete) {
+
+		final int level = MatrixTilePyramid.getLevel(source.width,
+				source.height, maxWidth, maxHeight);
+		final Rectangle area = MatrixTilePyramid.getLevelArea(source, level);
+
+		final BufferedImage image = new BufferedImage(area.width, area.height,
+				BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < area.height; y++) {
+			for (int x = 0; x < area.width; x++) {
+				image.setRGB(x, y, getColor((area.x + x) << level,
+						(area.y + y) << level).getRGB());
+			}
+		}
+
+		return image;
+	}
+
 	/* Code for selection dimming */
 	// , int[] geneSelections, int[] arraySelections);
 
@@ -193,32 +257,191 @@ public abstract class ArrayDrawer extends Observable implements Observer {
 		final int xTileSize,final int yTileSize,
 		final boolean showSelections,
 		final TreeSelectionI colSelection,final TreeSelectionI rowSelection) {
-	
+
+		paint(e,g,xDataStart,yDataStart,xDataEnd,yDataEnd,xImageStart,
+			yImageStart,xTileSize,yTileSize,showSelections,colSelection,
+			rowSelection,false);
+	}
+
+	/**
+	 * Same as the above export, but neighboring cells of a row which have the
+	 * same color are drawn as one rectangle. This keeps the amount of shapes
+	 * in vector documents (PDF, SVG, PS) small.
+	 * @param reduceColors - Whether the colors are rounded to 16 levels per
+	 * channel first, so that runs of similar colors are merged as well
+	 */
+	public void paint(ExportWorker e, final Graphics g,
+		final int xDataStart,final int yDataStart,
+		final int xDataEnd,final int yDataEnd,
+		final int xImageStart,final int yImageStart,
+		final int xTileSize,final int yTileSize,
+		final boolean showSelections,
+		final TreeSelectionI colSelection,final TreeSelectionI rowSelection,
+		final boolean reduceColors) {
+
+		final int numCols = xDataEnd - xDataStart + 1;
+		final int[] rowColors = new int[Math.max(0,numCols)];
+
+		//setPaintMode seems to help color overlapping (affecting the
+		//colors) a little, but doesn't fix it altogether. Probably
+		//useless. Note there appears to be an alpha channel in the
+		//output PDF.
+		g.setPaintMode();
+
 		int k=0;
 		for (int j = yDataStart; j <= yDataEnd; j++) {
-			for (int i = xDataStart; i <= xDataEnd; i++) {
-				//setPaintMode seems to help color overlapping (affecting the
-				//colors) a little, but doesn't fix it altogether. Probably
-				//useless. Note there appears to be an alpha channel in the
-				//output PDF.
-				g.setPaintMode();
-				g.setColor(getColor(i,j));
+			getRowColors(j,xDataStart,Math.max(0,numCols),rowColors);
+			if(reduceColors) {
+				for (int i = 0; i < numCols; i++) {
+					rowColors[i] = reduceColor(rowColors[i]);
+				}
+			}
+
+			final int y = yImageStart + (j - yDataStart) * yTileSize;
+			int runStart = 0;
+			while (runStart < numCols) {
+				int runEnd = runStart + 1;
+				while (runEnd < numCols &&
+					rowColors[runEnd] == rowColors[runStart]) {
+					runEnd++;
+				}
+
+				final int x = xImageStart + runStart * xTileSize;
+				final int width = (runEnd - runStart) * xTileSize;
+				g.setColor(new Color(rowColors[runStart],true));
 				//drawRect is better than fillRect because there're no gaps, but
 				//still some color bleed for some reason at some zoom levels - I
 				//think that's due to the reader's poor rendering
-				g.drawRect(xImageStart + (i - xDataStart) * xTileSize,
-					yImageStart + (j - yDataStart) * yTileSize,xTileSize,yTileSize);
-				g.fillRect(xImageStart + (i - xDataStart) * xTileSize,
-					yImageStart + (j - yDataStart) * yTileSize,xTileSize,yTileSize);
-				setChanged();
-				notifyObservers(++k);
-				if(e.isCancelled()){
-		    		e.setExportSuccessful(false);
-					return;
-		    	}
+				g.drawRect(x,y,width,yTileSize);
+				g.fillRect(x,y,width,yTileSize);
+				runStart = runEnd;
+			}
+
+			k += Math.max(0,numCols);
+			setChanged();
+			notifyObservers(k);
+			if(e.isCancelled()){
+				e.setExportSuccessful(false);
+				return;
 			}
 		}
 
+		paintSelections(g,xDataStart,yDataStart,xImageStart,yImageStart,
+			xTileSize,yTileSize,showSelections,colSelection,rowSelection);
+	}
+
+	/**
+	 * A method to export a portion of the matrix directly into the pixels of
+	 * a bitmap image. Each tile is filled with Arrays.fill instead of drawing
+	 * rectangles through a Graphics object, and progress is reported once per
+	 * row. The image must be of TYPE_INT_RGB or TYPE_INT_ARGB. Parameters are
+	 * the same as for the Graphics-based export.
+	 * @param e - Swingworker class which is used to run the model.export
+	 * @param image - The image to draw into
+	 */
+	public void paint(ExportWorker e, final BufferedImage image,
+		final int xDataStart,final int yDataStart,
+		final int xDataEnd,final int yDataEnd,
+		final int xImageStart,final int yImageStart,
+		final int xTileSize,final int yTileSize,
+		final boolean showSelections,
+		final TreeSelectionI colSelection,final TreeSelectionI rowSelection) {
+
+		final int[] pixels =
+			((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int numCols = xDataEnd - xDataStart + 1;
+		final int[] rowColors = new int[Math.max(0,numCols)];
+
+		//Skip the rows which are above or below the image, e.g. when it is a
+		//strip of a larger export
+		final int firstRow = Math.max(yDataStart,
+			yDataStart + Math.floorDiv(-yImageStart,yTileSize));
+		final int lastRow = Math.min(yDataEnd,yDataStart +
+			Math.floorDiv(height - yImageStart - 1,yTileSize));
+
+		int k=(firstRow - yDataStart) * Math.max(0,numCols);
+		for (int j = firstRow; j <= lastRow; j++) {
+			final int yStart = yImageStart + (j - yDataStart) * yTileSize;
+			final int yEnd = Math.min(height,yStart + yTileSize);
+
+			if(numCols > 0) {
+				getRowColors(j,xDataStart,numCols,rowColors);
+
+				//Fill the first pixel row of the tiles, then copy it
+				final int firstY = Math.max(0,yStart);
+				final int firstOffset = firstY * width;
+				for (int i = 0; i < numCols; i++) {
+					final int xStart = xImageStart + i * xTileSize;
+					final int from = Math.max(0,xStart);
+					final int to = Math.min(width,xStart + xTileSize);
+					if(from < to) {
+						Arrays.fill(pixels,firstOffset + from,firstOffset + to,
+							rowColors[i]);
+					}
+				}
+
+				final int from = Math.max(0,xImageStart);
+				final int to = Math.min(width,xImageStart + numCols * xTileSize);
+				if(from < to) {
+					for (int y = firstY + 1; y < yEnd; y++) {
+						System.arraycopy(pixels,firstOffset + from,pixels,
+							y * width + from,to - from);
+					}
+				}
+			}
+
+			k += Math.max(0,numCols);
+			setChanged();
+			notifyObservers(k);
+			if(e.isCancelled()){
+				e.setExportSuccessful(false);
+				return;
+			}
+		}
+
+		final Graphics g = image.createGraphics();
+		paintSelections(g,xDataStart,yDataStart,xImageStart,yImageStart,
+			xTileSize,yTileSize,showSelections,colSelection,rowSelection);
+		g.dispose();
+	}
+
+	/**
+	 * Gets the ARGB colors of a range of cells in a row. This implementation
+	 * uses getColor(), subclasses may avoid creating Color objects.
+	 * @param row - The row of the cells
+	 * @param fromCol - The first column
+	 * @param length - The amount of columns
+	 * @param target - Receives the colors, starting at index 0
+	 */
+	protected void getRowColors(final int row,final int fromCol,
+		final int length,final int[] target) {
+
+		for (int i = 0; i < length; i++) {
+			target[i] = getColor(fromCol + i,row).getRGB();
+		}
+	}
+
+	/**
+	 * Rounds each channel of a color to the middle of one of 16 levels.
+	 */
+	private static int reduceColor(final int argb) {
+
+		return (argb & 0xFFF0F0F0) | 0x00080808;
+	}
+
+	/**
+	 * Draws yellow rectangles around the selected parts of an exported
+	 * portion of the matrix.
+	 */
+	private void paintSelections(final Graphics g,
+		final int xDataStart,final int yDataStart,
+		final int xImageStart,final int yImageStart,
+		final int xTileSize,final int yTileSize,
+		final boolean showSelections,
+		final TreeSelectionI colSelection,final TreeSelectionI rowSelection) {
+
 		//Draw the selection rectangles
 		if(showSelections && (rowSelection != null) && (colSelection != null) &&
 			rowSelection.getNSelectedIndexes() > 0 &&
@@ -226,75 +449,53 @@ public abstract class ArrayDrawer extends Observable implements Observer {
 
 			g.setColor(Color.yellow);
 
-			final int[] selectedArrayIndexes =
-				colSelection.getSelectedIndexes();
-			final int[] selectedGeneIndexes =
-				rowSelection.getSelectedIndexes();
-	
-			if (selectedArrayIndexes.length > 0) {
-				List<List<Integer>> arrayBoundaryList;
-				List<List<Integer>> geneBoundaryList;
-	
-				arrayBoundaryList =
-					findRectBoundaries(selectedArrayIndexes);
-				geneBoundaryList =
-					findRectBoundaries(selectedGeneIndexes);
-	
-				for(final List<Integer> xBoundaries : arrayBoundaryList) {
-					for(final List<Integer> yBoundaries : geneBoundaryList){
-
-						int xSelectionPixel = xImageStart +
-							(xBoundaries.get(0) - xDataStart) * xTileSize;
-						int xPixelSize =
-							(xBoundaries.get(1) - xBoundaries.get(0) + 1) *
-							xTileSize - 1;
-						int yStartPixel = yImageStart +
-							(yBoundaries.get(0) - yDataStart) * yTileSize;
-						int yPixelSize =
-							(yBoundaries.get(1) - yBoundaries.get(0) + 1) *
-							yTileSize - 1;
-						g.drawRect(xSelectionPixel,yStartPixel,xPixelSize,
-							yPixelSize);
-					}
+			final List<List<Integer>> arrayBoundaryList =
+				findRectBoundaries(colSelection);
+			final List<List<Integer>> geneBoundaryList =
+				findRectBoundaries(rowSelection);
+
+			for(final List<Integer> xBoundaries : arrayBoundaryList) {
+				for(final List<Integer> yBoundaries : geneBoundaryList){
+
+					int xSelectionPixel = xImageStart +
+						(xBoundaries.get(0) - xDataStart) * xTileSize;
+					int xPixelSize =
+						(xBoundaries.get(1) - xBoundaries.get(0) + 1) *
+						xTileSize - 1;
+					int yStartPixel = yImageStart +
+						(yBoundaries.get(0) - yDataStart) * yTileSize;
+					int yPixelSize =
+						(yBoundaries.get(1) - yBoundaries.get(0) + 1) *
+						yTileSize - 1;
+					g.drawRect(xSelectionPixel,yStartPixel,xPixelSize,
+						yPixelSize);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Finds the runs of consecutive selected indexes, which are drawn as
+	 * separate rectangles. Only the runs are visited, not every selected
+	 * index.
+	 *
+	 * @param selection
+	 * @return The first and last index of each run
+	 */
 	protected List<List<Integer>> findRectBoundaries(
-		final int[] selectedIndexes) {
+		final TreeSelectionI selection) {
 
 		final List<List<Integer>> boundaryList = new ArrayList<List<Integer>>();
-	
-		/*
-		 * If array is bigger than 1, check how many consecutive labels are
-		 * selected by finding out which elements are only 1 apart. Store
-		 * consecutive indexes separately to make separate rectangles later.
-		 */
-		int firstindex = 0;
-		int lastval;
-		while(firstindex < selectedIndexes.length) {
-
-			lastval = selectedIndexes[firstindex];
-			List<Integer> boundaries = new ArrayList<Integer>();
-			boundaries.add(lastval);
-
-			firstindex++;
-
-			for(int i = firstindex; i < selectedIndexes.length; i++) {
-	
-				final int currentval = selectedIndexes[i];
-
-				if(lastval == currentval - 1) {
-					lastval = currentval;
-					firstindex = i + 1;
-				} else {
-					break;
-				}
-			}
 
-			boundaries.add(lastval);
+		for(int start = selection.getNextSelectedIndex(0); start >= 0;) {
+			final int end = selection.getNextDeselectedIndex(start);
+
+			List<Integer> boundaries = new ArrayList<Integer>(2);
+			boundaries.add(start);
+			boundaries.add(end - 1);
 			boundaryList.add(boundaries);
+
+			start = selection.getNextSelectedIndex(end);
 		}
 
 		return(boundaryList);
@@ -0,0 +1,190 @@
+/* BEGIN_HEADER                                                   TreeView 3
+ *
+ * Please refer to our LICENSE file if you wish to make changes to this software
+ *
+ * END_HEADER
+ */
+
+package gui.matrix;
+
+import model.data.matrix.DataMatrix;
+import util.LogBuffer;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Converts the values of a data matrix into ARGB pixels. The destination is
+ * split into horizontal bands which are rendered in parallel on a pool that is
+ * shared by all views. Each band reads whole rows from the matrix, so the
+ * values are accessed in the order in which they are stored.
+ */
+public class BandedPixelRenderer {
+
+	/* Bands per core, so that faster threads can pick up remaining work */
+	private static final int BANDS_PER_CORE = 4;
+
+	/* Smaller areas are rendered on the calling thread */
+	private static final int MIN_PARALLEL_CELLS = 1 << 16;
+
+	private static final int MIN_BAND_ROWS = 16;
+
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(
+		Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(final Runnable r) {
+
+				final Thread thread = new Thread(r, "PixelRenderer-" + count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	private BandedPixelRenderer() {
+
+	}
+
+	/**
+	 * Renders a source area of the matrix into the pixel array. The value at
+	 * (source.x + col, source.y + row) is written to
+	 * pixels[col + row * scanSize]. Returns once all pixels are written.
+	 *
+	 * @param dataMatrix
+	 *            The values to be rendered.
+	 * @param colorExtractor
+	 *            Converts values into colors.
+	 * @param pixels
+	 *            The pixel buffer to draw to.
+	 * @param source
+	 *            The area of the matrix to be rendered.
+	 * @param scanSize
+	 *            The width of a row in the pixel buffer.
+	 */
+	public static void render(final DataMatrix dataMatrix,
+			final ColorExtractor colorExtractor, final int[] pixels,
+			final Rectangle source, final int scanSize) {
+
+		final int firstCol = Math.max(0, source.x);
+		final int firstRow = Math.max(0, source.y);
+		final int width = Math.min(source.x + source.width,
+				dataMatrix.getNumCol()) - firstCol;
+		final int height = Math.min(source.y + source.height,
+				dataMatrix.getNumRow()) - firstRow;
+
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		runInBands(width, height, new BandTask() {
+
+			@Override
+			public void run(final int bandStart, final int bandEnd) {
+
+				renderBand(dataMatrix, colorExtractor, pixels, firstCol, width,
+						firstRow, bandStart, bandEnd, scanSize);
+			}
+		});
+	}
+
+	/**
+	 * Work on a range of rows.
+	 */
+	interface BandTask {
+
+		/**
+		 * @param bandStart
+		 *            The first row of the band.
+		 * @param bandEnd
+		 *            The row after the last row of the band.
+		 */
+		void run(int bandStart, int bandEnd);
+	}
+
+	/**
+	 * Splits the rows from 0 to height into bands and runs the task for each
+	 * band on the shared pool. Small areas are processed on the calling thread.
+	 * Returns once all bands are done.
+	 *
+	 * @param width
+	 *            The amount of cells per row, used to estimate the work.
+	 * @param height
+	 *            The amount of rows.
+	 * @param task
+	 *            The work for one band.
+	 */
+	static void runInBands(final int width, final int height,
+			final BandTask task) {
+
+		final int cores = Runtime.getRuntime().availableProcessors();
+		if (cores < 2 || (long) width * height < MIN_PARALLEL_CELLS) {
+			task.run(0, height);
+			return;
+		}
+
+		final int bandRows = Math.max(MIN_BAND_ROWS, (height + cores
+				* BANDS_PER_CORE - 1) / (cores * BANDS_PER_CORE));
+
+		final List<Future<?>> bands = new ArrayList<Future<?>>();
+		for (int start = 0; start < height; start += bandRows) {
+			final int bandStart = start;
+			final int bandEnd = Math.min(height, start + bandRows);
+
+			bands.add(POOL.submit(new Runnable() {
+
+				@Override
+				public void run() {
+
+					task.run(bandStart, bandEnd);
+				}
+			}));
+		}
+
+		for (final Future<?> band : bands) {
+			try {
+				band.get();
+
+			} catch (final InterruptedException e) {
+				/* Remaining bands are not needed anymore */
+				for (final Future<?> other : bands) {
+					other.cancel(false);
+				}
+				Thread.currentThread().interrupt();
+				return;
+
+			} catch (final ExecutionException e) {
+				LogBuffer.logException(e);
+				LogBuffer.println("Could not render all pixels.");
+			}
+		}
+	}
+
+	/**
+	 * Renders the rows from bandStart (inclusive) to bandEnd (exclusive),
+	 * counted relative to firstRow.
+	 */
+	private static void renderBand(final DataMatrix dataMatrix,
+			final ColorExtractor colorExtractor, final int[] pixels,
+			final int firstCol, final int width, final int firstRow,
+			final int bandStart, final int bandEnd, final int scanSize) {
+
+		double[] rowValues = null;
+		for (int row = bandStart; row < bandEnd; row++) {
+			rowValues = dataMatrix.getRowValues(firstRow + row, rowValues);
+
+			final int offset = row * scanSize;
+			for (int col = 0; col < width; col++) {
+				pixels[offset + col] = colorExtractor
+						.getARGBColor(rowValues[firstCol + col]);
+			}
+		}
+	}
+}
@@ -12,6 +12,7 @@ import gui.DendrogramFactory;
 import gui.colorPicker.ColorSchemeType;
 import gui.colorPicker.ContrastSelectable;
 import model.data.Helper;
+import model.data.matrix.DataModel;
 import model.data.matrix.TVModel;
 import preferences.ColorPresets;
 import preferences.ConfigNodePersistent;
@@ -60,6 +61,13 @@ public class ColorExtractor extends Observable implements ConfigNodePersistent,
 	private final float[] missingColor = new float[3];
 	private final float[] emptyColor = new float[3];
 
+	/* Amount of precomputed colors between dataMin and dataMax */
+	private static final int GRADIENT_SIZE = ColorTable.MISSING_INDEX;
+
+	/* Precomputed ARGB colors, null if the settings changed since the
+	 * last lookup. */
+	private volatile ColorTable colorTable;
+
 	/** Constructor for the ColorExtractor object */
 	public ColorExtractor(double min, double max) {
 
@@ -165,14 +173,26 @@ public class ColorExtractor extends Observable implements ConfigNodePersistent,
 		setChanged();
 	}
 
+	/** Marks the state of this object as changed. This also discards the
+	 * precomputed colors, so they are rebuilt with the new settings on the next
+	 * call of getARGBColor(). */
+	@Override
+	protected synchronized void setChanged() {
+
+		colorTable = null;
+		super.setChanged();
+	}
+
 	public void setMin(final double min) {
 
 		this.dataMin = min;
+		colorTable = null;
 	}
 
 	public void setMax(final double max) {
 
 		this.dataMax = max;
+		colorTable = null;
 	}
 
 	public void setNewParams(final float[] frac, final List<Color> cl) {
@@ -567,21 +587,91 @@ public class ColorExtractor extends Observable implements ConfigNodePersistent,
 	// + ", " + emptyColor[2]);
 	// }
 
-	/** Gets the aRGBColor attribute of the ColorExtractor object
+	/** Gets the aRGBColor attribute of the ColorExtractor object. Values
+	 * between dataMin and dataMax are looked up in a table of precomputed
+	 * colors, which is rebuilt whenever the colors, the range or the log
+	 * settings change.
 	 *
 	 * @param dval
 	 *          Description of the Parameter
-	 * @param isBackground
-	 *          If a row/ column in DoubleArrayDrawer is not selected while
-	 *          there exists another selection, it is considered to be in the
-	 *          background.
 	 * @return The aRGBColor value */
 	public int getARGBColor(final double dval) {
-		/* Selection Dimming */
-		// , boolean isBackground) {
 
 		if(fractions == null || colorList == null) { return 0; }
 
+		final ColorTable table = getColorTable();
+
+		if(TVModel.isMissing(dval)) {
+			return table.missing;
+
+		}
+		else if(TVModel.isEmpty(dval)) {
+			return table.empty;
+		}
+
+		if(table.colors == null) { return calculateARGBColor(dval); }
+
+		final double position = (dval - table.min) * table.scale;
+		if(table.logTransform && (position < 0 || position > GRADIENT_SIZE - 1)) {
+			/* Log transformed values outside of the range do not map to the
+			 * first or last color, so they are calculated. */
+			return calculateARGBColor(dval);
+		}
+
+		return table.colors[ColorTable.toIndex(position)];
+	}
+
+	/** @return The precomputed colors for the current settings. They are
+	 *         built if the settings changed since the last call. */
+	ColorTable getColorTable() {
+
+		final ColorTable table = colorTable;
+		return (table == null) ? buildColorTable() : table;
+	}
+
+	/** Precomputes the colors for the current settings and makes them
+	 * available to getARGBColor(). The gradient is only filled if dataMin and
+	 * dataMax form a valid range.
+	 *
+	 * @return The new color table. */
+	private ColorTable buildColorTable() {
+
+		final double min = dataMin;
+		final double max = dataMax;
+		final int missing = calculateARGBColor(DataModel.NAN);
+		final int empty = calculateARGBColor(DataModel.EMPTY);
+
+		int[] colors = null;
+		double scale = 0;
+		if(fractions != null && colorList != null && max > min &&
+			!Double.isInfinite(max - min)) {
+			colors = new int[ColorTable.SIZE];
+			final double step = (max - min) / (GRADIENT_SIZE - 1);
+			for(int i = 0; i < GRADIENT_SIZE; i++) {
+				colors[i] = calculateARGBColor(min + i * step);
+			}
+			colors[GRADIENT_SIZE - 1] = calculateARGBColor(max);
+			colors[ColorTable.MISSING_INDEX] = missing;
+			colors[ColorTable.EMPTY_INDEX] = empty;
+			scale = (GRADIENT_SIZE - 1) / (max - min);
+		}
+
+		final ColorTable table = new ColorTable(colors, min, scale,
+																						m_logTranform, missing, empty);
+		colorTable = table;
+		return table;
+	}
+
+	/** Calculates the ARGB color of a value from the gradient, without using
+	 * the precomputed colors.
+	 *
+	 * @param dval
+	 *          The data value.
+	 * @return The ARGB color. */
+	private int calculateARGBColor(final double dval) {
+		/* Selection Dimming */
+		// , boolean isBackground) {
+
 		final float[] comp;
 		if(fractions.length == 0 || colorList.isEmpty()) {
 			comp = getFloatColor(dval, fractions_default, colorList_default);
@@ -607,6 +697,80 @@ public class ColorExtractor extends Observable implements ConfigNodePersistent,
 						(int) (255 * comp[2]));
 	}
 
+	/** Immutable snapshot of precomputed colors. Index i of colors holds the
+	 * color of the value min + i / scale. The last two indices are reserved
+	 * for missing and empty values, so every value maps to a 16 bit index. */
+	static class ColorTable {
+
+		static final int SIZE = 1 << 16;
+		static final int MISSING_INDEX = SIZE - 2;
+		static final int EMPTY_INDEX = SIZE - 1;
+
+		private final int[] colors;
+		private final double min;
+		private final double scale;
+		private final boolean logTransform;
+		private final int missing;
+		private final int empty;
+
+		ColorTable(	final int[] colors, final double min, final double scale,
+								final boolean logTransform, final int missing,
+								final int empty) {
+
+			this.colors = colors;
+			this.min = min;
+			this.scale = scale;
+			this.logTransform = logTransform;
+			this.missing = missing;
+			this.empty = empty;
+		}
+
+		private static int toIndex(final double position) {
+
+			if(position < 0) { return 0; }
+			if(position > GRADIENT_SIZE - 1) { return GRADIENT_SIZE - 1; }
+
+			return (int) (position + 0.5);
+		}
+
+		/** @return Whether every value can be mapped to an index with
+		 *         getIndex(). This is not the case for log transformed values or
+		 *         if there is no valid data range. */
+		boolean isIndexed() {
+
+			return colors != null && !logTransform;
+		}
+
+		/** @param dval
+		 *          The data value.
+		 * @return The index of the color of dval. Only valid if isIndexed(). */
+		int getIndex(final double dval) {
+
+			if(TVModel.isMissing(dval)) { return MISSING_INDEX; }
+			if(TVModel.isEmpty(dval)) { return EMPTY_INDEX; }
+
+			return toIndex((dval - min) * scale);
+		}
+
+		/** @param index
+		 *          An index returned by getIndex().
+		 * @return The ARGB color of the index. */
+		int getColor(final int index) {
+
+			return colors[index];
+		}
+
+		/** @param other
+		 *          Another table, may be null.
+		 * @return Whether both tables map values to the same indices, which is
+		 *         the case if they were built for the same data range. */
+		boolean hasSameIndices(final ColorTable other) {
+
+			return other != null && isIndexed() && other.isIndexed() &&
+							min == other.min && scale == other.scale;
+		}
+	}
+
 	/** resets the ColorExtractor to a default state. */
 	public void setDefaults() {
 
@@ -0,0 +1,151 @@
+/* BEGIN_HEADER                                                   TreeView 3
+ *
+ * Please refer to our LICENSE file if you wish to make changes to this software
+ *
+ * END_HEADER
+ */
+
+package gui.matrix;
+
+import gui.matrix.BandedPixelRenderer.BandTask;
+import gui.matrix.ColorExtractor.ColorTable;
+import model.data.matrix.DataMatrix;
+import util.MemoryBudget;
+
+import java.awt.Rectangle;
+
+/**
+ * Stores the color table index of every cell of a data matrix in 16 bits.
+ * The indices only depend on the data and its range, not on the colors. As
+ * long as neither changes, recoloring maps the stored indices to the new
+ * colors without reading any values from the matrix.
+ */
+class ColorIndexRaster {
+
+	private final DataMatrix dataMatrix;
+	private final int rows;
+	private final int cols;
+	private final short[] indices;
+
+	/* The table for which the indices were calculated, null if there are
+	 * none yet. */
+	private ColorTable indexedTable;
+
+	/**
+	 * @param dataMatrix
+	 *            The matrix of which the indices are stored.
+	 */
+	ColorIndexRaster(final DataMatrix dataMatrix) {
+
+		this.dataMatrix = dataMatrix;
+		this.rows = dataMatrix.getNumRow();
+		this.cols = dataMatrix.getNumCol();
+		this.indices = new short[rows * cols];
+	}
+
+	/**
+	 * Decides whether the indices of a matrix of the given size can be kept in
+	 * memory.
+	 *
+	 * @param rows
+	 *            The amount of rows.
+	 * @param cols
+	 *            The amount of columns.
+	 * @return Whether a raster should be used for the matrix.
+	 */
+	static boolean fits(final int rows, final int cols) {
+
+		final long cells = (long) rows * cols;
+		return cells > 0 && cells <= Integer.MAX_VALUE - 8
+				&& MemoryBudget.fitsOptional(cells * Short.BYTES);
+	}
+
+	/**
+	 * @param matrix
+	 *            A data matrix.
+	 * @return Whether this raster stores the indices of the matrix in its
+	 *         current size.
+	 */
+	boolean isFor(final DataMatrix matrix) {
+
+		return matrix == dataMatrix && matrix.getNumRow() == rows
+				&& matrix.getNumCol() == cols;
+	}
+
+	/**
+	 * Renders a source area of the matrix into the pixel array, like
+	 * BandedPixelRenderer.render(). The indices are recalculated first if the
+	 * table maps values to different indices than before.
+	 *
+	 * @param table
+	 *            The current colors. Must be indexed.
+	 * @param pixels
+	 *            The pixel buffer to draw to.
+	 * @param source
+	 *            The area of the matrix to be rendered.
+	 * @param scanSize
+	 *            The width of a row in the pixel buffer.
+	 */
+	synchronized void paint(final ColorTable table, final int[] pixels,
+			final Rectangle source, final int scanSize) {
+
+		if (!table.hasSameIndices(indexedTable)) {
+			calculateIndices(table);
+		}
+
+		final int firstCol = Math.max(0, source.x);
+		final int firstRow = Math.max(0, source.y);
+		final int width = Math.min(source.x + source.width, cols) - firstCol;
+		final int height = Math.min(source.y + source.height, rows) - firstRow;
+
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		BandedPixelRenderer.runInBands(width, height, new BandTask() {
+
+			@Override
+			public void run(final int bandStart, final int bandEnd) {
+
+				for (int row = bandStart; row < bandEnd; row++) {
+					final int rowStart = (firstRow + row) * cols + firstCol;
+					final int offset = row * scanSize;
+					for (int col = 0; col < width; col++) {
+						pixels[offset + col] = table
+								.getColor(indices[rowStart + col] & 0xFFFF);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads all values of the matrix and stores their indices.
+	 */
+	private void calculateIndices(final ColorTable table) {
+
+		indexedTable = null;
+
+		BandedPixelRenderer.runInBands(cols, rows, new BandTask() {
+
+			@Override
+			public void run(final int bandStart, final int bandEnd) {
+
+				double[] rowValues = null;
+				for (int row = bandStart; row < bandEnd; row++) {
+					rowValues = dataMatrix.getRowValues(row, rowValues);
+
+					final int rowStart = row * cols;
+					for (int col = 0; col < cols; col++) {
+						indices[rowStart + col] = (short) table
+								.getIndex(rowValues[col]);
+					}
+				}
+			}
+		});
+
+		if (!Thread.currentThread().isInterrupted()) {
+			indexedTable = table;
+		}
+	}
+}
@@ -12,7 +12,12 @@ import model.data.matrix.DataMatrix;
 import model.data.matrix.DataModel;
 import util.LogBuffer;
 
+import javax.swing.SwingUtilities;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Observable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Class for Drawing A Colored Grid Representation of a Data Matrix.
@@ -53,6 +58,43 @@ public class DoubleArrayDrawer extends ArrayDrawer {
 	/** The array of data values to be rendered. */
 	protected DataMatrix dataMatrix;
 
+	/** Color indices of the data values, null if the data changed. */
+	private volatile ColorIndexRaster colorIndices;
+
+	/** Downsampled values for large matrices, null if the data changed. */
+	private volatile MatrixTilePyramid tilePyramid;
+
+	/** How blocks of values are combined in downsampled images */
+	private final MatrixTilePyramid.Aggregation tileAggregation =
+			MatrixTilePyramid.Aggregation.MEAN;
+
+	/** Whether observers will be told about calculated tiles. */
+	private final AtomicBoolean tileNotificationPending = new AtomicBoolean();
+
+	/** Tells observers on the EDT that tiles were calculated. Tiles which
+	 * arrive before they were told only cause one notification. */
+	private final Runnable tileListener = new Runnable() {
+
+		@Override
+		public void run() {
+
+			if (tileNotificationPending.getAndSet(true)) {
+				return;
+			}
+
+			SwingUtilities.invokeLater(new Runnable() {
+
+				@Override
+				public void run() {
+
+					tileNotificationPending.set(false);
+					setChanged();
+					notifyObservers(TILES_CALCULATED);
+				}
+			});
+		}
+	};
+
 	/** Constructor does nothing but set defaults */
 	public DoubleArrayDrawer() {
 
@@ -96,6 +138,8 @@ public class DoubleArrayDrawer extends ArrayDrawer {
 
 		if (dataMatrix != matrix) {
 			dataMatrix = matrix;
+			colorIndices = null;
+			discardTiles();
 
 			if (colorExtractor != null) {
 				colorExtractor.setMin(dataMatrix.getMinVal());
@@ -108,6 +152,40 @@ public class DoubleArrayDrawer extends ArrayDrawer {
 		}
 	}
 
+	/**
+	 * Discards the cached color indices of the data values. Needs to be called
+	 * when values of the data matrix change.
+	 */
+	public void setDataChanged() {
+
+		colorIndices = null;
+		discardTiles();
+	}
+
+	/**
+	 * Drops the tile pyramid and stops calculating its tiles.
+	 */
+	private void discardTiles() {
+
+		final MatrixTilePyramid pyramid = tilePyramid;
+		tilePyramid = null;
+		if (pyramid != null) {
+			pyramid.dispose();
+		}
+	}
+
+	@Override
+	public void update(final Observable o, final Object arg) {
+
+		/* Only the colors change if the ColorExtractor notifies us */
+		if (o != colorExtractor) {
+			colorIndices = null;
+			discardTiles();
+		}
+
+		super.update(o, arg);
+	}
+
 	/** sets contrast to 4 times the mean. Works well in practice. */
 	public void recalculateContrast() {
 
@@ -140,10 +218,12 @@ public class DoubleArrayDrawer extends ArrayDrawer {
 	}
 
 	/**
-	 * Paint the array values onto pixels. This method will do averaging if
-	 * multiple values map to the same pixel.
+	 * Paint the array values onto pixels, one pixel per value.
 	 * This updates the pixel array reference to contain new int values which
-	 * represent colors. These are then used by ModelViewProduced.
+	 * represent colors. These are then used by ModelViewProduced. Large areas
+	 * are rendered in parallel bands, see BandedPixelRenderer. The color index
+	 * of each value is cached, so that repainting with changed colors does not
+	 * need to read the data matrix again, see ColorIndexRaster.
 	 *
 	 * @param pixels
 	 *            The pixel buffer to draw to.
@@ -170,17 +250,62 @@ public class DoubleArrayDrawer extends ArrayDrawer {
 					+ "can't be used in paint() in DoubleArrayDrawer.");
 			return;
 		}
-		
-		for(int row = 0; row < source.getHeight(); row++) {
-			for(int col = 0; col < source.getWidth(); col++) {
-				
-				double val = dataMatrix.getValue(col, row);
-				
-				final int t_color = colorExtractor.getARGBColor(val);
-				
-				pixels[col + row * scanSize] = t_color;
-			}
+
+		final ColorExtractor.ColorTable table = colorExtractor.getColorTable();
+		if (!table.isIndexed() || !ColorIndexRaster.fits(
+				dataMatrix.getNumRow(), dataMatrix.getNumCol())) {
+			colorIndices = null;
+			BandedPixelRenderer.render(dataMatrix, colorExtractor, pixels,
+					source, scanSize);
+			return;
+		}
+
+		ColorIndexRaster raster = colorIndices;
+		if (raster == null || !raster.isFor(dataMatrix)) {
+			raster = new ColorIndexRaster(dataMatrix);
+			colorIndices = raster;
+		}
+
+		raster.paint(table, pixels, source, scanSize);
+	}
+
+	/**
+	 * Renders an area of the matrix from a tile pyramid, in which each pixel
+	 * holds the mean of a block of values. Only the tiles of the area are
+	 * calculated, and tiles are cached until the data changes. The colors are
+	 * applied when the image is created. Unless the image has to be complete,
+	 * missing tiles are calculated in the background.
+	 */
+	@Override
+	public BufferedImage paintDownsampled(final Rectangle source,
+			final int maxWidth, final int maxHeight, final boolean complete) {
+
+		if (dataMatrix == null) {
+			LogBuffer.println("Data matrix wasn't set, "
+					+ "can't be used in paintDownsampled() in DoubleArrayDrawer.");
+			return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		}
+
+		MatrixTilePyramid pyramid = tilePyramid;
+		if (pyramid == null || !pyramid.isFor(dataMatrix, tileAggregation)) {
+			discardTiles();
+			pyramid = new MatrixTilePyramid(dataMatrix, tileAggregation,
+					tileListener);
+			tilePyramid = pyramid;
 		}
+
+		final int level = MatrixTilePyramid.getLevel(source.width,
+				source.height, maxWidth, maxHeight);
+		final Rectangle area = MatrixTilePyramid.getLevelArea(source, level);
+
+		final BufferedImage image = new BufferedImage(area.width, area.height,
+				BufferedImage.TYPE_INT_ARGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster()
+				.getDataBuffer()).getData();
+		pyramid.paint(colorExtractor, pixels, level, area, area.width,
+				complete);
+
+		return image;
 	}
 
 	/**
@@ -259,6 +384,22 @@ public class DoubleArrayDrawer extends ArrayDrawer {
 		return colorExtractor.getColor(getValue(x, y));
 	}
 
+	@Override
+	protected void getRowColors(final int row, final int fromCol,
+			final int length, final int[] target) {
+
+		if (dataMatrix == null) {
+			super.getRowColors(row, fromCol, length, target);
+			return;
+		}
+
+		final double[] rowValues = dataMatrix.getRowValues(row, fromCol,
+				length, null);
+		for (int i = 0; i < length; i++) {
+			target[i] = colorExtractor.getARGBColor(rowValues[i]);
+		}
+	}
+
 	/** resets the ArrayDrawer to a default state. */
 	@Override
 	protected void setDefaults() {
@@ -1,6 +1,7 @@
 package gui.matrix;
 
 import model.data.trees.TreeSelection;
+import model.data.trees.TreeSelectionI;
 
 import java.awt.*;
 import java.awt.geom.Ellipse2D;
@@ -156,15 +157,15 @@ public class GlobalMatrixView extends MatrixView {
 		
 		this.selectionRectList = new ArrayList<Rectangle>();
 		
-		if (colSelection.getSelectedIndexes().length > 0) {
+		if (colSelection.getNSelectedIndexes() > 0) {
 
 			List<List<Integer>> arrayBoundaryList;
 			List<List<Integer>> geneBoundaryList;
 
-			arrayBoundaryList = findRectangleBoundaries(
-					colSelection.getSelectedIndexes(), xmap);
-			geneBoundaryList = findRectangleBoundaries(
-					rowSelection.getSelectedIndexes(), ymap);
+			arrayBoundaryList = findRectangleBoundaries(colSelection,
+					xmap);
+			geneBoundaryList = findRectangleBoundaries(rowSelection,
+					ymap);
 
 			// Make the rectangles
 			for (final List<Integer> xBoundaries : arrayBoundaryList) {
@@ -231,54 +232,26 @@ public class GlobalMatrixView extends MatrixView {
 	 * @return
 	 */
 	protected List<List<Integer>> findRectangleBoundaries(
-			final int[] selectedIndexes, final MapContainer map) {
+			final TreeSelectionI selection, final MapContainer map) {
 
 		int sp = 0;
 		int ep = 0;
 
-		final List<List<Integer>> rangeList = new ArrayList<List<Integer>>();
 		final List<List<Integer>> boundaryList = new ArrayList<List<Integer>>();
-		List<Integer> rectangleRange = new ArrayList<Integer>();
 
 		/*
-		 * If array is bigger than 1, check how many consecutive labels are
-		 * selected by finding out which elements are only 1 apart. Store
-		 * consecutive indexes separately to make separate rectangles later.
+		 * Walk over the runs of consecutive selected indexes, each of which
+		 * becomes a separate rectangle, and produce map values (rectangle
+		 * boundaries) for each of them.
 		 */
-		int loopStart = 0;
-		while (loopStart < selectedIndexes.length) {
-
-			for (int i = loopStart; i < selectedIndexes.length; i++) {
-
-				final int current = selectedIndexes[i];
-
-				if (rectangleRange.size() == 0 ||
-					rectangleRange.get(rectangleRange.size() - 1) ==
-					current - 1) {
-					rectangleRange.add(current);
-					loopStart = i + 1;
-
-				} else {
-					break;
-				}
-			}
-
-			rangeList.add(rectangleRange);
-			rectangleRange = new ArrayList<Integer>();
-		}
-
-		/*
-		 * For every selection range produce map values (rectangle boundaries)
-		 * for each rectangle to be drawn.
-		 */
-		for (final List<Integer> selectionRange : rangeList) {
+		for (int start = selection.getNextSelectedIndex(0); start >= 0;) {
 
+			final int end = selection.getNextDeselectedIndex(start);
 			final List<Integer> boundaries = new ArrayList<Integer>(2);
 
-			sp = map.getPixel(selectionRange.get(0));
+			sp = map.getPixel(start);
 			// last pixel of last block
-			ep = map.getPixel(selectionRange.get(selectionRange.size() - 1) + 1)
-					- 1;
+			ep = map.getPixel(end) - 1;
 
 			if (ep < sp) {
 				ep = sp;
@@ -289,6 +262,8 @@ public class GlobalMatrixView extends MatrixView {
 			boundaries.add(ep);
 
 			boundaryList.add(boundaries);
+
+			start = selection.getNextSelectedIndex(end);
 		}
 
 		return boundaryList;
@@ -348,10 +323,8 @@ public class GlobalMatrixView extends MatrixView {
 		List<List<Integer>> arrayBoundaryList;
 		List<List<Integer>> geneBoundaryList;
 
-		arrayBoundaryList = findRectangleBoundaries(
-				colSelection.getSelectedIndexes(), xmap);
-		geneBoundaryList = findRectangleBoundaries(
-				rowSelection.getSelectedIndexes(), ymap);
+		arrayBoundaryList = findRectangleBoundaries(colSelection, xmap);
+		geneBoundaryList = findRectangleBoundaries(rowSelection, ymap);
 
 		/*
 		 * TODO: Instead of just checking the last(/next) selection
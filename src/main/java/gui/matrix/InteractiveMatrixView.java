@@ -228,19 +228,14 @@ public class InteractiveMatrixView extends MatrixView {
 		} else {
 			selectionRectList = new ArrayList<Rectangle>();
 	
-			final int[] selectedArrayIndexes =
-				colSelection.getSelectedIndexes();
-			final int[] selectedGeneIndexes =
-				rowSelection.getSelectedIndexes();
-	
-			if (selectedArrayIndexes.length > 0) {
+			if (colSelection.getNSelectedIndexes() > 0) {
 				List<List<Integer>> arrayBoundaryList;
 				List<List<Integer>> geneBoundaryList;
 	
 				arrayBoundaryList =
-					findRectBoundaries(selectedArrayIndexes, xmap);
+					findRectBoundaries(colSelection, xmap);
 				geneBoundaryList =
-					findRectBoundaries(selectedGeneIndexes, ymap);
+					findRectBoundaries(rowSelection, ymap);
 	
 				// Make the rectangles
 				if (selectionRectList != null) {
@@ -389,52 +384,25 @@ public class InteractiveMatrixView extends MatrixView {
 	 * @return
 	 */
 	protected List<List<Integer>> findRectBoundaries(
-			final int[] selectedIndexes, final MapContainer map) {
+			final TreeSelectionI selection, final MapContainer map) {
 
 		int sp = 0;
 		int ep = 0;
 
-		final List<List<Integer>> rangeList = new ArrayList<List<Integer>>();
 		final List<List<Integer>> boundaryList = new ArrayList<List<Integer>>();
-		List<Integer> rectangleRange = new ArrayList<Integer>();
 
 		/*
-		 * If array is bigger than 1, check how many consecutive labels are
-		 * selected by finding out which elements are only 1 apart. Store
-		 * consecutive indexes separately to make separate rectangles later.
+		 * Walk over the runs of consecutive selected indexes, each of which
+		 * becomes a separate rectangle, and produce map values (rectangle
+		 * boundaries) for each of them.
 		 */
-		int loopStart = 0;
-		while (loopStart < selectedIndexes.length) {
-
-			for (int i = loopStart; i < selectedIndexes.length; i++) {
-
-				final int current = selectedIndexes[i];
-
-				if (rectangleRange.size() == 0 ||
-					rectangleRange.get(rectangleRange.size() - 1) ==
-					current - 1) {
-					rectangleRange.add(current);
-					loopStart = i + 1;
-
-				} else {
-					break;
-				}
-			}
-
-			rangeList.add(rectangleRange);
-			rectangleRange = new ArrayList<Integer>();
-		}
-
-		/*
-		 * For every selection range produce map values (rectangle boundaries)
-		 * for each rectangle to be drawn.
-		 */
-		for (final List<Integer> selectionRange : rangeList) {
+		for (int start = selection.getNextSelectedIndex(0); start >= 0;) {
 
+			final int end = selection.getNextDeselectedIndex(start);
 			final List<Integer> boundaries = new ArrayList<Integer>(2);
 
-			sp = map.getPixel(selectionRange.get(0));
-			ep = map.getPixel(selectionRange.get(selectionRange.size() - 1) + 1);
+			sp = map.getPixel(start);
+			ep = map.getPixel(end);
 			// removed + 1 here due to new image drawing (otherwise selection
 			//was not accurate by 1 pixel)
 
@@ -447,6 +415,8 @@ public class InteractiveMatrixView extends MatrixView {
 			boundaries.add(ep);
 
 			boundaryList.add(boundaries);
+
+			start = selection.getNextSelectedIndex(end);
 		}
 
 		return boundaryList;
@@ -2018,14 +1988,11 @@ public class InteractiveMatrixView extends MatrixView {
 		//Empty the list of
 		indicatorCircleList = new ArrayList<Ellipse2D.Double>();
 
-		final int[] selectedArrayIndexes = colSelection.getSelectedIndexes();
-		final int[] selectedGeneIndexes  = rowSelection.getSelectedIndexes();
-
 		List<List<Integer>> arrayBoundaryList;
 		List<List<Integer>> geneBoundaryList;
 
-		arrayBoundaryList = findRectBoundaries(selectedArrayIndexes,xmap);
-		geneBoundaryList  = findRectBoundaries(selectedGeneIndexes,ymap);
+		arrayBoundaryList = findRectBoundaries(colSelection,xmap);
+		geneBoundaryList  = findRectBoundaries(rowSelection,ymap);
 
 		/*
 		 * TODO: Instead of just checking the last(/next) selection
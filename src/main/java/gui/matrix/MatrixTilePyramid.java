@@ -0,0 +1,614 @@
+/* BEGIN_HEADER                                                   TreeView 3
+ *
+ * Please refer to our LICENSE file if you wish to make changes to this software
+ *
+ * END_HEADER
+ */
+
+package gui.matrix;
+
+import gui.matrix.BandedPixelRenderer.BandTask;
+import model.data.matrix.DataMatrix;
+import model.data.matrix.DataModel;
+import util.LogBuffer;
+import util.MemoryBudget;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Multi-resolution view of a data matrix for rendering matrices which are too
+ * large for one pixel per value. At level k, one pixel stands for a block of
+ * 2^k x 2^k values, which are aggregated into a single value.
+ *
+ * Each level is divided into tiles of TILE_SIZE x TILE_SIZE pixels. Tiles are
+ * only calculated when they are painted and are kept in a cache of limited
+ * size, from which the least recently used tiles are removed. A tile is
+ * combined from the four tiles of the level below it if any of those are
+ * cached, otherwise it is aggregated from the rows of the matrix. Tiles store
+ * the aggregated values rather than colors, so changing the colors does not
+ * require any recalculation.
+ *
+ * Missing tiles can be calculated in the background. Until they are done, the
+ * area is painted from a cached tile of a coarser level, or as missing data.
+ * The listener is told whenever a tile was added, so the area can be painted
+ * again.
+ */
+class MatrixTilePyramid {
+
+	/** How the values of a block are combined into one pixel. */
+	enum Aggregation {
+		/** The mean of all values. */
+		MEAN,
+		/** The value with the largest absolute value, which keeps outliers
+		 * visible. */
+		MAX_ABS
+	}
+
+	static final int TILE_SIZE = 256;
+
+	private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE
+			* (Float.BYTES + Integer.BYTES);
+
+	private static final int MAX_CACHED_TILES = 512;
+
+	/* This many tiles are kept even if memory is short */
+	private static final int MIN_CACHED_TILES = 4;
+
+	/* Calculates requested tiles, shared by all pyramids. Large tiles are
+	 * aggregated in parallel bands, so one thread is enough. */
+	private static final ExecutorService TILE_EXECUTOR = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable r) {
+
+					final Thread thread = new Thread(r, "TileCalculator");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final DataMatrix dataMatrix;
+	private final int rows;
+	private final int cols;
+	private final Aggregation aggregation;
+
+	/* Told on the calculating thread when a requested tile was cached */
+	private final Runnable tileListener;
+
+	/* The highest level, at which the whole matrix fits into one tile */
+	private final int maxLevel;
+
+	private final Map<Long, Tile> tiles;
+
+	/* Requested tiles and the paint call which last requested them. Guarded
+	 * by tiles, like the fields below. */
+	private final Map<Long, Integer> pending;
+	private int generation = 0;
+	private boolean disposed = false;
+
+	/**
+	 * Aggregated values and how many values each of them stands for. Pixels
+	 * without values hold NaN, or EMPTY if the block only had empty values.
+	 */
+	private static class Tile {
+
+		private final float[] values = new float[TILE_SIZE * TILE_SIZE];
+		private final int[] counts = new int[TILE_SIZE * TILE_SIZE];
+
+		private Tile() {
+
+			Arrays.fill(values, (float) DataModel.NAN);
+		}
+	}
+
+	/**
+	 * @param dataMatrix
+	 *            The matrix to be rendered.
+	 * @param aggregation
+	 *            How blocks of values are combined.
+	 * @param tileListener
+	 *            Is run whenever a tile which was calculated in the
+	 *            background is available, or null.
+	 */
+	MatrixTilePyramid(final DataMatrix dataMatrix,
+			final Aggregation aggregation, final Runnable tileListener) {
+
+		this.dataMatrix = dataMatrix;
+		this.rows = dataMatrix.getNumRow();
+		this.cols = dataMatrix.getNumCol();
+		this.aggregation = aggregation;
+		this.tileListener = tileListener;
+
+		int level = 0;
+		while (level < 30 && (Math.max(rows, cols) - 1) >> level >= TILE_SIZE) {
+			level++;
+		}
+		this.maxLevel = level;
+
+		this.pending = new HashMap<Long, Integer>();
+		this.tiles = new LinkedHashMap<Long, Tile>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<Long, Tile> eldest) {
+
+				return size() > MAX_CACHED_TILES
+						|| (size() > MIN_CACHED_TILES
+								&& !MemoryBudget.fitsOptional(TILE_BYTES));
+			}
+		};
+	}
+
+	/**
+	 * Finds the level at which an area of values fits into the available
+	 * pixels, so that no more values than necessary are read.
+	 *
+	 * @param width
+	 *            The amount of columns to be shown.
+	 * @param height
+	 *            The amount of rows to be shown.
+	 * @param maxWidth
+	 *            The available horizontal pixels.
+	 * @param maxHeight
+	 *            The available vertical pixels.
+	 * @return The highest level at which each axis still has at least as many
+	 *         pixels as are available.
+	 */
+	static int getLevel(final int width, final int height, final int maxWidth,
+			final int maxHeight) {
+
+		int level = 0;
+		while (level < 30 && (width >> (level + 1)) >= Math.max(1, maxWidth)
+				&& (height >> (level + 1)) >= Math.max(1, maxHeight)) {
+			level++;
+		}
+
+		return level;
+	}
+
+	/**
+	 * @param source
+	 *            An area of values.
+	 * @param level
+	 *            A level.
+	 * @return The pixels of the level which contain the given values.
+	 */
+	static Rectangle getLevelArea(final Rectangle source, final int level) {
+
+		final int x0 = source.x >> level;
+		final int y0 = source.y >> level;
+		final int x1 = (source.x + Math.max(1, source.width) - 1) >> level;
+		final int y1 = (source.y + Math.max(1, source.height) - 1) >> level;
+
+		return new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+	}
+
+	/**
+	 * @param matrix
+	 *            A data matrix.
+	 * @param agg
+	 *            An aggregation.
+	 * @return Whether this pyramid shows the matrix in its current size with
+	 *         the given aggregation.
+	 */
+	boolean isFor(final DataMatrix matrix, final Aggregation agg) {
+
+		return matrix == dataMatrix && matrix.getNumRow() == rows
+				&& matrix.getNumCol() == cols && agg == aggregation;
+	}
+
+	/**
+	 * Stops calculating tiles for this pyramid, because it is not used
+	 * anymore.
+	 */
+	void dispose() {
+
+		synchronized (tiles) {
+			disposed = true;
+			pending.clear();
+		}
+	}
+
+	/**
+	 * Paints an area of a level into a pixel array.
+	 *
+	 * @param colorExtractor
+	 *            Converts values into colors.
+	 * @param pixels
+	 *            The pixel buffer to draw to.
+	 * @param level
+	 *            The level to be painted.
+	 * @param area
+	 *            The area in pixels of the level. The pixel at (area.x + x,
+	 *            area.y + y) is written to pixels[x + y * scanSize].
+	 * @param scanSize
+	 *            The width of a row in the pixel buffer.
+	 * @param complete
+	 *            Whether missing tiles are calculated before painting. If
+	 *            not, they are requested in the background and a coarser
+	 *            level is painted in their place.
+	 */
+	void paint(final ColorExtractor colorExtractor, final int[] pixels,
+			final int level, final Rectangle area, final int scanSize,
+			final boolean complete) {
+
+		if (!complete) {
+			/* Older requests which are not repeated are not needed anymore */
+			synchronized (tiles) {
+				generation++;
+			}
+		}
+
+		final int firstTileX = area.x / TILE_SIZE;
+		final int firstTileY = area.y / TILE_SIZE;
+		final int lastTileX = (area.x + area.width - 1) / TILE_SIZE;
+		final int lastTileY = (area.y + area.height - 1) / TILE_SIZE;
+
+		for (int ty = firstTileY; ty <= lastTileY; ty++) {
+			for (int tx = firstTileX; tx <= lastTileX; tx++) {
+
+				/* Intersection of the tile with the area */
+				final Rectangle part = new Rectangle(tx * TILE_SIZE, ty
+						* TILE_SIZE, TILE_SIZE, TILE_SIZE).intersection(area);
+
+				final Tile tile = (complete) ? getTile(level, tx, ty)
+						: getCachedTile(getKey(level, tx, ty));
+				if (tile != null) {
+					paintTile(colorExtractor, pixels, area, scanSize, part,
+							tile, 0, tx, ty);
+					continue;
+				}
+
+				request(level, tx, ty);
+				paintCoarser(colorExtractor, pixels, level, area, scanSize,
+						part, tx, ty);
+			}
+		}
+	}
+
+	/**
+	 * Paints a part of a missing tile from the finest cached tile of a
+	 * coarser level which contains it, or as missing data if there is none.
+	 */
+	private void paintCoarser(final ColorExtractor colorExtractor,
+			final int[] pixels, final int level, final Rectangle area,
+			final int scanSize, final Rectangle part, final int tx,
+			final int ty) {
+
+		for (int shift = 1; level + shift <= maxLevel; shift++) {
+			final Tile coarser = getCachedTile(getKey(level + shift,
+					tx >> shift, ty >> shift));
+			if (coarser != null) {
+				paintTile(colorExtractor, pixels, area, scanSize, part,
+						coarser, shift, tx >> shift, ty >> shift);
+				return;
+			}
+		}
+
+		final int missing = colorExtractor.getARGBColor(DataModel.NAN);
+		for (int y = part.y; y < part.y + part.height; y++) {
+			final int offset = (y - area.y) * scanSize - area.x;
+			Arrays.fill(pixels, offset + part.x, offset + part.x + part.width,
+					missing);
+		}
+	}
+
+	/**
+	 * Paints a part of the area from a tile. The tile may belong to a coarser
+	 * level, then each of its pixels covers 2^shift x 2^shift pixels of the
+	 * area.
+	 */
+	private static void paintTile(final ColorExtractor colorExtractor,
+			final int[] pixels, final Rectangle area, final int scanSize,
+			final Rectangle part, final Tile tile, final int shift,
+			final int tx, final int ty) {
+
+		final float[] values = tile.values;
+		for (int y = part.y; y < part.y + part.height; y++) {
+			final int tileOffset = ((y >> shift) - ty * TILE_SIZE) * TILE_SIZE
+					- tx * TILE_SIZE;
+			final int offset = (y - area.y) * scanSize - area.x;
+			for (int x = part.x; x < part.x + part.width; x++) {
+				pixels[offset + x] = colorExtractor
+						.getARGBColor(values[tileOffset + (x >> shift)]);
+			}
+		}
+	}
+
+	private static long getKey(final int level, final int tx, final int ty) {
+
+		return ((long) level << 56) | ((long) ty << 28) | tx;
+	}
+
+	/**
+	 * @return The tile if it is cached, otherwise null.
+	 */
+	private Tile getCachedTile(final long key) {
+
+		synchronized (tiles) {
+			return tiles.get(key);
+		}
+	}
+
+	/**
+	 * @return Whether a tile contains any values of the matrix.
+	 */
+	private boolean exists(final int level, final int tx, final int ty) {
+
+		return ((long) tx * TILE_SIZE << level) < cols
+				&& ((long) ty * TILE_SIZE << level) < rows;
+	}
+
+	/**
+	 * Calculates a missing tile on the executor. Requests which were not
+	 * repeated by the latest paint call are skipped.
+	 */
+	private void request(final int level, final int tx, final int ty) {
+
+		final long key = getKey(level, tx, ty);
+		synchronized (tiles) {
+			if (disposed || pending.put(key, generation) != null) {
+				return;
+			}
+		}
+
+		TILE_EXECUTOR.execute(new Runnable() {
+
+			@Override
+			public void run() {
+
+				synchronized (tiles) {
+					final Integer requested = pending.get(key);
+					if (disposed || requested == null
+							|| requested < generation) {
+						pending.remove(key);
+						return;
+					}
+				}
+
+				try {
+					getTile(level, tx, ty);
+
+				} catch (final RuntimeException e) {
+					LogBuffer.logException(e);
+					LogBuffer.println("Could not calculate a matrix tile.");
+
+				} finally {
+					synchronized (tiles) {
+						pending.remove(key);
+					}
+				}
+
+				if (tileListener != null && !disposed) {
+					tileListener.run();
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return The cached tile, which is calculated if it is not in the cache.
+	 */
+	private Tile getTile(final int level, final int tx, final int ty) {
+
+		final long key = getKey(level, tx, ty);
+
+		final Tile cached = getCachedTile(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		final Tile tile = (level > 0 && hasCachedChild(level, tx, ty)) ? combineChildren(
+				level, tx, ty) : calculateTile(level, tx, ty);
+
+		/* An interrupted calculation may be incomplete */
+		if (Thread.currentThread().isInterrupted()) {
+			return tile;
+		}
+
+		synchronized (tiles) {
+			tiles.put(key, tile);
+		}
+
+		return tile;
+	}
+
+	/**
+	 * @return Whether any of the four tiles of the level below which make up
+	 *         a tile are cached.
+	 */
+	private boolean hasCachedChild(final int level, final int tx, final int ty) {
+
+		synchronized (tiles) {
+			for (int child = 0; child < 4; child++) {
+				if (tiles.containsKey(getKey(level - 1, 2 * tx + (child & 1),
+						2 * ty + (child >> 1)))) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Combines the four tiles of the level below into a tile. Each of them
+	 * makes up one quarter of it, and each block of 2 x 2 of their pixels
+	 * becomes one pixel. Missing tiles of the level below are calculated and
+	 * cached as well.
+	 */
+	private Tile combineChildren(final int level, final int tx, final int ty) {
+
+		final Tile tile = new Tile();
+		final int half = TILE_SIZE / 2;
+
+		for (int child = 0; child < 4; child++) {
+			final int cx = 2 * tx + (child & 1);
+			final int cy = 2 * ty + (child >> 1);
+			if (!exists(level - 1, cx, cy)
+					|| Thread.currentThread().isInterrupted()) {
+				continue;
+			}
+
+			final Tile source = getTile(level - 1, cx, cy);
+			final int offset = (child >> 1) * half * TILE_SIZE + (child & 1)
+					* half;
+
+			for (int y = 0; y < half; y++) {
+				for (int x = 0; x < half; x++) {
+					final int first = 2 * y * TILE_SIZE + 2 * x;
+					combine(source, first, tile, offset + y * TILE_SIZE + x);
+				}
+			}
+		}
+
+		return tile;
+	}
+
+	/**
+	 * Combines a block of 2 x 2 pixels of a tile of the level below, starting
+	 * at sourceIdx, into one pixel.
+	 */
+	private void combine(final Tile source, final int sourceIdx,
+			final Tile target, final int targetIdx) {
+
+		double aggregate = 0;
+		int count = 0;
+		boolean empty = false;
+
+		for (int i = 0; i < 4; i++) {
+			final int idx = sourceIdx + (i & 1) + (i >> 1) * TILE_SIZE;
+			final int c = source.counts[idx];
+			final float value = source.values[idx];
+			if (c == 0) {
+				empty |= Float.isInfinite(value);
+				continue;
+			}
+
+			if (aggregation == Aggregation.MEAN) {
+				aggregate += (double) value * c;
+
+			} else if (count == 0 || Math.abs(value) > Math.abs(aggregate)) {
+				aggregate = value;
+			}
+
+			count += c;
+		}
+
+		if (count > 0) {
+			target.values[targetIdx] = (float) ((aggregation == Aggregation.MEAN) ? aggregate
+					/ count
+					: aggregate);
+			target.counts[targetIdx] = count;
+
+		} else if (empty) {
+			target.values[targetIdx] = (float) DataModel.EMPTY;
+		}
+	}
+
+	/**
+	 * Aggregates the blocks of values which belong to a tile. The pixel rows
+	 * of the tile are calculated in parallel bands.
+	 */
+	private Tile calculateTile(final int level, final int tx, final int ty) {
+
+		final Tile tile = new Tile();
+		final float[] values = tile.values;
+		final int[] tileCounts = tile.counts;
+
+		final int firstCol = (tx * TILE_SIZE) << level;
+		final int firstRow = (ty * TILE_SIZE) << level;
+		final long span = (long) TILE_SIZE << level;
+		final int numCols = (int) Math.min(cols - firstCol, span);
+		final int numRows = (int) Math.min(rows - firstRow, span);
+
+		if (numCols <= 0 || numRows <= 0) {
+			return tile;
+		}
+
+		final int width = ((numCols - 1) >> level) + 1;
+		final int height = ((numRows - 1) >> level) + 1;
+
+		BandedPixelRenderer.runInBands(numCols, height, new BandTask() {
+
+			@Override
+			public void run(final int bandStart, final int bandEnd) {
+
+				final double[] sums = new double[width];
+				final int[] counts = new int[width];
+				final boolean[] empty = new boolean[width];
+				double[] rowValues = null;
+
+				for (int y = bandStart; y < bandEnd; y++) {
+					Arrays.fill(sums, 0);
+					Arrays.fill(counts, 0);
+					Arrays.fill(empty, false);
+
+					final int blockStart = firstRow + (y << level);
+					final int blockEnd = Math.min(firstRow + numRows,
+							blockStart + (1 << level));
+
+					for (int row = blockStart; row < blockEnd; row++) {
+						rowValues = dataMatrix.getRowValues(row, firstCol,
+								numCols, rowValues);
+						for (int col = 0; col < numCols; col++) {
+							add(rowValues[col], col >> level, sums, counts,
+									empty);
+						}
+					}
+
+					final int offset = y * TILE_SIZE;
+					for (int x = 0; x < width; x++) {
+						if (counts[x] > 0) {
+							values[offset + x] = (float) ((aggregation == Aggregation.MEAN) ? sums[x]
+									/ counts[x]
+									: sums[x]);
+							tileCounts[offset + x] = counts[x];
+
+						} else if (empty[x]) {
+							values[offset + x] = (float) DataModel.EMPTY;
+						}
+					}
+				}
+			}
+		});
+
+		return tile;
+	}
+
+	/**
+	 * Adds a value to the aggregate of a pixel. For MAX_ABS, sums holds the
+	 * value with the largest absolute value instead of the sum.
+	 */
+	private void add(final double value, final int x, final double[] sums,
+			final int[] counts, final boolean[] empty) {
+
+		if (Double.isNaN(value)) {
+			return;
+		}
+
+		if (Double.isInfinite(value)) {
+			empty[x] = true;
+			return;
+		}
+
+		if (aggregation == Aggregation.MEAN) {
+			sums[x] += value;
+
+		} else if (counts[x] == 0 || Math.abs(value) > Math.abs(sums[x])) {
+			sums[x] = value;
+		}
+
+		counts[x]++;
+	}
+}
@@ -2,18 +2,21 @@ package gui.matrix;
 
 import gui.GUIFactory;
 import gui.colorPicker.ColorChooserController;
-import gui.general.HintDialog;
 import model.data.trees.TreeSelectionI;
 import model.export.ExportHandler.ExportWorker;
 import model.export.RegionType;
 import net.miginfocom.swing.MigLayout;
 import util.LogBuffer;
+import util.MemoryBudget;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.RasterFormatException;
+import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Basic skeleton for a MatrixView. Can be used as a basis for the interactive
@@ -37,6 +40,27 @@ public abstract class MatrixView extends ModelViewProduced {
 
 	protected final JScrollPane scrollPane;
 
+	/**
+	 * Matrices with more cells are not buffered with one pixel per cell.
+	 * Instead, only the visible area is rendered at screen resolution, see
+	 * ArrayDrawer.paintDownsampled().
+	 */
+	private static final long MAX_BUFFER_CELLS = 1 << 24;
+
+	/* Buffers with more cells show a coarse preview while they are updated */
+	private static final long MIN_PREVIEW_CELLS = 1 << 22;
+
+	/* The preview has this many times fewer pixels per axis than the screen */
+	private static final int PREVIEW_SCALE = 4;
+
+	/* The running background update of the pixels, only accessed on the EDT */
+	private PixelUpdater pixelUpdater;
+
+	/* The matrix area and screen size of the image which is shown for a
+	 * tiled matrix */
+	private Rectangle tiledArea;
+	private Dimension tiledSize;
+
 	/**
 	 * Default so warnings do not pop up...
 	 */
@@ -70,6 +94,13 @@ public abstract class MatrixView extends ModelViewProduced {
 			recalculateOverlay();
 			offscreenValid = false;
 
+		} else if (o == drawer && arg == ArrayDrawer.TILES_CALCULATED) {
+			/* More of the visible area of a tiled matrix can be shown */
+			if (isTiled()) {
+				updatePixelsInBackground();
+			}
+			return;
+
 		} else if (o == drawer && drawer != null) {
 			/*
 			 * signal from drawer means that it need to draw something
@@ -84,8 +115,10 @@ public abstract class MatrixView extends ModelViewProduced {
 			return;
 			
 		} else if (o instanceof ColorChooserController) {
-			updatePixelsWithHint();
-			offscreenValid = false;
+			/* Only the colors changed, the updater installs the recolored
+			 * image and repaints when it is done */
+			updatePixelsInBackground();
+			return;
 
 		} else {
 			LogBuffer.println(viewName() + " got weird update : " + o);
@@ -107,14 +140,27 @@ public abstract class MatrixView extends ModelViewProduced {
 		if (!offscreenValid) {
 			adjustPixelsToMaps();
 			revalidateScreen();
-			setSubImage();
+
+			final boolean tiled = isTiled();
+			if (!tiled) {
+				setSubImage();
+			}
 
 			//Update the saved pixels available in the mapcontainers so that
 			//dependent components will adjust to the new real estate.
 			xmap.adjustToScreenChange();
 			ymap.adjustToScreenChange();
 
-			if(dataChanged) {
+			/* Tiled matrices render the visible area in the background, the
+			 * updater installs the image when it is done */
+			if (tiled) {
+				if (dataChanged || !getVisibleMatrixArea().equals(tiledArea)
+						|| !offscreenSize.equals(tiledSize)) {
+					updatePixelsInBackground();
+				}
+				dataChanged = false;
+
+			} else if(dataChanged) {
 				updatePixels();
 				dataChanged = false;
 			}
@@ -136,13 +182,59 @@ public abstract class MatrixView extends ModelViewProduced {
 		final int tileXsize,final int tileYsize,final RegionType region,
 		final boolean showSelections) {
 
+		export(e,g,xIndent,yIndent,tileXsize,tileYsize,region,showSelections,
+			false);
+	}
+
+	/**
+	 * Export data as rectangles, merging neighboring cells of a row which
+	 * have the same color.
+	 * @param reduceColors - Whether colors are rounded to fewer levels, so
+	 * that more cells can be merged
+	 */
+	public void export(ExportWorker e, final Graphics g,final int xIndent,
+		final int yIndent,final int tileXsize,final int tileYsize,
+		final RegionType region,final boolean showSelections,
+		final boolean reduceColors) {
+
+		export(e,g,null,reduceColors,xIndent,yIndent,tileXsize,tileYsize,
+			region,showSelections);
+	}
+
+	/**
+	 * Export data directly into the pixels of a bitmap image, which is much
+	 * faster than drawing each tile through a Graphics object.
+	 * @param image - An image of TYPE_INT_RGB or TYPE_INT_ARGB
+	 * @param xIndent - The number of pixels to indent the image on the x axis
+	 * @param yIndent - The number of pixels to indent the image on the y axis
+	 */
+	public void export(ExportWorker e, final BufferedImage image,
+		final int xIndent,final int yIndent,
+		final int tileXsize,final int tileYsize,final RegionType region,
+		final boolean showSelections) {
+
+		export(e,null,image,false,xIndent,yIndent,tileXsize,tileYsize,region,
+			showSelections);
+	}
+
+	/**
+	 * Exports a region to the image if there is one, otherwise to g.
+	 */
+	private void export(ExportWorker e, final Graphics g,
+		final BufferedImage image,final boolean reduceColors,
+		final int xIndent,final int yIndent,
+		final int tileXsize,final int tileYsize,final RegionType region,
+		final boolean showSelections) {
+
 		if(region == RegionType.ALL) {
-			exportAll(e,g,xIndent,yIndent,tileXsize,tileYsize,showSelections);
+			exportAll(e,g,image,reduceColors,xIndent,yIndent,tileXsize,
+				tileYsize,showSelections);
 		} else if(region == RegionType.VISIBLE) {
-			exportVisible(e,g,xIndent,yIndent,tileXsize,tileYsize,showSelections);
+			exportVisible(e,g,image,reduceColors,xIndent,yIndent,tileXsize,
+				tileYsize,showSelections);
 		} else if(region == RegionType.SELECTION) {
-			exportSelection(e,g,xIndent,yIndent,tileXsize,tileYsize,
-				showSelections);
+			exportSelection(e,g,image,reduceColors,xIndent,yIndent,tileXsize,
+				tileYsize,showSelections);
 		} else {
 			LogBuffer.println("ERROR: Invalid model.export region: [" + region +
 				"].");
@@ -158,11 +250,13 @@ public abstract class MatrixView extends ModelViewProduced {
 	 * @param tileXsize
 	 * @param tileYsize
 	 */
-	private void exportAll(ExportWorker e, final Graphics g,final int xIndent,final int yIndent,
-		final int tileXsize,final int tileYsize,final boolean showSelections) {
+	private void exportAll(ExportWorker e, final Graphics g,
+		final BufferedImage image,final boolean reduceColors,
+		final int xIndent,final int yIndent,final int tileXsize,final int tileYsize,final boolean showSelections) {
 
 		if(drawer != null) {
-			drawer.paint(e,g,0,0,xmap.getMaxIndex(),ymap.getMaxIndex(),
+			exportRegion(e,g,image,reduceColors,0,0,xmap.getMaxIndex(),
+				ymap.getMaxIndex(),
 				xIndent,yIndent,tileXsize,tileYsize,
 				showSelections,colSelection,rowSelection);
 		}
@@ -176,12 +270,14 @@ public abstract class MatrixView extends ModelViewProduced {
 	 * @param yIndent - The number of points to indent the image on the y axis
 	 * @param size - The number of points in each dimension of a square tile
 	 */
-	private void exportVisible(ExportWorker e, final Graphics g,final int xIndent,
+	private void exportVisible(ExportWorker e, final Graphics g,
+		final BufferedImage image,final boolean reduceColors,final int xIndent,
 		final int yIndent,final int tileXsize,final int tileYsize,
 		final boolean showSelections) {
 
 		if(drawer != null) {
-			drawer.paint(e,g,xmap.getFirstVisible(),ymap.getFirstVisible(),
+			exportRegion(e,g,image,reduceColors,xmap.getFirstVisible(),
+				ymap.getFirstVisible(),
 				xmap.getLastVisible(),ymap.getLastVisible(),
 				xIndent,yIndent,tileXsize,tileYsize,
 				showSelections,colSelection,rowSelection);
@@ -196,13 +292,14 @@ public abstract class MatrixView extends ModelViewProduced {
 	 * @param yIndent - The number of points to indent the image on the y axis
 	 * @param size - The number of points in each dimension of a square tile
 	 */
-	private void exportSelection(ExportWorker e, final Graphics g,final int xIndent,
+	private void exportSelection(ExportWorker e, final Graphics g,
+		final BufferedImage image,final boolean reduceColors,final int xIndent,
 		final int yIndent,final int tileXsize,final int tileYsize,
 		final boolean showSelections) {
 
 		if(drawer != null) {
 			if(colSelection != null && colSelection.getNSelectedIndexes() > 0) {
-				drawer.paint(e,g,colSelection.getMinIndex(),
+				exportRegion(e,g,image,reduceColors,colSelection.getMinIndex(),
 					rowSelection.getMinIndex(),colSelection.getMaxIndex(),
 					rowSelection.getMaxIndex(),
 					xIndent,yIndent,tileXsize,tileYsize,
@@ -213,9 +310,41 @@ public abstract class MatrixView extends ModelViewProduced {
 		}
 	}
 
+	/**
+	 * Paints a region of the data to the image if there is one, otherwise to
+	 * g.
+	 */
+	private void exportRegion(ExportWorker e, final Graphics g,
+		final BufferedImage image,final boolean reduceColors,
+		final int xDataStart,final int yDataStart,
+		final int xDataEnd,final int yDataEnd,final int xIndent,
+		final int yIndent,final int tileXsize,final int tileYsize,
+		final boolean showSelections,final TreeSelectionI colSelection,
+		final TreeSelectionI rowSelection) {
+
+		if(image != null) {
+			drawer.paint(e,image,xDataStart,yDataStart,xDataEnd,yDataEnd,
+				xIndent,yIndent,tileXsize,tileYsize,
+				showSelections,colSelection,rowSelection);
+		} else {
+			drawer.paint(e,g,xDataStart,yDataStart,xDataEnd,yDataEnd,
+				xIndent,yIndent,tileXsize,tileYsize,
+				showSelections,colSelection,rowSelection,reduceColors);
+		}
+	}
+
 	@Override
 	protected void updatePixels() {
 
+		/* The pixels are recalculated now, a running update would replace
+		 * them with colors of older data when it is done */
+		cancelPixelUpdater();
+
+		if (isTiled()) {
+			setSubImage();
+			return;
+		}
+
 		/* TODO remove rectangle dependency of drawer. not needed. */
 		final Rectangle destRect = new Rectangle(0, 0,
 				xmap.getUsedPixels(), ymap.getUsedPixels());
@@ -231,55 +360,197 @@ public abstract class MatrixView extends ModelViewProduced {
 	}
 
 	@Override
-	protected void updatePixelsWithHint() {
-		
-		final HintDialog hint = new HintDialog("Updating Pixels...");
-		
-		final SwingWorker<Void, Void> pixelUpdater = 
-				new SwingWorker<Void, Void>() {
-			
-			@Override
-			protected Void doInBackground() throws Exception {
-				
-				final Rectangle destRect = new Rectangle(0, 0,
-						xmap.getUsedPixels(), ymap.getUsedPixels());
-				
-				final Rectangle sourceRect = new Rectangle(0, 0, 
-						xmap.getTotalTileNum(), ymap.getTotalTileNum());
-
-				if ((sourceRect.x >= 0) && (sourceRect.y >= 0) && drawer != null) {
-					/* Set new offscreenPixels (pixel colors) */
-					drawer.paint(offscreenPixels, sourceRect, destRect,
-							offscreenScanSize);
+	protected void updatePixelsInBackground() {
+
+		/* A newer request supersedes any running update */
+		cancelPixelUpdater();
+
+		pixelUpdater = new PixelUpdater();
+		pixelUpdater.execute();
+	}
+
+	/**
+	 * Stops the running background update, if any, so that it does not
+	 * install its result.
+	 */
+	private void cancelPixelUpdater() {
+
+		if (pixelUpdater != null) {
+			pixelUpdater.cancel(true);
+			pixelUpdater = null;
+		}
+	}
+
+	/**
+	 * Recalculates the pixel colors without blocking the EDT. Large matrices
+	 * first show a coarse preview of the visible area. The finished buffer is
+	 * swapped in on the EDT, unless a newer update was started in the meantime
+	 * or the matrix size changed.
+	 */
+	private class PixelUpdater extends SwingWorker<BufferedImage, BufferedImage> {
+
+		private final boolean tiled;
+		private final Rectangle visibleRect;
+		private final int width;
+		private final int height;
+		private final Dimension screenSize;
+
+		/* Created on the EDT, so the current state of the maps is used */
+		PixelUpdater() {
+
+			this.tiled = isTiled();
+			this.visibleRect = getVisibleMatrixArea();
+			this.width = xmap.getTotalTileNum();
+			this.height = ymap.getTotalTileNum();
+			this.screenSize = new Dimension(offscreenSize);
+		}
+
+		@Override
+		protected BufferedImage doInBackground() throws Exception {
+
+			if (drawer == null || visibleRect.width < 1 
+					|| visibleRect.height < 1) {
+				return null;
+			}
+
+			/* Tiled matrices are rendered at screen size, which is fast */
+			if (tiled) {
+				return drawer.paintDownsampled(visibleRect, screenSize.width,
+						screenSize.height, false);
+			}
+
+			if ((long) width * height > MIN_PREVIEW_CELLS) {
+				final BufferedImage preview = drawer.paintDownsampled(
+						visibleRect, screenSize.width / PREVIEW_SCALE,
+						screenSize.height / PREVIEW_SCALE);
+				if (!isCancelled()) {
+					publish(preview);
 				}
+			}
+
+			if (isCancelled()) {
 				return null;
 			}
-			
-			@Override
-			protected void done() {
-				
-				hint.dispose();
+
+			final Rectangle rect = new Rectangle(0, 0, width, height);
+
+			/* Without room for a second buffer the current one is painted
+			 * in place, which may briefly show a partly updated matrix */
+			if (!MemoryBudget.fitsOptional((long) width * height 
+					* Integer.BYTES)) {
+				final BufferedImage current = getCurrentBuffer(width, height);
+				if (current != null) {
+					drawer.paint(((DataBufferInt) current.getRaster()
+							.getDataBuffer()).getData(), rect, rect, width);
+				}
+				return current;
 			}
-		};
-		
-		SwingUtilities.invokeLater(new Runnable() {
 
-			@Override
-			public void run() {
-				pixelUpdater.execute();
+			final BufferedImage buffer = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			final int[] pixels = ((DataBufferInt) buffer.getRaster()
+					.getDataBuffer()).getData();
+			drawer.paint(pixels, rect, rect, width);
+
+			return buffer;
+		}
+
+		@Override
+		protected void process(final List<BufferedImage> previews) {
+
+			if (pixelUpdater == this && !isCancelled() 
+					&& visibleRect.equals(getVisibleMatrixArea())) {
+				paintImage = previews.get(previews.size() - 1);
+				repaint();
 			}
-		});
+		}
 
-		hint.setVisible(true);
-		
-		try {
-			pixelUpdater.get();
-			
-		} catch(Exception e) {
-			LogBuffer.logException(e);
-			LogBuffer.println("Issue when trying to update pixels.");
-			return;
+		@Override
+		protected void done() {
+
+			if (pixelUpdater != this || isCancelled()) {
+				return;
+			}
+
+			pixelUpdater = null;
+
+			final BufferedImage result;
+			try {
+				result = get();
+
+			} catch (InterruptedException | ExecutionException e) {
+				LogBuffer.logException(e);
+				LogBuffer.println("Issue when trying to update pixels.");
+				return;
+			}
+
+			if (result == null) {
+				return;
+			}
+
+			if (tiled && isTiled()) {
+				if (visibleRect.equals(getVisibleMatrixArea())
+						&& screenSize.equals(offscreenSize)) {
+					paintImage = result;
+					tiledArea = visibleRect;
+					tiledSize = screenSize;
+
+				} else {
+					updatePixelsInBackground();
+					return;
+				}
+
+			} else if (!tiled && !isTiled() && width == xmap.getTotalTileNum()
+					&& height == ymap.getTotalTileNum()) {
+				swapBuffer(result);
+			}
+
+			repaint();
+		}
+	}
+
+	/**
+	 * @return The area of the matrix which is currently visible.
+	 */
+	private Rectangle getVisibleMatrixArea() {
+
+		return new Rectangle(xmap.getFirstVisible(), ymap.getFirstVisible(),
+				xmap.getNumVisible(), ymap.getNumVisible());
+	}
+
+	/**
+	 * @param width - The expected width of the buffer.
+	 * @param height - The expected height of the buffer.
+	 * @return The offscreen buffer, or null if it does not have the expected
+	 * size.
+	 */
+	private synchronized BufferedImage getCurrentBuffer(final int width,
+			final int height) {
+
+		if (!(offscreenImage instanceof BufferedImage)) {
+			return null;
 		}
+
+		final BufferedImage current = (BufferedImage) offscreenImage;
+		if (current.getWidth() != width || current.getHeight() != height) {
+			return null;
+		}
+
+		return current;
+	}
+
+	/**
+	 * Replaces the offscreen buffer with a completely rendered one.
+	 * 
+	 * @param buffer - An image with one pixel per matrix cell.
+	 */
+	private synchronized void swapBuffer(final BufferedImage buffer) {
+
+		offscreenImage = buffer;
+		offscreenPixels = ((DataBufferInt) buffer.getRaster()
+				.getDataBuffer()).getData();
+		offscreenScanSize = buffer.getWidth();
+		setSubImage();
 	}
 
 	@Override
@@ -430,6 +701,16 @@ public abstract class MatrixView extends ModelViewProduced {
 		return ymap;
 	}
 	
+	/**
+	 * @return Whether the matrix is too large to be buffered with one pixel
+	 *         per cell, so that only the visible area is rendered.
+	 */
+	protected boolean isTiled() {
+
+		return (long) xmap.getTotalTileNum() * ymap.getTotalTileNum() 
+				> MAX_BUFFER_CELLS;
+	}
+
 	/**
 	 * Creates a new Image with a new set of 
 	 */
@@ -438,6 +719,12 @@ public abstract class MatrixView extends ModelViewProduced {
 		// correct for zero indexing
 		int x_tiles = xmap.getTotalTileNum();
 		int y_tiles = ymap.getTotalTileNum();
+
+		/* Large matrices only need a placeholder buffer */
+		if (isTiled()) {
+			x_tiles = 1;
+			y_tiles = 1;
+		}
 		
 		int tileCount = x_tiles * y_tiles;
 		
@@ -458,6 +745,11 @@ public abstract class MatrixView extends ModelViewProduced {
 		 * This avoids unnecessary updates to the BufferedImage pixel raster. 
 		 */
 		if (offscreenImage == null) {
+			if (isTiled()) {
+				createNewBuffer(1, 1);
+				return;
+			}
+
 			int x_tiles = xmap.getTotalTileNum();
 			int y_tiles = ymap.getTotalTileNum();
 			createNewBuffer(x_tiles, y_tiles);
@@ -474,6 +766,11 @@ public abstract class MatrixView extends ModelViewProduced {
 		int y = ymap.getFirstVisible();
 		int w = xmap.getNumVisible();
 		int h = ymap.getNumVisible();
+
+		if (isTiled()) {
+			setTiledSubImage(x, y, w, h);
+			return;
+		}
 		
 		try {
 			paintImage = ((BufferedImage)offscreenImage).getSubimage(x, y, w, h);
@@ -486,6 +783,11 @@ public abstract class MatrixView extends ModelViewProduced {
 	}
 	
 	protected void setBoundedSubImage(int x, int y, int w, int h) {
+
+		if (isTiled()) {
+			setTiledSubImage(x, y, w, h);
+			return;
+		}
 		
 		try {
 			paintImage = ((BufferedImage)offscreenImage).getSubimage(x, y, w, h);
@@ -497,6 +799,24 @@ public abstract class MatrixView extends ModelViewProduced {
 		}
 	}
 	
+	/**
+	 * Renders an area of the matrix at the resolution of the screen, for
+	 * matrices which are not buffered with one pixel per cell.
+	 */
+	private void setTiledSubImage(int x, int y, int w, int h) {
+
+		tiledArea = new Rectangle(x, y, w, h);
+		tiledSize = new Dimension(offscreenSize);
+
+		if (drawer == null || w < 1 || h < 1) {
+			paintImage = null;
+			return;
+		}
+
+		paintImage = drawer.paintDownsampled(tiledArea, offscreenSize.width,
+				offscreenSize.height);
+	}
+
 	public void setHasMouse(boolean hasMouse) {
 		
 		this.hasMouse = hasMouse;
@@ -513,6 +833,8 @@ public abstract class MatrixView extends ModelViewProduced {
 	 */
 	public void setDataChanged() {
 
+		/* An update which is still running renders the old data */
+		cancelPixelUpdater();
 		this.dataChanged = true;
 	}
 	
@@ -1047,6 +1047,10 @@ public class MatrixViewController implements Observer, ConfigNodePersistent,
 	 * recalculate pixel color values during the next update. */
 	public void updateMatrixPixels() {
 
+		if(arrayDrawer instanceof DoubleArrayDrawer) {
+			((DoubleArrayDrawer) arrayDrawer).setDataChanged();
+		}
+
 		imView.setDataChanged();
 		gmView.setDataChanged();
 	}
@@ -145,10 +145,10 @@ public abstract class ModelViewProduced extends ModelView {
 	abstract protected void updatePixels();
 	
 	/**
-	 * Separate method than updatePixels which opens a hint dialog during
-	 * pixel updating. This requires some extra Swing EDT threading code.
+	 * Separate method than updatePixels which updates the pixels in the
+	 * background without blocking the EDT. Must be called on the EDT.
 	 */
-	abstract protected void updatePixelsWithHint();
+	abstract protected void updatePixelsInBackground();
 	
 	/**
 	 * Method to adjust some matrix parameters regarding screen fit and mapping.
@@ -0,0 +1,221 @@
+/* BEGIN_HEADER                                                   TreeView 3
+ *
+ * Please refer to our LICENSE file if you wish to make changes to this software
+ *
+ * END_HEADER
+ */
+
+package gui.trees;
+
+import model.data.trees.TreeDrawerNode;
+
+import java.util.Stack;
+
+/**
+ * A 2-d tree over the internal nodes of a tree, keyed by their index and
+ * correlation (branch height), which finds the node closest to a cursor
+ * position without looking at every node.
+ *
+ * The nodes are stored in arrays in the order of a balanced k-d tree: the
+ * median of a range is its middle element, the elements before it are on one
+ * side of it and the elements after it on the other. The split dimension
+ * alternates between index and correlation with the depth. Since the weight
+ * of the correlation is only known when searching, it is applied to the
+ * distance from a split when deciding whether the other side has to be
+ * searched.
+ *
+ * @version Alpha
+ */
+class ClosestNodeIndex {
+
+	private final TreeDrawerNode root;
+	private final TreeDrawerNode[] nodes;
+	private final double[] indexes;
+	private final double[] corrs;
+
+	/* The best node found so far by a search */
+	private TreeDrawerNode closestNode;
+	private double closestDist;
+
+	/**
+	 * Collects all internal nodes of a tree and sorts them into a k-d tree.
+	 *
+	 * @param root
+	 *            The root node of the tree
+	 */
+	public ClosestNodeIndex(final TreeDrawerNode root) {
+
+		this.root = root;
+
+		int count = 0;
+		TreeDrawerNode[] found = new TreeDrawerNode[16];
+
+		final Stack<TreeDrawerNode> remaining = new Stack<TreeDrawerNode>();
+		remaining.push(root);
+		while (!remaining.empty()) {
+
+			final TreeDrawerNode node = remaining.pop();
+			if (node.isLeaf()) {
+				continue;
+			}
+
+			if (count == found.length) {
+				final TreeDrawerNode[] grown = new TreeDrawerNode[count * 2];
+				System.arraycopy(found, 0, grown, 0, count);
+				found = grown;
+			}
+			found[count++] = node;
+
+			remaining.push(node.getLeft());
+			remaining.push(node.getRight());
+		}
+
+		this.nodes = new TreeDrawerNode[count];
+		System.arraycopy(found, 0, nodes, 0, count);
+		this.indexes = new double[count];
+		this.corrs = new double[count];
+		for (int i = 0; i < count; i++) {
+			indexes[i] = nodes[i].getIndex();
+			corrs[i] = nodes[i].getCorr();
+		}
+
+		build(0, count, true);
+	}
+
+	/**
+	 * Arranges a range of nodes around its median and continues with both
+	 * halves.
+	 */
+	private void build(final int lo, final int hi, final boolean byIndex) {
+
+		if (hi - lo < 2) {
+			return;
+		}
+
+		final int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, byIndex);
+		build(lo, mid, !byIndex);
+		build(mid + 1, hi, !byIndex);
+	}
+
+	/**
+	 * Moves the k-th smallest node of a range to position k, with smaller or
+	 * equal nodes before it and larger or equal ones after it.
+	 */
+	private void select(int lo, int hi, final int k, final boolean byIndex) {
+
+		final double[] keys = (byIndex) ? indexes : corrs;
+		while (lo < hi) {
+
+			final double pivot = keys[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+
+				while (keys[i] < pivot) {
+					i++;
+				}
+
+				while (keys[j] > pivot) {
+					j--;
+				}
+
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+
+			if (k <= j) {
+				hi = j;
+
+			} else if (k >= i) {
+				lo = i;
+
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(final int a, final int b) {
+
+		final TreeDrawerNode node = nodes[a];
+		nodes[a] = nodes[b];
+		nodes[b] = node;
+
+		final double index = indexes[a];
+		indexes[a] = indexes[b];
+		indexes[b] = index;
+
+		final double corr = corrs[a];
+		corrs[a] = corrs[b];
+		corrs[b] = corr;
+	}
+
+	/**
+	 * Finds the internal node closest to an (index, correlation) pair.
+	 *
+	 * @param index
+	 *            The index for which to search
+	 * @param corr
+	 *            The correlation for which to search
+	 * @param weight
+	 *            The relative weight to assign to correlation. The distance
+	 *            function will be sqrt((delta(corr) * weight) ^2 +
+	 *            (delta(index))^2)
+	 * @return The closest internal node, or the root if it is a leaf
+	 */
+	public synchronized TreeDrawerNode find(final double index,
+			final double corr, final double weight) {
+
+		if (nodes.length == 0) {
+			return root;
+		}
+
+		closestNode = root;
+		closestDist = root.getDist(index, corr, weight);
+		search(0, nodes.length, true, index, corr, weight);
+
+		final TreeDrawerNode closest = closestNode;
+		closestNode = null;
+
+		return closest;
+	}
+
+	/**
+	 * Searches a range of the k-d tree, the side of the query first.
+	 */
+	private void search(final int lo, final int hi, final boolean byIndex,
+			final double index, final double corr, final double weight) {
+
+		if (lo >= hi) {
+			return;
+		}
+
+		final int mid = (lo + hi) >>> 1;
+
+		final double dx = indexes[mid] - index;
+		final double dc = corrs[mid] - corr;
+		final double dy = dc * weight;
+		final double dist = dx * dx + dy * dy;
+		if (dist < closestDist) {
+			closestNode = nodes[mid];
+			closestDist = dist;
+		}
+
+		// the weight may be negative, so the side is found unweighted
+		final double split = (byIndex) ? dx : dy;
+		if (((byIndex) ? dx : dc) > 0) {
+			search(lo, mid, !byIndex, index, corr, weight);
+			if (split * split < closestDist) {
+				search(mid + 1, hi, !byIndex, index, corr, weight);
+			}
+
+		} else {
+			search(mid + 1, hi, !byIndex, index, corr, weight);
+			if (split * split < closestDist) {
+				search(lo, mid, !byIndex, index, corr, weight);
+			}
+		}
+	}
+}
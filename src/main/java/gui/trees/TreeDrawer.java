@@ -15,6 +15,7 @@ import model.data.trees.TreeSelectionI;
 import util.LogBuffer;
 
 import java.awt.*;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Observable;
 import java.util.Observer;
@@ -70,6 +71,17 @@ abstract class TreeDrawer extends Observable implements Observer {
 	private TreeDrawerNode rootNode;
 	private Hashtable<String, TreeDrawerNode> id2node;
 
+	/*
+	 * Largest branch height of the leaves under each node of a binary tree
+	 * over the leaf indexes, so that the extent of any subtree is known
+	 * without walking it. Built in setBranchHeights().
+	 */
+	private double[] leafCorrMax;
+	private int leafCorrSize;
+
+	/* Finds the node closest to the cursor, built in setBranchHeights() */
+	private ClosestNodeIndex closestNodeIndex;
+
 	/**
 	 * Constructor does nothing but set defaults
 	 */
@@ -83,6 +95,8 @@ abstract class TreeDrawer extends Observable implements Observer {
 		id2node = null;
 		rootNode = null;
 		leafList = null;
+		leafCorrMax = null;
+		closestNodeIndex = null;
 		if (nodeInfo != null) {
 			nodeInfo.deleteObserver(this);
 		}
@@ -253,6 +267,8 @@ abstract class TreeDrawer extends Observable implements Observer {
 		nodeInfo.addObserver(this);
 
 		leafList = new TreeDrawerNode[rowInfo.getNumLabels()];
+		leafCorrMax = null;
+		closestNodeIndex = null;
 		id2node = new Hashtable<String, TreeDrawerNode>(
 				((nodeInfo.getNumLabels() * 4) / 3) / 2, .75f);
 
@@ -385,6 +401,69 @@ abstract class TreeDrawer extends Observable implements Observer {
 				// leafList[i].getParent().getCorr()) / 2);
 			}
 		}
+
+		setLeafCorrMax();
+		closestNodeIndex = new ClosestNodeIndex(rootNode);
+	}
+
+	/**
+	 * Builds the tree of the largest leaf branch heights.
+	 */
+	private void setLeafCorrMax() {
+
+		int size = 1;
+		while (size < leafList.length) {
+			size <<= 1;
+		}
+
+		leafCorrSize = size;
+		leafCorrMax = new double[2 * size];
+		Arrays.fill(leafCorrMax, Double.NEGATIVE_INFINITY);
+		for (int i = 0; i < leafList.length; i++) {
+
+			if (leafList[i] != null) {
+				leafCorrMax[size + i] = leafList[i].getCorr();
+			}
+		}
+
+		for (int i = size - 1; i > 0; i--) {
+			leafCorrMax[i] = Math.max(leafCorrMax[2 * i],
+					leafCorrMax[2 * i + 1]);
+		}
+	}
+
+	/**
+	 * Finds the largest branch height of the leaves in a range of leaf
+	 * indexes, i.e. how far the subtree over those leaves extends.
+	 *
+	 * @param first
+	 *            The first leaf index
+	 * @param last
+	 *            The last leaf index
+	 * @return The largest branch height, or the maximum branch value if it is
+	 *         not known
+	 */
+	public double getMaxLeafCorr(final int first, final int last) {
+
+		if (leafCorrMax == null) {
+			return getCorrMax();
+		}
+
+		double max = Double.NEGATIVE_INFINITY;
+		int lo = Math.max(0, first) + leafCorrSize;
+		int hi = Math.min(leafList.length - 1, last) + leafCorrSize + 1;
+		for (; lo < hi; lo >>= 1, hi >>= 1) {
+
+			if ((lo & 1) == 1) {
+				max = Math.max(max, leafCorrMax[lo++]);
+			}
+
+			if ((hi & 1) == 1) {
+				max = Math.max(max, leafCorrMax[--hi]);
+			}
+		}
+
+		return (max == Double.NEGATIVE_INFINITY) ? getCorrMax() : max;
 	}
 
 	public void setBranchHeightsIter(final LabelInfo nodeInfo,
@@ -453,10 +532,11 @@ abstract class TreeDrawer extends Observable implements Observer {
 		if (rootNode == null)
 			return null;
 
-		final IterativeClosestFinder rcf = new IterativeClosestFinder(index,
-				corr, weight);
+		if (closestNodeIndex == null) {
+			closestNodeIndex = new ClosestNodeIndex(rootNode);
+		}
 
-		return rcf.find(rootNode);
+		return closestNodeIndex.find(index, corr, weight);
 	}
 
 	/**
@@ -501,77 +581,6 @@ abstract class TreeDrawer extends Observable implements Observer {
 		return id2node.get(id);
 	}
 
-	/**
-	 * this is an internal helper class which does a sort of recursive search,
-	 * but doesn't blow stack quite as much as a recursive function
-	 *
-	 * @author Alok Saldanha <alok@genome.stanford.edu>
-	 * @version Alpha
-	 */
-	class IterativeClosestFinder {
-
-		private final double index;
-		private final double correlation;
-		private final double weight;
-
-		/**
-		 * The constructor sets the variables
-		 *
-		 * @param ind
-		 *            The index for which to search
-		 * @param corr
-		 *            The correlation for which to search
-		 * @param wei
-		 *            The relative weight to assign to correlation. The distance
-		 *            function will be sqrt((delta(corr) * weight) ^2 +
-		 *            (delta(index))^2)
-		 */
-		public IterativeClosestFinder(final double ind, final double corr,
-				final double wei) {
-
-			index = ind;
-			correlation = corr;
-			weight = wei;
-		}
-
-		/**
-		 * the find method actually finds the node
-		 */
-		public TreeDrawerNode find(final TreeDrawerNode startNode) {
-
-			if (startNode.isLeaf())
-				return startNode;
-			TreeDrawerNode closest = startNode;
-
-			// some stack allocation...
-			final Stack<TreeDrawerNode> remaining = new Stack<TreeDrawerNode>();
-			remaining.push(startNode);
-
-			while (!remaining.empty()) {
-
-				final TreeDrawerNode testN = remaining.pop();
-
-				if (testN.getDist(index, correlation, weight) < closest
-						.getDist(index, correlation, weight)) {
-					closest = testN;
-				}
-
-				// lots of stack allocation...
-				final TreeDrawerNode left = testN.getLeft();
-				final TreeDrawerNode right = testN.getRight();
-				if (!left.isLeaf()) {
-					remaining.push(left);
-				}
-
-				if (!right.isLeaf()) {
-					remaining.push(right);
-				}
-			}
-
-			return closest;
-		}
-	}
-
 	public static double parseDouble(final String string) {
 		final Double val = Double.valueOf(string);
 		return val.doubleValue();
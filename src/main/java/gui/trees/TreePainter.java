@@ -13,6 +13,7 @@ import model.data.trees.TreeSelectionI;
 import util.LogBuffer;
 
 import java.awt.*;
+import java.util.Arrays;
 import java.util.Stack;
 
 /**
@@ -24,8 +25,22 @@ import java.util.Stack;
 
 public class TreePainter extends TreeDrawer {
 
+	/* Flags of the nodes visited by drawVisible() */
+	private static final int HOVERED = 1;
+	private static final int SELECTED = 2;
+	private static final int UNDER_SELECTED = 4;
+	private static final int DOTS_ONLY = 8;
+	private static final int COLLAPSED = 16;
+
 	private boolean isLeft;
 
+	/* Work arrays of drawVisible(), kept between paints */
+	private TreeDrawerNode[] nodeStack = new TreeDrawerNode[64];
+	private int[] stackFlags = new int[64];
+	private TreeDrawerNode[] drawOrder = new TreeDrawerNode[64];
+	private int[] drawFlags = new int[64];
+	private TreeDrawerNode[] dotNodes = new TreeDrawerNode[64];
+
 	/**
 	 * Paints the entire tree
 	 * @param graphics - the graphics object with which to paint
@@ -122,6 +137,19 @@ public class TreePainter extends TreeDrawer {
 		nd.draw(root,hoverIndex,treeSelection);
 	}
 
+	private static TreeDrawerNode[] ensureCapacity(
+		final TreeDrawerNode[] array,final int size) {
+
+		return((size <= array.length) ? array :
+			Arrays.copyOf(array,Math.max(size,array.length * 2)));
+	}
+
+	private static int[] ensureCapacity(final int[] array,final int size) {
+
+		return((size <= array.length) ? array :
+			Arrays.copyOf(array,Math.max(size,array.length * 2)));
+	}
+
 	/**
 	 * this is an internal helper class which does a sort of recursive drawing
 	 *
@@ -138,6 +166,11 @@ public class TreePainter extends TreeDrawer {
 		private final double maxInd;
 		private final Rectangle dest;
 
+		/* The exported indexes which intersect the clip of the graphics, e.g.
+		 * when only one strip of an image is drawn */
+		private int clipStartIndex = Integer.MIN_VALUE;
+		private int clipEndIndex = Integer.MAX_VALUE;
+
 		/**
 		 * The constructor sets the variables
 		 *
@@ -182,9 +215,8 @@ public class TreePainter extends TreeDrawer {
 		}
 
 		/**
-		 * Wrapper for drawDFS, which has an additional parameter for recursion
-		 * in order to propagate the hovered node state down its subtree and
-		 * thus draw the hovered node's subtree red.  It also draws dots over
+		 * Wrapper for drawVisible, which propagates the hovered node state
+		 * down its subtree and thus draws the hovered node's subtree red.  It also draws dots over
 		 * top of the tree for all selected subtrees and leaves, as well as the
 		 * hovered node after the tree is finished (so that the dots don't get
 		 * drawn over).
@@ -196,11 +228,10 @@ public class TreePainter extends TreeDrawer {
 		public void draw(final TreeDrawerNode node,final int hoverIndex,
 			final TreeSelectionI treeSelection) {
 
-			Stack<TreeDrawerNode> selectedNodeStack =
-				drawDFS(node,hoverIndex,false,treeSelection);
+			final int numDots = drawVisible(node,hoverIndex,treeSelection);
 
 			graphics.setColor(new Color(197,181,66));//dark yellow
-			drawNodeDots(selectedNodeStack);
+			drawNodeDots(numDots);
 			if(aNodeIsHovered()) {
 				graphics.setColor(Color.RED);
 				drawNodeDot(getHoveredNode());
@@ -222,6 +253,8 @@ public class TreePainter extends TreeDrawer {
 			final int yIndent,final int size,final int startIndex,
 			final int endIndex,final boolean showSelections) {
 
+			setExportClip(xIndent,yIndent,size,startIndex);
+
 			Stack<TreeDrawerNode> selectedNodeStack =
 				exportDFS(node,treeSelection,xIndent,yIndent,size,
 					node.getMinCorr(),node.getMaxCorr(),startIndex,endIndex,
@@ -234,6 +267,29 @@ public class TreePainter extends TreeDrawer {
 			}
 		}
 
+		/**
+		 * Finds the indexes whose tiles intersect the clip of the graphics
+		 * object, with a margin of one index for the width of the lines
+		 * @param xIndent - where to start drawing the (entire) tree
+		 * @param yIndent - where to start drawing the (entire) tree
+		 * @param size - The size of an edge of a tile in the matrix
+		 * @param startIndex - The data index where the drawing starts
+		 */
+		private void setExportClip(final int xIndent,final int yIndent,
+			final int size,final int startIndex) {
+
+			final Rectangle clip = graphics.getClipBounds();
+			if(clip == null || size <= 0) {
+				return;
+			}
+
+			final int indent = (isLeft ? yIndent : xIndent);
+			final int lo = (isLeft ? clip.y : clip.x);
+			final int hi = lo + (isLeft ? clip.height : clip.width) - 1;
+			clipStartIndex = startIndex + Math.floorDiv(lo - indent,size) - 1;
+			clipEndIndex = startIndex + Math.floorDiv(hi - indent,size) + 1;
+		}
+
 		/**
 		 * Determines whether a given node is the hovered node
 		 * @param node - the node to test
@@ -257,100 +313,173 @@ public class TreePainter extends TreeDrawer {
 		}
 
 		/**
-		 * The drawing method works recursively and returns a stack of the
-		 * selected nodes
-		 * @param node - The top node to draw
+		 * Draws the visible part of a tree without recursion and collects the
+		 * nodes on top of which selection dots are drawn. Subtrees outside of
+		 * the visible index range are skipped. Subtrees whose leaves all fall
+		 * on the same pixel are drawn as a single line. Nodes are drawn
+		 * children first, like a recursive post-order drawing would.
+		 * @param root - The top node to draw
 		 * @param hoverIndex - The data index the cursor is in alignment with
 		 *                     over the matrix
-		 * @param isNodeHovered - whether we're under a hovered node
 		 * @param treeSelection - contains the selected data indexes
-		 * @return a stack of selected nodes (either only the top ones or a
-		 *         group of disjoint selected nodes, including leaves)
+		 * @return the number of nodes in dotNodes (either only the top ones or
+		 *         a group of disjoint selected nodes, including leaves)
 		 */
-		public Stack<TreeDrawerNode> drawDFS(final TreeDrawerNode node,
-			final int hoverIndex,boolean isNodeHovered,
-			final TreeSelectionI treeSelection) {
-
-			Stack<TreeDrawerNode> returnStack = new Stack<TreeDrawerNode>();
+		public int drawVisible(final TreeDrawerNode root,
+			final int hoverIndex,final TreeSelectionI treeSelection) {
+
+			int stackSize = 0;
+			int numDrawn = 0;
+			int numDots = 0;
+
+			nodeStack[stackSize] = root;
+			stackFlags[stackSize++] = 0;
+
+			while(stackSize > 0) {
+				stackSize--;
+				final TreeDrawerNode node = nodeStack[stackSize];
+				int flags = stackFlags[stackSize];
+				nodeStack[stackSize] = null;
+
+				//If we've hit the hovered node, set it to true for this and
+				//all child nodes
+				if(isNodeHovered(node)) {
+					flags |= HOVERED;
+				}
 
-			//If we've hit the hovered node, set it to true for this and all
-			//child nodes
-			if(isNodeHovered(node)) {
-				isNodeHovered = true;
-			}
+				//Only the top nodes of selected subtrees get a dot
+				final boolean selected = isNodeSelected(node,treeSelection);
+				if(selected && (flags & UNDER_SELECTED) == 0) {
+					dotNodes = ensureCapacity(dotNodes,numDots + 1);
+					dotNodes[numDots++] = node;
+				}
 
-			// just return if no subkids visible.
-			if((node.getMaxIndex() < minInd) ||
-				(node.getMinIndex() > maxInd)) {
-				if(isNodeSelected(node,treeSelection)) {
-					returnStack.push(node);
+				if(node.isLeaf()) {
+					continue;
 				}
-				return(returnStack);
-			}
 
-			//These will keep track of the selected nodes so that the dots can
-			//be drawn on top and the branch colors can be determined
-			Stack<TreeDrawerNode> leftDotNodeStack  =
-				new Stack<TreeDrawerNode>();
-			Stack<TreeDrawerNode> rightDotNodeStack =
-				new Stack<TreeDrawerNode>();
+				final boolean collapsed = isBelowOnePixel(node);
+				if((flags & DOTS_ONLY) == 0 &&
+					node.getMaxIndex() >= minInd &&
+					node.getMinIndex() <= maxInd) {
 
-			/* Recursive calls (leaves will be drawn first) */
+					drawOrder = ensureCapacity(drawOrder,numDrawn + 1);
+					drawFlags = ensureCapacity(drawFlags,numDrawn + 1);
+					drawOrder[numDrawn] = node;
+					drawFlags[numDrawn++] = (flags & HOVERED) |
+						(selected ? SELECTED : 0) | (collapsed ? COLLAPSED : 0);
+				}
+				// just skip if no subkids visible.
+				else if((flags & DOTS_ONLY) == 0) {
+					continue;
+				}
 
-			//Do the left side
-			if(!node.getLeft().isLeaf()) {
-				leftDotNodeStack = drawDFS(node.getLeft(),hoverIndex,
-					isNodeHovered,treeSelection);
-			}
-			//We do not recurse down to the leaves, so add them to the stack
-			//here
-			else if(treeSelection != null && treeSelection.isIndexSelected(
-				(int) node.getLeft().getIndex())) {
+				int childFlags = (flags & HOVERED) |
+					(selected ? UNDER_SELECTED : 0);
+				if(collapsed || (flags & DOTS_ONLY) != 0) {
+					//Nothing more is drawn, but partly selected subtrees
+					//still need their dots
+					if(selected || !hasSelectedLeaf(node,treeSelection)) {
+						continue;
+					}
+					childFlags = DOTS_ONLY;
+				}
 
-				leftDotNodeStack.push(node.getLeft());
+				//The right child is pushed last so it is visited first, which
+				//makes the reverse visiting order a post-order
+				nodeStack = ensureCapacity(nodeStack,stackSize + 2);
+				stackFlags = ensureCapacity(stackFlags,stackSize + 2);
+				nodeStack[stackSize] = node.getLeft();
+				stackFlags[stackSize++] = childFlags;
+				nodeStack[stackSize] = node.getRight();
+				stackFlags[stackSize++] = childFlags;
 			}
 
-			//Do the right side
-			if(!node.getRight().isLeaf()) {
-				rightDotNodeStack = drawDFS(node.getRight(),hoverIndex,
-					isNodeHovered,treeSelection);
+			// finally draw
+			for(int i = numDrawn - 1;i >= 0;i--) {
+				final TreeDrawerNode node = drawOrder[i];
+				final boolean hovered = (drawFlags[i] & HOVERED) != 0;
+				final boolean selected = (drawFlags[i] & SELECTED) != 0;
+				if((drawFlags[i] & COLLAPSED) != 0) {
+					drawCollapsed(node,hoverIndex,hovered,selected);
+				} else {
+					drawSingle(node,hoverIndex,hovered,selected);
+				}
+				drawOrder[i] = null;
 			}
-			//We do not recurse down to the leaves, so add them to the stack
-			//here
-			else if(treeSelection != null && treeSelection.isIndexSelected(
-				(int) node.getRight().getIndex())) {
 
-				rightDotNodeStack.push(node.getRight());
-			}
+			return(numDots);
+		}
 
-			boolean thisNodeIsSelected = false;
+		/**
+		 * Determines whether all leaves of a node are drawn on the same pixel
+		 * @param node - the tree node to check
+		 * @return boolean
+		 */
+		private boolean isBelowOnePixel(final TreeDrawerNode node) {
 
-			//If the stack returned from each child contains 1 selected
-			//node and that node is the child of this node, then we're not going
-			//to draw dots for those nodes and just draw a dot for this node.
-			//Ignore the child nodes and push this node onto a new stack to
-			//return.  Otherwise, all all the selected subtrees & leaves on top
-			//of which to draw dots.
-			if(!leftDotNodeStack.isEmpty()   && !rightDotNodeStack.isEmpty()  &&
-				leftDotNodeStack.size() == 1 && rightDotNodeStack.size() == 1 &&
-				leftDotNodeStack.peek().getId()  == node.getLeft().getId()    &&
-				rightDotNodeStack.peek().getId() == node.getRight().getId()) {
+			final LinearTransformation indexT = (isLeft) ? yT : xT;
 
-				thisNodeIsSelected = true;
-				returnStack.push(node);
+			return((int) indexT.transform(node.getMinIndex() + .5) ==
+				(int) indexT.transform(node.getMaxIndex() + .5));
+		}
+
+		/**
+		 * Draws a subtree which is thinner than a pixel as one line from the
+		 * node to the end of its leaves
+		 * @param node - the top node of the subtree
+		 * @param hoverIndex - the data index corresponding to the cursor
+		 * @param isHovered - if we are under a hovered node
+		 * @param isSelected - if this node is selected
+		 */
+		private void drawCollapsed(final TreeDrawerNode node,
+			final int hoverIndex,final boolean isHovered,
+			final boolean isSelected) {
+
+			final int first = (int) node.getMinIndex();
+			final int last = (int) node.getMaxIndex();
+			final double leafCorr = getMaxLeafCorr(first,last);
+			final boolean hovered = (hoverIndex >= first && hoverIndex <= last);
+
+			if(hovered || isHovered) {
+				graphics.setColor(Color.red);
 			} else {
-				if(!leftDotNodeStack.isEmpty()) {
-					returnStack.addAll(leftDotNodeStack);
-				}
-				if(!rightDotNodeStack.isEmpty()) {
-					returnStack.addAll(rightDotNodeStack);
-				}
+				graphics.setColor(node.getColor());
 			}
 
-			// finally draw
-			drawSingle(node,hoverIndex,isNodeHovered,thisNodeIsSelected);
+			int nodeCoord = 0;
+			int leafCoord = 0;
+			int indexCoord = 0;
+			if(isLeft) {
+				nodeCoord = (int) xT.transform(node.getCorr());
+				leafCoord = (int) xT.transform(leafCorr);
+				indexCoord = (int) yT.transform(node.getIndex() + .5);
+				graphics.drawLine(nodeCoord,indexCoord,leafCoord,indexCoord);
+			} else {
+				nodeCoord = (int) yT.transform(node.getCorr());
+				leafCoord = (int) yT.transform(leafCorr);
+				indexCoord = (int) xT.transform(node.getIndex() + .5);
+				graphics.drawLine(indexCoord,nodeCoord,indexCoord,leafCoord);
+			}
 
-			return(returnStack);
+			//Draw an outline around the line to either bold a hovered
+			//branch or highlight a selected branch
+			if(hovered || isSelected) {
+				if(!hovered) {
+					graphics.setColor(new Color(249,238,160));//yellow
+				}
+				if(isLeft) {
+					graphics.drawLine(nodeCoord,indexCoord - 1,leafCoord,
+						indexCoord - 1);
+					graphics.drawLine(nodeCoord,indexCoord + 1,leafCoord,
+						indexCoord + 1);
+				} else {
+					graphics.drawLine(indexCoord - 1,nodeCoord,indexCoord - 1,
+						leafCoord);
+					graphics.drawLine(indexCoord + 1,nodeCoord,indexCoord + 1,
+						leafCoord);
+				}
+			}
 		}
 
 		/**
@@ -377,9 +506,10 @@ public class TreePainter extends TreeDrawer {
 	
 			Stack<TreeDrawerNode> returnStack = new Stack<TreeDrawerNode>();
 
-			// just return if no subkids visible.
-			if((node.getMaxIndex() < startIndex) ||
-				(node.getMinIndex() > endIndex)) {
+			// just return if no subkids visible.  Nodes outside of the clip
+			// are not visible either, their selection dots included.
+			if((node.getMaxIndex() < Math.max(startIndex,clipStartIndex)) ||
+				(node.getMinIndex() > Math.min(endIndex,clipEndIndex))) {
 				if(isNodeSelected(node,treeSelection)) {
 					returnStack.push(node);
 				}
@@ -467,16 +597,29 @@ public class TreePainter extends TreeDrawer {
 			if(treeSelection == null) {
 				return false;
 			}
-			
-			boolean selected = true;
-			for(int i = (int) node.getLeftLeaf().getIndex();
-				i <= (int) node.getRightLeaf().getIndex();i++) {
-				if(!treeSelection.isIndexSelected(i)) {
-					selected = false;
-					break;
-				}
+
+			//The leaves of a subtree have consecutive indexes
+			return(treeSelection.getNextDeselectedIndex(
+				(int) node.getMinIndex()) > (int) node.getMaxIndex());
+		}
+
+		/**
+		 * Determines whether any leaf under a given node has an index that is
+		 * selected
+		 * @param node - the tree node to check the leaves of
+		 * @param treeSelection - contains the selected data indexes
+		 * @return boolean
+		 */
+		private boolean hasSelectedLeaf(final TreeDrawerNode node,
+			final TreeSelectionI treeSelection) {
+
+			if(treeSelection == null) {
+				return false;
 			}
-			return(selected);
+
+			final int next =
+				treeSelection.getNextSelectedIndex((int) node.getMinIndex());
+			return(next >= 0 && next <= (int) node.getMaxIndex());
 		}
 
 		/**
@@ -540,16 +683,13 @@ public class TreePainter extends TreeDrawer {
 		}
 
 		/**
-		 * Draws all the tree node dots in a stack of nodes
-		 * @param nodeStack
+		 * Draws the tree node dots collected by drawVisible
+		 * @param numDots - the number of nodes in dotNodes
 		 */
-		public void drawNodeDots(final Stack<TreeDrawerNode> nodeStack) {
-			if(nodeStack == null || nodeStack.isEmpty()) {
-				return;
-			}
-			while(!nodeStack.isEmpty()) {
-				TreeDrawerNode node = nodeStack.pop();
-				drawNodeDot(node);
+		public void drawNodeDots(final int numDots) {
+			for(int i = numDots - 1;i >= 0;i--) {
+				drawNodeDot(dotNodes[i]);
+				dotNodes[i] = null;
 			}
 		}
 
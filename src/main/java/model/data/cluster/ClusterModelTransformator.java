@@ -143,11 +143,13 @@ public class ClusterModelTransformator {
 	 */
 	private void reorderClusteredModel() {
 
-		// Reorder the data matrix
+		// Reorder the data matrix, axes without new ordering keep their order
 		final TVDataMatrix origMatrix = (TVDataMatrix) model.getDataMatrix();
 		int[] reorderedRowIndices = rowCAD.getReorderedIdxs();
 		int[] reorderedColIndices = colCAD.getReorderedIdxs();
-		origMatrix.reorderMatrixData(reorderedRowIndices, reorderedColIndices);
+		origMatrix.reorderMatrixData(
+			(reorderedRowIndices.length > 0) ? reorderedRowIndices : null,
+			(reorderedColIndices.length > 0) ? reorderedColIndices : null);
 	  
 	  // Update labels associated with DataModel
 		// Rows
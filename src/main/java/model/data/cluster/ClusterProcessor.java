@@ -75,7 +75,7 @@ public class ClusterProcessor {
 	 * @return m * m distance matrix where m is the clustered axis length of the
 	 *         original data matrix.
 	 */
-	public double[][] calcDistance(final int distMeasure, final int axis) {
+	public DistanceMatrix calcDistance(final int distMeasure, final int axis) {
 
 		try {
 			this.distTask = new DistanceWorker(distMeasure, axis);
@@ -90,7 +90,7 @@ public class ClusterProcessor {
 		} catch (InterruptedException | ExecutionException e) {
 			LogBuffer.logException(e);
 			LogBuffer.println(e.getLocalizedMessage());
-			return new double[][] { { 0 }, { 0 } };
+			return new DistanceMatrix(0);
 		}
 	}
 
@@ -138,7 +138,8 @@ public class ClusterProcessor {
 	 * so it can respond appropriately. Input data is translated into output
 	 * data here.
 	 */
-	private class DistanceWorker extends SwingWorker<double[][], Integer> {
+	private class DistanceWorker extends SwingWorker<DistanceMatrix, Integer>
+			implements DistMatrixCalculator.RowProgress {
 
 		private final int distMeasure;
 		private final int axis;
@@ -166,53 +167,47 @@ public class ClusterProcessor {
 		}
 
 		@Override
-		public double[][] doInBackground() {
+		public void rowDone(final int rowsDone) {
 
-			/* Calculate distance matrix */
-			double[][] data = null;
-			if (axis == ClusterDialogController.ROW_IDX) {
-				data = originalMatrix.getExprData();
+			publish(rowsDone);
+		}
 
-			} else {
-				data = formatColData(originalMatrix.getExprData());
+		@Override
+		public DistanceMatrix doInBackground() {
+
+			/* Calculate distance matrix */
+			final double[][] data = getAxisData();
+			if (isCancelled()) {
+				return new DistanceMatrix(0);
 			}
 
-			if (data != null && !isCancelled()) {
+			if (data != null) {
 				final DistMatrixCalculator dCalc = new DistMatrixCalculator(
 						data, distMeasure, axis);
 
 				/* Ranking data if Spearman was chosen */
 				if (distMeasure == DistMatrixCalculator.SPEARMAN) {
-					final double[][] rankMatrix = 
-							new double[data.length][data[0].length];
-
-					/* Iterate over every row of the matrix. */
-					for (int i = 0; i < rankMatrix.length; i++) {
+					/* Iterate over every row of the matrix. The ranks
+					 * replace the values, data is a copy of the matrix. */
+					for (int i = 0; i < data.length; i++) {
 
 						if (isCancelled()) {
-							return new double[0][];
+							return new DistanceMatrix(0);
 						}
 						
 						publish(i);
-						rankMatrix[i] = dCalc.spearman(data[i]);
+						data[i] = dCalc.spearman(data[i]);
 					}
 
-					dCalc.setTaskData(rankMatrix);
-
 					/* Keep track of progress */
 					pBarCount += axisSize;
 				}
 
 				try {
-					/* Loop generates rows for distance matrix */
-					/* take a row */
-					for (int i = 0; i < data.length; i++) {
-
-						if (isCancelled()) {
-							return new double[0][];
-						}
-						publish(i);
-						dCalc.calcRow(i);
+					/* Generates all rows for distance matrix */
+					dCalc.setParallel(true);
+					if (!dCalc.calcAllRows(this)) {
+						return new DistanceMatrix(0);
 					}
 
 					return dCalc.getDistanceMatrix();
@@ -236,7 +231,7 @@ public class ClusterProcessor {
 
 			LogBuffer.println("Distance matrix could not be calculated and"
 					+ " was set to values of 0.");
-			return new double[][] { { 0 }, { 0 } };
+			return new DistanceMatrix(0);
 		}
 
 		@Override
@@ -252,17 +247,44 @@ public class ClusterProcessor {
 		}
 
 		/**
-		 * This method uses the unformatted matrix data list and splits it up
-		 * into the columns.
+		 * Copies the vectors of the clustered axis out of the data matrix.
+		 * Rows are read one at a time, so clustering columns transposes the
+		 * data directly instead of copying the whole matrix first.
 		 *
-		 * @param unformattedData
-		 *            The non-formatted, loaded data.
-		 * @return
+		 * @return One array per row or column of the clustered axis, or null
+		 *         if the matrix has no data.
 		 */
-		public double[][] formatColData(final double[][] unformattedData) {
+		private double[][] getAxisData() {
+
+			final int rows = originalMatrix.getNumRow();
+			final int cols = originalMatrix.getNumCol();
+			if (rows == 0 || cols == 0) {
+				return null;
+			}
+
+			final boolean byRow = (axis == ClusterDialogController.ROW_IDX);
+			final double[][] data = (byRow) ? new double[rows][]
+					: new double[cols][rows];
 
-			final DataFormatter formattedData = new DataFormatter();
-			return formattedData.splitColumns(unformattedData);
+			double[] rowValues = null;
+			for (int i = 0; i < rows; i++) {
+
+				if (isCancelled()) {
+					return null;
+				}
+
+				if (byRow) {
+					data[i] = originalMatrix.getRowValues(i, null);
+					continue;
+				}
+
+				rowValues = originalMatrix.getRowValues(i, rowValues);
+				for (int j = 0; j < cols; j++) {
+					data[j][i] = rowValues[j];
+				}
+			}
+
+			return data;
 		}
 	}
 
@@ -340,8 +362,14 @@ public class ClusterProcessor {
 		private ClusteredAxisData doHierarchicalCluster() {
 			
 			
-			final HierCluster hierCluster = new HierCluster(linkMethod, distMatrix,
-			                                              axisID);
+			/* Reducible linkages can use the O(n^2) nearest-neighbor chain */
+			final HierClusterEngine hierCluster;
+			if (NNChainCluster.isSupported(linkMethod)) {
+				hierCluster = new NNChainCluster(linkMethod, distMatrix, axisID);
+
+			} else {
+				hierCluster = new HierCluster(linkMethod, distMatrix, axisID);
+			}
 
 			/*
 			 * Continue process until distMatrix has a size of 1, This array
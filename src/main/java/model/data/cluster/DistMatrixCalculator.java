@@ -6,7 +6,13 @@ import util.LogBuffer;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is used to calculate a distance matrix based on input data. It
@@ -28,6 +34,12 @@ public class DistMatrixCalculator {
 	public static final int EUCLIDEAN = 6;
 	public static final int CITY_BLOCK = 7;
 
+	/*
+	 * Amount of chunks per available core for parallel calculation. More
+	 * chunks than cores keep all workers busy if some rows take longer.
+	 */
+	private static final int CHUNKS_PER_CORE = 4;
+
 	/*
 	 * reference for the matrix to be clustered. Spearman Rank generates the
 	 * rank matrix, which needs to be clustered. Without reference variable, the
@@ -39,7 +51,31 @@ public class DistMatrixCalculator {
 	private final int distMeasure;
 
 	/* The distance matrix object to be filled and returned */
-	private final double[][] distMatrix;
+	private final DistanceMatrix distMatrix;
+
+	/* Whether rows are calculated on multiple cores */
+	private boolean parallel;
+
+	/**
+	 * Callback used by the parallel calculation to report progress and to
+	 * check whether the calculation should be aborted. The worker thread which
+	 * runs the calculation usually implements it.
+	 */
+	public interface RowProgress {
+
+		/**
+		 * @return Whether the calculation was cancelled by the user.
+		 */
+		boolean isCancelled();
+
+		/**
+		 * Called after each finished row. May be called from any thread.
+		 *
+		 * @param rowsDone
+		 *            The total amount of rows which are finished.
+		 */
+		void rowDone(int rowsDone);
+	}
 
 	/**
 	 * Constructs a DistMatrixCalculator which is used to obtain distance
@@ -61,8 +97,13 @@ public class DistMatrixCalculator {
 		LogBuffer.println("Initializing DistMatrixCalculator.");
 
 		this.taskData = data;
-		this.distMatrix = new double[data.length][];
+		this.distMatrix = new DistanceMatrix(data.length,
+				DistanceMatrix.needsReducedPrecision(data.length));
 		this.distMeasure = distMeasure;
+
+		if (distMatrix.isReducedPrecision()) {
+			LogBuffer.println("Storing distances with reduced precision.");
+		}
 	}
 
 	/* Distance measure functions */
@@ -93,7 +134,7 @@ public class DistMatrixCalculator {
 					absolute);
 		}
 
-		distMatrix[limit] = rowDist;
+		distMatrix.setRow(rowDist, limit);
 	}
 
 	/**
@@ -299,7 +340,7 @@ public class DistMatrixCalculator {
 		}
 
 		/* list with all rows and their distances to the other rows */
-		distMatrix[limit] = rowDist;
+		distMatrix.setRow(rowDist, limit);
 	}
 
 	/**
@@ -415,6 +456,164 @@ public class DistMatrixCalculator {
 		}
 	}
 
+	/**
+	 * Calculates all rows of the distance matrix. Depending on the parallel
+	 * mode, the rows are either calculated one after another or distributed
+	 * over all available cores.
+	 *
+	 * @param progress
+	 *            Receives progress updates and is asked for cancellation.
+	 * @return Whether all rows were calculated (false if cancelled).
+	 */
+	public boolean calcAllRows(final RowProgress progress) {
+
+		if (parallel && Runtime.getRuntime().availableProcessors() > 1
+				&& taskData.length > 1) {
+			return calcRowsParallel(progress);
+		}
+
+		for (int i = 0; i < taskData.length; i++) {
+
+			if (progress.isCancelled()) {
+				return false;
+			}
+			progress.rowDone(i);
+			calcRow(i);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Splits the rows of the lower-triangle distance matrix into chunks and
+	 * calculates them on a ForkJoinPool. Row i has i entries, so the chunk
+	 * boundaries are chosen to balance the amount of entries per chunk rather
+	 * than the amount of rows.
+	 *
+	 * @param progress
+	 *            Receives progress updates and is asked for cancellation.
+	 * @return Whether all rows were calculated (false if cancelled).
+	 */
+	private boolean calcRowsParallel(final RowProgress progress) {
+
+		if (!isKnownMeasure()) {
+			showDistAlert();
+			return false;
+		}
+
+		final int cores = Runtime.getRuntime().availableProcessors();
+		final int[] bounds = getBalancedBounds(taskData.length,
+				cores * CHUNKS_PER_CORE);
+		final AtomicInteger rowsDone = new AtomicInteger(0);
+
+		final List<RowChunk> chunks = new ArrayList<RowChunk>(bounds.length);
+		for (int i = 0; i < bounds.length - 1; i++) {
+			chunks.add(new RowChunk(bounds[i], bounds[i + 1], rowsDone,
+					progress));
+		}
+
+		LogBuffer.println("Calculating distances in " + chunks.size()
+				+ " chunks on " + cores + " cores.");
+
+		final ForkJoinPool pool = new ForkJoinPool(cores);
+		try {
+			pool.submit(new RecursiveAction() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+
+					ForkJoinTask.invokeAll(chunks);
+				}
+			}).join();
+
+		} finally {
+			pool.shutdown();
+		}
+
+		return !progress.isCancelled();
+	}
+
+	/**
+	 * Finds row boundaries which split the lower triangle of a square matrix
+	 * into chunks with roughly the same amount of elements. Because row i
+	 * holds i elements, the first r rows hold r * (r - 1) / 2 elements.
+	 *
+	 * @param rows
+	 *            The amount of rows of the matrix.
+	 * @param chunkNum
+	 *            The desired amount of chunks.
+	 * @return Ascending row indices, starting with 0 and ending with rows.
+	 *         Each consecutive pair marks one chunk [start, end).
+	 */
+	public static int[] getBalancedBounds(final int rows, final int chunkNum) {
+
+		final int chunks = Math.max(1, Math.min(chunkNum, rows));
+		final double total = rows * (rows - 1.0) / 2;
+
+		final int[] bounds = new int[chunks + 1];
+		int count = 1;
+		for (int i = 1; i < chunks; i++) {
+
+			/* Invert r * (r - 1) / 2 = i / chunks * total */
+			final double target = total * i / chunks;
+			final int bound = (int) Math.round(
+					(1 + Math.sqrt(1 + 8 * target)) / 2);
+
+			if (bound > bounds[count - 1] && bound < rows) {
+				bounds[count++] = bound;
+			}
+		}
+		bounds[count++] = rows;
+
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * @return Whether the distance measure matches one of the defined
+	 *         measures.
+	 */
+	private boolean isKnownMeasure() {
+
+		return distMeasure >= PEARSON_UN && distMeasure <= CITY_BLOCK;
+	}
+
+	/**
+	 * A range of distance matrix rows which is calculated by one thread.
+	 */
+	private class RowChunk extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int start;
+		private final int end;
+		private final AtomicInteger rowsDone;
+		private final RowProgress progress;
+
+		public RowChunk(final int start, final int end,
+				final AtomicInteger rowsDone, final RowProgress progress) {
+
+			this.start = start;
+			this.end = end;
+			this.rowsDone = rowsDone;
+			this.progress = progress;
+		}
+
+		@Override
+		protected void compute() {
+
+			for (int i = start; i < end; i++) {
+
+				if (progress.isCancelled()) {
+					return;
+				}
+				calcRow(i);
+				progress.rowDone(rowsDone.incrementAndGet());
+			}
+		}
+	}
+
 	/**
 	 * Shows a pop-up alert if the selected distance measure could not be
 	 * matched to an defined method to execute the calculations.
@@ -434,12 +633,24 @@ public class DistMatrixCalculator {
 		this.taskData = data;
 	}
 
+	/**
+	 * Sets whether the distance matrix rows are calculated on all available
+	 * cores in calcAllRows().
+	 *
+	 * @param parallel
+	 *            Whether to use the parallel mode.
+	 */
+	public void setParallel(final boolean parallel) {
+
+		this.parallel = parallel;
+	}
+
 	/**
 	 * Getter to retrieve the distance matrix.
 	 *
 	 * @return The calculated distance matrix.
 	 */
-	public double[][] getDistanceMatrix() {
+	public DistanceMatrix getDistanceMatrix() {
 
 		return distMatrix;
 	}
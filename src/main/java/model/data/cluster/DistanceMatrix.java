@@ -2,6 +2,7 @@ package model.data.cluster;
 
 import model.data.Helper;
 import util.LogBuffer;
+import util.MemoryBudget;
 
 import javax.swing.*;
 import java.awt.*;
@@ -11,96 +12,265 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 
+/**
+ * Half of a symmetric distance matrix (lower triangle without diagonal),
+ * packed into a single primitive array. Row i holds the distances to rows
+ * 0 to i - 1. In reduced precision mode, distances are stored as floats,
+ * which halves the memory footprint.
+ *
+ * Rows are addressed by logical indices. Deleting an index does not copy any
+ * distances; the row is just masked as inactive and the logical indices of
+ * all following rows shift down by one.
+ */
 public class DistanceMatrix {
 
-	private double[][] matrix;
+	/* Largest amount of rows whose half-matrix fits into one array */
+	public static final int MAX_SIZE = 65536;
+
+	/* Packed distances, only one of both is used */
+	private double[] values;
+	private float[] floatValues;
+
+	/* Physical row index for each logical row index */
+	private int[] physIdxs;
+
+	/* Bitmap of physical rows which were not deleted */
+	private long[] active;
 
 	private int min_row_index;
 	private int min_col_index;
 
 	private int size;
 
+	/**
+	 * Creates a distance matrix for the given amount of rows with all
+	 * distances set to 0.
+	 *
+	 * @param size
+	 *            The amount of rows (and columns) of the matrix.
+	 */
 	public DistanceMatrix(final int size) {
 
-		this.matrix = new double[size][];
-		this.size = size;
+		this(size, false);
+	}
 
-		/* To set the minimum indices. */
-		findCurrentMin(Double.MAX_VALUE);
+	/**
+	 * Creates a distance matrix for the given amount of rows with all
+	 * distances set to 0.
+	 *
+	 * @param size
+	 *            The amount of rows (and columns) of the matrix.
+	 * @param reducedPrecision
+	 *            Whether distances are stored as floats instead of doubles.
+	 */
+	public DistanceMatrix(final int size, final boolean reducedPrecision) {
+
+		allocate(size, reducedPrecision);
 	}
 
+	/**
+	 * Decides whether a matrix of the given size should use reduced precision,
+	 * which is the case if double values would occupy more than half of the
+	 * maximum heap size.
+	 *
+	 * @param size
+	 *            The amount of rows of the matrix.
+	 * @return Whether floats should be used to store distances.
+	 */
+	public static boolean needsReducedPrecision(final int size) {
+
+		final long bytes = getPackedLength(size) * Double.BYTES;
+		return !MemoryBudget.fitsData(bytes);
+	}
+
+	/**
+	 * @param size
+	 *            The amount of rows of the matrix.
+	 * @return The amount of values in a packed half-matrix.
+	 */
+	private static long getPackedLength(final int size) {
+
+		return (long) size * (size - 1) / 2;
+	}
+
+	/**
+	 * @param physIdx
+	 *            A physical row index.
+	 * @return The array offset of the first value in the row.
+	 */
+	private static int getOffset(final int physIdx) {
+
+		return (int) ((long) physIdx * (physIdx - 1) / 2);
+	}
+
+	private void allocate(final int newSize, final boolean reducedPrecision) {
+
+		if (newSize > MAX_SIZE) {
+			throw new IllegalArgumentException("Cannot create a distance "
+					+ "matrix for " + newSize + " elements. The maximum is "
+					+ MAX_SIZE + ".");
+		}
+
+		final int length = (int) getPackedLength(Math.max(newSize, 1));
+		if (reducedPrecision) {
+			this.values = null;
+			this.floatValues = new float[length];
+
+		} else {
+			this.values = new double[length];
+			this.floatValues = null;
+		}
+
+		this.physIdxs = new int[newSize];
+		for (int i = 0; i < newSize; i++) {
+			physIdxs[i] = i;
+		}
+
+		this.active = new long[(newSize + 63) / 64];
+		for (int i = 0; i < newSize; i++) {
+			active[i >> 6] |= 1L << i;
+		}
+
+		this.size = newSize;
+	}
+
+	/**
+	 * Packs a half-matrix of nested arrays into this object. Row i of the
+	 * supplied matrix must have at least i values.
+	 *
+	 * @param matrix
+	 *            The half-matrix to be stored.
+	 */
 	public void setMatrix(final double[][] matrix) {
 
-		this.matrix = matrix;
-		this.size = matrix.length;
+		allocate(matrix.length, floatValues != null);
+
+		for (int i = 0; i < matrix.length; i++) {
+			setRow(matrix[i], i);
+		}
+	}
+
+	/**
+	 * @return Whether distances are stored as floats.
+	 */
+	public boolean isReducedPrecision() {
+
+		return floatValues != null;
 	}
 
 	/**
-	 * Sets a row of the matrix at the specified index.
+	 * Returns the distance between two rows. The order of the indices does not
+	 * matter.
 	 *
 	 * @param row
-	 *            The array to be set.
+	 *            Logical index of one row.
+	 * @param col
+	 *            Logical index of another row.
+	 * @return The distance between both rows.
+	 */
+	public double get(final int row, final int col) {
+
+		if (row == col) {
+			return 0.0;
+		}
+
+		final int pos = getPosition(row, col);
+		return (values != null) ? values[pos] : floatValues[pos];
+	}
+
+	/**
+	 * Sets the distance between two rows. The order of the indices does not
+	 * matter.
+	 *
+	 * @param row
+	 *            Logical index of one row.
+	 * @param col
+	 *            Logical index of another row.
+	 * @param value
+	 *            The new distance between both rows.
+	 */
+	public void set(final int row, final int col, final double value) {
+
+		final int pos = getPosition(row, col);
+		if (values != null) {
+			values[pos] = value;
+
+		} else {
+			floatValues[pos] = (float) value;
+		}
+	}
+
+	private int getPosition(final int row, final int col) {
+
+		final int physRow = physIdxs[row];
+		final int physCol = physIdxs[col];
+
+		return (physRow > physCol) ? getOffset(physRow) + physCol
+				: getOffset(physCol) + physRow;
+	}
+
+	/**
+	 * Sets a row of the matrix at the specified index. The values are copied
+	 * into the packed storage, so the array can be reused by the caller.
+	 *
+	 * @param row
+	 *            The array to be set. Values beyond the index are ignored.
 	 * @param index
 	 *            Index of the row to be set.
 	 */
 	public void setRow(final double[] row, final int index) {
 
-		this.matrix[index] = row;
+		final int length = Math.min(index, row.length);
+		for (int j = 0; j < length; j++) {
+			set(index, j, row[j]);
+		}
 	}
 
 	/**
-	 * Returns a reference to the row at the provided index of the matrix.
+	 * Returns a copy of the row at the provided index of the matrix. Changing
+	 * the returned array does not change the matrix.
 	 *
 	 * @param index
-	 * @return
+	 * @return The distances of the row to all rows with smaller index.
 	 */
 	public double[] getRow(final int index) {
 
-		return this.matrix[index];
+		final double[] row = new double[index];
+		for (int j = 0; j < index; j++) {
+			row[j] = get(index, j);
+		}
+
+		return row;
 	}
 
 	/**
 	 * Deletes the row and column at a given index in the distance matrix
-	 * object, effectively shrinking it.
+	 * object, effectively shrinking it. The stored distances are not moved;
+	 * the row is only masked as inactive.
 	 *
 	 * @param index
 	 *            Index of the row and column to be deleted.
 	 */
 	public void deleteIndex(final int index) {
 
-		size -= 1;
-		final double[][] newMatrix = new double[size][];
-
-		/*
-		 * This should shift the elements of distMatrix up by one once it
-		 * reaches the index which should be removed. A double of the last array
-		 * in the element should remain at the end.
-		 */
-		for (int i = 0; i < newMatrix.length; i++) {
-
-			newMatrix[i] = (i < index) ? matrix[i] : matrix[i + 1];
-		}
-
-		/* Delete the column */
-		for (int i = 0; i < newMatrix.length; i++) {
-
-			final double[] oldArray = newMatrix[i];
-
-			final int length = (i < index) ? oldArray.length
-					: oldArray.length - 1;
-			final double[] array = new double[length];
+		final int physIdx = physIdxs[index];
+		active[physIdx >> 6] &= ~(1L << physIdx);
 
-			/* Fill the row, skipping the value at 'index' */
-			for (int j = 0; j < array.length; j++) {
-
-				array[j] = (j < index) ? oldArray[j] : oldArray[j + 1];
-			}
+		System.arraycopy(physIdxs, index + 1, physIdxs, index, size - index
+				- 1);
+		size -= 1;
+	}
 
-			/* Replace the row */
-			newMatrix[i] = array;
-		}
+	/**
+	 * Checks whether a physical row was deleted from the matrix.
+	 *
+	 * @param physIdx
+	 *            The index of the row when the matrix was created.
+	 * @return Whether the row is still part of the matrix.
+	 */
+	public boolean isActive(final int physIdx) {
 
-		this.matrix = newMatrix;
+		return (active[physIdx >> 6] & (1L << physIdx)) != 0;
 	}
 
 	/**
@@ -111,11 +281,7 @@ public class DistanceMatrix {
 	 */
 	public void replaceIndex(final double[] newRow, final int index) {
 
-		/* Make sure to set a deep copy, so it won't be a reference */
-		final double[] replacementRow = new double[index];
-		System.arraycopy(newRow, 0, replacementRow, 0, index);
-
-		this.matrix[index] = replacementRow;
+		setRow(newRow, index);
 	}
 
 	/**
@@ -128,17 +294,13 @@ public class DistanceMatrix {
 	 */
 	public void cloneFrom(final DistanceMatrix oldMatrix) {
 
-		this.matrix = new double[oldMatrix.getSize()][];
-
-		for (int i = 0; i < oldMatrix.getSize(); i++) {
-
-			final double[] oldList = oldMatrix.getRow(i);
-			final double[] newList = new double[oldList.length];
-
-			System.arraycopy(oldList, 0, newList, 0, oldList.length);
-
-			matrix[i] = newList;
-		}
+		this.values = (oldMatrix.values != null) ? oldMatrix.values.clone()
+				: null;
+		this.floatValues = (oldMatrix.floatValues != null) ? oldMatrix.floatValues
+				.clone() : null;
+		this.physIdxs = oldMatrix.physIdxs.clone();
+		this.active = oldMatrix.active.clone();
+		this.size = oldMatrix.size;
 	}
 
 	/**
@@ -155,13 +317,15 @@ public class DistanceMatrix {
 		/* New min must be bigger than old min */
 		double newMin = Double.MAX_VALUE;
 
-		for (int i = 0; i < matrix.length; i++) {
+		for (int i = 0; i < size; i++) {
 
-			final double[] row = matrix[i];
+			final int offset = getOffset(physIdxs[i]);
 
-			for (int j = 0; j < row.length; j++) {
+			for (int j = 0; j < i; j++) {
 
-				final double element = row[j];
+				final int pos = offset + physIdxs[j];
+				final double element = (values != null) ? values[pos]
+						: floatValues[pos];
 
 				if ((element > oldMin || Helper.nearlyEqual(element, oldMin))
 						&& element < newMin) {
@@ -182,7 +346,7 @@ public class DistanceMatrix {
 	 */
 	public int getSize() {
 
-		return matrix.length;
+		return size;
 	}
 
 	/**
@@ -236,9 +400,9 @@ public class DistanceMatrix {
 			BufferedWriter bw = new BufferedWriter((new OutputStreamWriter(
 					new FileOutputStream(file.getAbsoluteFile()), "UTF-8")));
 
-			for (double[] row : matrix) {
-				for (double val : row) {
-					bw.write(Double.toString(val) + "\t");
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j < i; j++) {
+					bw.write(Double.toString(get(i, j)) + "\t");
 				}
 				bw.write("\n");
 			}
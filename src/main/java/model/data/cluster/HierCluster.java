@@ -13,7 +13,7 @@ import java.util.List;
  * implements multiple linkage methods and consists of one main method
  * (components.cluster()) that is used to create one new components.cluster at a time.
  */
-public class HierCluster {
+public class HierCluster implements HierClusterEngine {
 
 	/*
 	 * IMPORTANT NOTE: The variable prefixes row- and col- refer to the current
@@ -33,6 +33,9 @@ public class HierCluster {
 	int min_row_index = 0;
 	int min_col_index = 0;
 
+	/* Index of the newly formed cluster in currentClusters */
+	private int newClusterIndex = 0;
+
 	/*
 	 * Reordered list of distance matrix rows. This directly represents the
 	 * reordered axis that was selected to be clustered.
@@ -82,19 +85,10 @@ public class HierCluster {
 
 	/**
 	 * Goes through a bunch of steps to prepare the object and data for
-	 * clustering. Initializes important variables, sets up lists to be used and
-	 * makes a deep copy of the distance matrix so there can be a reference to a
-	 * non-mutated distance matrix.
+	 * clustering. Initializes important variables and sets up lists to be used.
 	 */
 	public void prepareCluster() {
 
-		/*
-		 * Deep copy of distance matrix to avoid mutation. Needs to access
-		 * original values during generation of the new row when joining two
-		 * rows.
-		 */
-		linker.cloneDistmatrix(distMatrix);
-
 		/* Data to be written to file */
 		links = new String[initial_matrix_size];
 
@@ -140,6 +134,7 @@ public class HierCluster {
 	 * Hierarchically clusters the distance matrix and stores results in an
 	 * array of reordered distance matrix row indices.
 	 */
+	@Override
 	public int cluster() {
 
 		/* Set current iteration number */
@@ -164,18 +159,23 @@ public class HierCluster {
 		links[iterNum] = nodeData[0];
 		treeNodeData.add(nodeData);
 
-		/* STEP 4: Update the lists that keep track of clusters. */
+		/*
+		 * STEP 4: Generate new row/ col based on the chosen linkage method.
+		 * It is derived from the rows of the two old clusters, so this must
+		 * happen before the lists and the matrix are updated.
+		 */
+		final double[] linkedRow = linker.link(distMatrix, min_row_index,
+				min_col_index, currentClusters);
+
+		/* STEP 5: Update the lists that keep track of clusters. */
 
 		/* Register clustering of the two rows */
 		rowIndexTable[iterNum] = newCluster;
 
 		final boolean rowClusHasMin = updateCurrentClusters(newCluster);
 
-		/* STEP 5: Generate new row/ col based on the chosen linkage method. */
-		double[] newMatrixElement = linker.link(newCluster, currentClusters);
-
 		/* STEP 6: Update the distance matrix to reflect the new components.cluster. */
-		updateDistMatrix(rowClusHasMin, newMatrixElement);
+		updateDistMatrix(rowClusHasMin, arrangeNewRow(linkedRow));
 
 		return distMatrix.getSize();
 	}
@@ -189,7 +189,9 @@ public class HierCluster {
 	 */
 	private void setMatrixMinimum() {
 
-		this.min = distMatrix.findCurrentMin(min);
+		/* Merge distances of non-reducible linkages can decrease */
+		final double oldMin = (linker.isReducible()) ? min : -Double.MAX_VALUE;
+		this.min = distMatrix.findCurrentMin(oldMin);
 		this.min_row_index = distMatrix.getMinRowIndex();
 		this.min_col_index = distMatrix.getMinColIndex();
 	}
@@ -270,19 +272,51 @@ public class HierCluster {
 
 		/* The node is in the row components.cluster */
 		if (rowClusHasMin && min_row_index < newClusterListSize) {
-			currentClusters.add(min_row_index, newVals);
+			newClusterIndex = min_row_index;
 
 			/* The node is in the col components.cluster */
 		} else if (!rowClusHasMin && min_col_index < newClusterListSize) {
-			currentClusters.add(min_col_index, newVals);
+			newClusterIndex = min_col_index;
 
 		} else {
-			currentClusters.add(newVals);
+			newClusterIndex = currentClusters.size();
 		}
 
+		currentClusters.add(newClusterIndex, newVals);
+
 		return rowClusHasMin;
 	}
 
+	/**
+	 * Rearranges a row which was generated by the Linker for the distance
+	 * matrix before the update, so that it matches the updated list of
+	 * current clusters. The values of the two fused clusters are dropped and
+	 * the distance of the new cluster to itself (0) is inserted.
+	 *
+	 * @param linkedRow
+	 *            Distances of the new cluster, indexed by the old positions.
+	 * @return Distances of the new cluster, indexed by the new positions.
+	 */
+	private double[] arrangeNewRow(final double[] linkedRow) {
+
+		final double[] newRow = new double[currentClusters.size()];
+
+		int pos = 0;
+		for (int k = 0; k < linkedRow.length; k++) {
+
+			if (k == min_row_index || k == min_col_index) {
+				continue;
+			}
+
+			if (pos == newClusterIndex) {
+				pos++;
+			}
+			newRow[pos++] = linkedRow[k];
+		}
+
+		return newRow;
+	}
+
 	/**
 	 * Updates the distance matrix by removing old rows and columns and
 	 * inserting the newly formed row and column at the appropriate indices.
@@ -311,14 +345,13 @@ public class HierCluster {
 			/* ? */
 			for (int j = min_row_index; j < distMatrix.getSize(); j++) {
 
-				final double[] element = distMatrix.getRow(j);
 				/*
 				 * Add to element at index 'row' if the element is bigger than
 				 * the row value otherwise the element is too small to add a
 				 * column value
 				 */
-				if (element.length > min_row_index) {
-					element[min_row_index] = newRow[j];
+				if (j > min_row_index) {
+					distMatrix.set(j, min_row_index, newRow[j]);
 				}
 			}
 		} else {
@@ -331,10 +364,8 @@ public class HierCluster {
 			/* ? */
 			for (int j = min_col_index; j < distMatrix.getSize(); j++) {
 
-				final double[] element = distMatrix.getRow(j);
-
-				if (element.length > min_col_index) {
-					element[min_col_index] = newRow[j];
+				if (j > min_col_index) {
+					distMatrix.set(j, min_col_index, newRow[j]);
 				}
 			}
 		}
@@ -345,9 +376,9 @@ public class HierCluster {
 	 * to be generated. Sets the variables that store the most data to null, 
 	 * to ensure their garbage collection.
 	 */
+	@Override
 	public void finish() {
 
-		linker.close();
 		reorderRows(currentClusters.get(0));
 
 		/* Ensure garbage collection for large objects */
@@ -538,6 +569,7 @@ public class HierCluster {
 		}
 	}
 
+	@Override
 	public List<String[]> getTreeNodeData() {
 		
 		return treeNodeData;
@@ -547,6 +579,7 @@ public class HierCluster {
 	 *
 	 * @return The reordered matrix row indices after clustering.
 	 */
+	@Override
 	public int[] getReorderedIDs() {
 
 		return reorderedRowIdxs;
@@ -0,0 +1,35 @@
+package model.data.cluster;
+
+import java.util.List;
+
+/**
+ * Common surface of the agglomeration engines which hierarchically cluster a
+ * distance matrix. The clustering worker calls cluster() until only one
+ * cluster remains, then finish(), and finally retrieves the results.
+ */
+public interface HierClusterEngine {
+
+	/**
+	 * Performs one agglomeration step, which joins two clusters.
+	 *
+	 * @return The amount of clusters which remain after this step.
+	 */
+	int cluster();
+
+	/**
+	 * Finishes up clustering and generates the reordered row indices as well
+	 * as the tree node data.
+	 */
+	void finish();
+
+	/**
+	 * @return The reordered matrix row indices after clustering.
+	 */
+	int[] getReorderedIDs();
+
+	/**
+	 * @return The tree node data, starting with a header row. Each following
+	 *         entry has the format [NODEID, LEFT, RIGHT, CORRELATION].
+	 */
+	List<String[]> getTreeNodeData();
+}
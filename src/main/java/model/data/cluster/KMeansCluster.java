@@ -32,9 +32,6 @@ public class KMeansCluster {
 	/* Distance Matrix */
 	private final DistanceMatrix distMatrix;
 
-	/* Object to store deep copy of distance matrix; avoids mutation */
-	private DistanceMatrix copyDistMatrix;
-
 	/* Array which stores the seed means */
 	private double[] seedMeans;
 
@@ -91,12 +88,8 @@ public class KMeansCluster {
 		kClusters = new int[k][];
 		clusterMeans = new double[distMatrix.getSize()][];
 
-		/* deep copy of distance matrix to avoid mutation */
-		copyDistMatrix = new DistanceMatrix(0);
-		copyDistMatrix.cloneFrom(distMatrix);
-
 		/* Make a list of all means of distances for every gene */
-		rowCentroidList = generateCentroids(copyDistMatrix);
+		rowCentroidList = generateCentroids(distMatrix);
 
 		/* Seeds array should be of clusterN-size */
 		setSeeds(k, rowCentroidList);
@@ -207,14 +200,13 @@ public class KMeansCluster {
 		int addIndex = 0;
 		for (int i = 0; i < matrix.getSize(); i++) {
 
-			final double[] row = matrix.getRow(i);
 			double sum = 0;
 			double mean;
 
 			/* Add the row values to sum */
-			for (final double d : row) {
+			for (int j = 0; j < i; j++) {
 
-				sum += d;
+				sum += matrix.get(i, j);
 			}
 
 			/*
@@ -223,7 +215,7 @@ public class KMeansCluster {
 			 */
 			for (int j = addIndex; j < matrix.getSize() - 1; j++) {
 
-				sum += matrix.getRow(j + 1)[addIndex];
+				sum += matrix.get(j + 1, addIndex);
 			}
 
 			mean = sum / matrix.getSize();
@@ -1,236 +1,138 @@
 package model.data.cluster;
 
-import model.data.Helper;
-
 import java.util.List;
 
+/**
+ * Calculates the distances of a newly formed cluster to all other clusters
+ * with the Lance-Williams formula. The new distances are derived only from
+ * the current distances of the two fused clusters, so no copy of the original
+ * distance matrix is needed and every merge costs O(n).
+ */
 public class Linker {
 
 	/* Correspond to the JCombobox positions in ClusterView */
 	public final static int AVG = 0;
 	public final static int SINGLE = 1;
 	public final static int COMPLETE = 2;
+	public final static int WEIGHTED = 3;
+	public final static int WARD = 4;
+	public final static int CENTROID = 5;
 
-	private int linkMethod;
-
-	/*
-	 * Deep copy of distance matrix because original will be mutated. The
-	 * mutation happens when a new row is formed from to rows that are being
-	 * clustered together.
-	 */
-	private DistanceMatrix distMatrixClone;
+	private final int linkMethod;
 
-	public Linker(int linkMethod) {
+	public Linker(final int linkMethod) {
 
 		this.linkMethod = linkMethod;
-		this.distMatrixClone = new DistanceMatrix(0);
 	}
 
-	public void cloneDistmatrix(DistanceMatrix origMatrix) {
+	/**
+	 * Checks whether a linkage method is reducible. Merge distances of
+	 * reducible methods never decrease, which is required by the
+	 * nearest-neighbor chain algorithm. Centroid linkage is not reducible.
+	 *
+	 * @param linkMethod
+	 *            The linkage method.
+	 * @return Whether the linkage method is reducible.
+	 */
+	public static boolean isReducible(final int linkMethod) {
 
-		distMatrixClone.cloneFrom(origMatrix);
+		return linkMethod == AVG || linkMethod == SINGLE
+				|| linkMethod == COMPLETE || linkMethod == WEIGHTED
+				|| linkMethod == WARD;
 	}
 
-	public double[] link(final int[] fusedClusters,
-			List<List<Integer>> currentClusters) {
+	/**
+	 * @return Whether the linkage method of this Linker is reducible.
+	 */
+	public boolean isReducible() {
 
-		if (linkMethod == SINGLE || linkMethod == COMPLETE) {
-			return singleCompleteLink(fusedClusters, currentClusters);
-		}
-		
-		return averageLink(fusedClusters, currentClusters);
+		return isReducible(linkMethod);
 	}
 
 	/**
-	 * Method used to generate a new row/col for the distance matrix which is
-	 * processed. The new row/col represents the joint row pair which has been
-	 * chosen as the one with the minimum distance in the current iteration. The
-	 * values of the new row/col are calculated as maximum (complete) or minimum
-	 * (single) of all distance values.
-	 *
-	 * Time complexity: ?
+	 * Lance-Williams update: calculates the distance between the cluster
+	 * formed by fusing clusters i and j and another cluster k.
 	 *
-	 * @param fusedClusters
-	 * @return newRow
+	 * @param distIK
+	 *            Distance between cluster i and cluster k.
+	 * @param sizeI
+	 *            Amount of elements in cluster i.
+	 * @param distJK
+	 *            Distance between cluster j and cluster k.
+	 * @param sizeJ
+	 *            Amount of elements in cluster j.
+	 * @param distIJ
+	 *            Distance between cluster i and cluster j.
+	 * @param sizeK
+	 *            Amount of elements in cluster k.
+	 * @return The distance between the fused cluster and cluster k.
 	 */
-	private double[] singleCompleteLink(final int[] fusedClusters,
-			List<List<Integer>> currentClusters) {
-
-		/* Make a new row that has the same size as the number of clusters. */
-		final double[] newRow = new double[currentClusters.size()];
-
-		/* Iterate over all clusters */
-		for (int i = 0; i < currentClusters.size(); i++) {
-
-			double distanceVal = 0;
-			int selectedRow = 0;
-
-			final int[] currentCluster = 
-					Helper.intListToArray(currentClusters.get(i));
-
-			/*
-			 * Only calculate distance if the current components.cluster is not part of the
-			 * newly formed components.cluster. If it is, then the distance is 0.
-			 */
-			if (!Helper.shareCommonElements(currentCluster, fusedClusters)) {
-				final double[] distances = new double[fusedClusters.length
-						* currentCluster.length];
-
-				double min = Double.MAX_VALUE;
-				double max = Double.MIN_VALUE;
-
-				int dInd = 0; // Iterator
-				for (final int fusedCluster : fusedClusters) {
-
-					/* select element from new components.cluster */
-					selectedRow = fusedCluster;
-
-					/*
-					 * Get the corresponding row in the original, non-mutated
-					 * matrix.
-					 */
-					final double[] currentRow = distMatrixClone
-							.getRow(selectedRow);
-
-					/*
-					 * Go through all clusters and their elements. Finds the
-					 * distances between a row in currentCluster (remaining
-					 * non-clustered) and all rows in the new components.cluster
-					 * (fusedClusters, current row components.cluster).
-					 */
-					for (final int element : currentCluster) {
-
-						// if-else to allow for use of halfDMatrix
-						if (currentRow.length > element) {
-							/*
-							 * distance value in the current row at the indices
-							 * which correspond to the elements of the new
-							 * current components.cluster.
-							 */
-							distanceVal = currentRow[element];
-
-						} else {
-							/*
-							 * Reverse index access because of distance matrix
-							 * symmetry.
-							 */
-							distanceVal = distMatrixClone.getRow(element)[selectedRow];
-						}
-
-						/* Determine min and max */
-						if (distanceVal < min) {
-							min = distanceVal;
-						}
-						if (distanceVal > max) {
-							max = distanceVal;
-						}
-
-						distances[dInd] = distanceVal;
-						dInd++;
-					}
-				}
-
-				/*
-				 * Single Link - Minimum distance between the new components.cluster and
-				 * the other clusters.
-				 * 
-				 * Complete Link - Maximum distance between the new components.cluster and
-				 * the other clusters.
-				 */
-				newRow[i] = (linkMethod == SINGLE) ? min : max;
-			}
-			/* all elements in common */
-			else {
-				newRow[i] = 0.0;
-			}
+	public double link(final double distIK, final int sizeI,
+			final double distJK, final int sizeJ, final double distIJ,
+			final int sizeK) {
+
+		switch (linkMethod) {
+
+		case SINGLE:
+			return Math.min(distIK, distJK);
+		case COMPLETE:
+			return Math.max(distIK, distJK);
+		case WEIGHTED:
+			return (distIK + distJK) / 2;
+		case WARD:
+			return ((sizeI + sizeK) * distIK + (sizeJ + sizeK) * distJK - sizeK
+					* distIJ)
+					/ (sizeI + sizeJ + sizeK);
+		case CENTROID:
+			final double sizeIJ = sizeI + sizeJ;
+			return (sizeI * distIK + sizeJ * distJK) / sizeIJ - sizeI * sizeJ
+					* distIJ / (sizeIJ * sizeIJ);
+		case AVG:
+		default:
+			return (sizeI * distIK + sizeJ * distJK) / (sizeI + sizeJ);
 		}
-
-		return newRow;
 	}
 
 	/**
 	 * Method used to generate a new row/col for the distance matrix which is
-	 * processed. The new row/col represents the joint gene pair which has been
-	 * chosen as the one with the minimum distance in each iteration. The values
-	 * of the new row/col are calculated as average of the sum of all distances.
+	 * processed. The new row/col represents the joint row pair which has been
+	 * chosen as the one with the minimum distance in the current iteration.
+	 * It is derived from the two rows of the fused clusters. Time complexity:
+	 * O(n)
 	 *
-	 * @param fusedGroup
+	 * @param distMatrix
+	 *            The current distance matrix, before it is updated.
+	 * @param rowIdx
+	 *            Matrix index of the first fused cluster.
+	 * @param colIdx
+	 *            Matrix index of the second fused cluster.
 	 * @param currentClusters
-	 * @param newRow
-	 * @return newRow
+	 *            The current clusters, in the same order as the matrix rows.
+	 * @return The distances of the fused cluster to all clusters at their
+	 *         current matrix indices. The values at the indices of the two
+	 *         fused clusters are 0.
 	 */
-	private double[] averageLink(final int[] fusedGroup,
-			List<List<Integer>> currentClusters) {
-
-		final double[] newRow = new double[currentClusters.size()];
+	public double[] link(final DistanceMatrix distMatrix, final int rowIdx,
+			final int colIdx, final List<List<Integer>> currentClusters) {
 
-		for (int i = 0; i < currentClusters.size(); i++) {
+		final int size = distMatrix.getSize();
+		final double[] newRow = new double[size];
 
-			double distanceSum = 0;
-			double distanceVal = 0;
-			int selectedGene = 0;
+		final int sizeRow = currentClusters.get(rowIdx).size();
+		final int sizeCol = currentClusters.get(colIdx).size();
+		final double distRowCol = distMatrix.get(rowIdx, colIdx);
 
-			final int[] currentGroup = new int[currentClusters.get(i).size()];
+		for (int k = 0; k < size; k++) {
 
-			for (int z = 0; z < currentGroup.length; z++) {
-
-				currentGroup[z] = currentClusters.get(i).get(z);
+			if (k == rowIdx || k == colIdx) {
+				continue;
 			}
 
-			/*
-			 * Check if fusedGroup contains the current checked gene (then no
-			 * mean should be calculated) no elements in common.
-			 */
-			if (!Helper.shareCommonElements(currentGroup, fusedGroup)) {
-
-				/* select members of the new row (B & G) */
-				for (final int element : fusedGroup) {
-
-					selectedGene = element;
-
-					/*
-					 * Take a row (gene) from the matrix which also appears in
-					 * the fusedGroup (current components.cluster).
-					 */
-					final double[] currentRow = distMatrixClone
-							.getRow(selectedGene);
-
-					/*
-					 * Go through all clusters and their contained genes
-					 * calculate the distance between each column (gene) and the
-					 * current row (gene) from fusedGroup sum the distance
-					 * values up.
-					 */
-					for (final int gene : currentClusters.get(i)) {
-
-						if (currentRow.length > gene) {
-							distanceVal = currentRow[gene];
-
-						} else {
-							distanceVal = distMatrixClone.getRow(gene)[selectedGene];
-						}
-						distanceSum += distanceVal;
-					}
-				}
-
-				/*
-				 * Calculate the new value to be added to newRow as the average
-				 * of distances.
-				 */
-				newRow[i] = distanceSum
-						/ (fusedGroup.length * currentGroup.length);
-			}
-			/* all elements in common */
-			else {
-				newRow[i] = 0.0;
-			}
+			newRow[k] = link(distMatrix.get(rowIdx, k), sizeRow,
+					distMatrix.get(colIdx, k), sizeCol, distRowCol,
+					currentClusters.get(k).size());
 		}
 
 		return newRow;
 	}
-
-	public void close() {
-
-		distMatrixClone = null;
-	}
 }
@@ -0,0 +1,423 @@
+package model.data.cluster;
+
+import util.LogBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Agglomeration engine which hierarchically clusters a distance matrix with
+ * the nearest-neighbor chain algorithm. In contrast to HierCluster, which
+ * scans the whole matrix for its minimum in every step (O(n^3) overall), this
+ * engine needs O(n^2) time and works on the distance matrix in place.
+ *
+ * The algorithm only works for reducible linkage methods (see
+ * Linker.isReducible()). Clusters are merged in a different
+ * order than in HierCluster, so the merges are sorted by their distance when
+ * clustering finishes. The resulting tree node data and reordered indices
+ * are therefore the same as with HierCluster (except for the order of ties).
+ */
+public class NNChainCluster implements HierClusterEngine {
+
+	private final Linker linker;
+	private final int initial_matrix_size;
+
+	/*
+	 * Half of the complete distance matrix (symmetry!). It is not shrunk
+	 * during clustering. Instead, rows of merged clusters become inactive and
+	 * the row of the cluster which keeps its slot is overwritten.
+	 */
+	private final DistanceMatrix distMatrix;
+
+	/*
+	 * Doubly linked list of active slots. A slot is the distance matrix index
+	 * of the smallest row which is part of a cluster.
+	 */
+	private final int[] nextActive;
+	private final int[] prevActive;
+	private int activeHead;
+	private int activeNum;
+
+	/* Amount of original rows in the cluster of each slot */
+	private final int[] clusterSizes;
+
+	/*
+	 * Cluster ID for each slot. IDs smaller than the initial matrix size are
+	 * original rows, larger IDs are (merge index + initial matrix size).
+	 */
+	private final int[] slotClusterIDs;
+
+	/*
+	 * Singly linked lists of the original rows in each cluster, in the same
+	 * order as HierCluster keeps them.
+	 */
+	private final int[] memberHeads;
+	private final int[] memberTails;
+	private final int[] memberNext;
+
+	/* The nearest-neighbor chain */
+	private final int[] chain;
+	private int chainLength;
+
+	/* Record of all merges in the order they were performed */
+	private final int[] mergeRowIDs;
+	private final int[] mergeColIDs;
+	private final double[] mergeDistances;
+	private int mergeNum;
+
+	private int[] reorderedRowIdxs;
+	private List<String[]> treeNodeData;
+
+	/**
+	 * Sets up the nearest-neighbor chain clustering of the supplied distance
+	 * matrix.
+	 *
+	 * @param linkMethod
+	 *            The cluster linkage method chosen by the user. Must be one
+	 *            of the reducible methods (see isSupported()).
+	 * @param distMatrix
+	 *            The distance matrix calculated in the previous step.
+	 * @param axis
+	 *            The axis of the original dataset which will be clustered.
+	 */
+	public NNChainCluster(final int linkMethod,
+			final DistanceMatrix distMatrix, final int axis) {
+
+		this.linker = new Linker(linkMethod);
+		this.distMatrix = distMatrix;
+		this.initial_matrix_size = distMatrix.getSize();
+
+		final int n = initial_matrix_size;
+		this.nextActive = new int[n];
+		this.prevActive = new int[n];
+		this.clusterSizes = new int[n];
+		this.slotClusterIDs = new int[n];
+		this.memberHeads = new int[n];
+		this.memberTails = new int[n];
+		this.memberNext = new int[n];
+		this.chain = new int[n];
+
+		final int merges = Math.max(0, n - 1);
+		this.mergeRowIDs = new int[merges];
+		this.mergeColIDs = new int[merges];
+		this.mergeDistances = new double[merges];
+
+		for (int i = 0; i < n; i++) {
+			nextActive[i] = (i + 1 < n) ? i + 1 : -1;
+			prevActive[i] = i - 1;
+			clusterSizes[i] = 1;
+			slotClusterIDs[i] = i;
+			memberHeads[i] = i;
+			memberTails[i] = i;
+			memberNext[i] = -1;
+		}
+
+		this.activeHead = (n > 0) ? 0 : -1;
+		this.activeNum = n;
+		this.chainLength = 0;
+		this.mergeNum = 0;
+	}
+
+	/**
+	 * Checks whether a linkage method can be used with the nearest-neighbor
+	 * chain algorithm.
+	 *
+	 * @param linkMethod
+	 *            The linkage method.
+	 * @return Whether the linkage method is reducible.
+	 */
+	public static boolean isSupported(final int linkMethod) {
+
+		return Linker.isReducible(linkMethod);
+	}
+
+	/**
+	 * Grows the nearest-neighbor chain until its last two clusters are
+	 * reciprocal nearest neighbors and merges them.
+	 */
+	@Override
+	public int cluster() {
+
+		if (activeNum <= 1) {
+			return activeNum;
+		}
+
+		if (chainLength == 0) {
+			chain[chainLength++] = activeHead;
+		}
+
+		int current;
+		int nearest;
+		while (true) {
+			current = chain[chainLength - 1];
+			final int previous = (chainLength > 1) ? chain[chainLength - 2]
+					: -1;
+			nearest = findNearest(current, previous);
+
+			/* Reciprocal nearest neighbors found, or chain cannot grow */
+			if (nearest == previous || chainLength == chain.length) {
+				break;
+			}
+
+			chain[chainLength++] = nearest;
+		}
+
+		chainLength -= 2;
+		merge(current, nearest);
+
+		return activeNum;
+	}
+
+	/**
+	 * Finds the active cluster which is closest to the given cluster. On ties,
+	 * the previous cluster in the chain is preferred so the chain terminates.
+	 *
+	 * @param slot
+	 *            The slot of the cluster whose neighbor is searched.
+	 * @param previous
+	 *            The slot of the preceding cluster in the chain or -1.
+	 * @return The slot of the nearest cluster.
+	 */
+	private int findNearest(final int slot, final int previous) {
+
+		int nearest = previous;
+		double minDist = (previous < 0) ? Double.POSITIVE_INFINITY
+				: getDist(slot, previous);
+
+		for (int k = activeHead; k != -1; k = nextActive[k]) {
+
+			if (k == slot || k == previous) {
+				continue;
+			}
+
+			final double dist = getDist(slot, k);
+			if (dist < minDist) {
+				minDist = dist;
+				nearest = k;
+			}
+		}
+
+		/* Only undefined distances (NaN) to other clusters */
+		if (nearest < 0) {
+			nearest = (activeHead != slot) ? activeHead : nextActive[slot];
+		}
+
+		return nearest;
+	}
+
+	/**
+	 * Merges two clusters. The new cluster keeps the smaller slot, the larger
+	 * slot becomes inactive. The distances of the new cluster are derived from
+	 * the distances of both old clusters.
+	 *
+	 * @param a
+	 *            The slot of one cluster.
+	 * @param b
+	 *            The slot of the other cluster.
+	 */
+	private void merge(final int a, final int b) {
+
+		final int colSlot = Math.min(a, b);
+		final int rowSlot = Math.max(a, b);
+		final double dist = getDist(a, b);
+
+		mergeRowIDs[mergeNum] = slotClusterIDs[rowSlot];
+		mergeColIDs[mergeNum] = slotClusterIDs[colSlot];
+		mergeDistances[mergeNum] = dist;
+
+		final int sizeRow = clusterSizes[rowSlot];
+		final int sizeCol = clusterSizes[colSlot];
+
+		for (int k = activeHead; k != -1; k = nextActive[k]) {
+
+			if (k == rowSlot || k == colSlot) {
+				continue;
+			}
+
+			setDist(colSlot, k, linker.link(getDist(rowSlot, k), sizeRow,
+					getDist(colSlot, k), sizeCol, dist, clusterSizes[k]));
+		}
+
+		/* Same member order as HierCluster: row members, then col members */
+		memberNext[memberTails[rowSlot]] = memberHeads[colSlot];
+		memberHeads[colSlot] = memberHeads[rowSlot];
+
+		clusterSizes[colSlot] = sizeRow + sizeCol;
+		slotClusterIDs[colSlot] = initial_matrix_size + mergeNum;
+		mergeNum++;
+
+		deactivate(rowSlot);
+	}
+
+	/**
+	 * Removes a slot from the list of active slots.
+	 *
+	 * @param slot
+	 *            The slot to be removed.
+	 */
+	private void deactivate(final int slot) {
+
+		final int prev = prevActive[slot];
+		final int next = nextActive[slot];
+
+		if (prev != -1) {
+			nextActive[prev] = next;
+
+		} else {
+			activeHead = next;
+		}
+
+		if (next != -1) {
+			prevActive[next] = prev;
+		}
+
+		activeNum--;
+	}
+
+	private double getDist(final int a, final int b) {
+
+		return distMatrix.get(a, b);
+	}
+
+	private void setDist(final int a, final int b, final double dist) {
+
+		distMatrix.set(a, b, dist);
+	}
+
+	/**
+	 * Sorts the merges by their distance and generates the tree node data in
+	 * the same format and naming scheme as HierCluster. Also generates the
+	 * reordered list of distance matrix rows.
+	 */
+	@Override
+	public void finish() {
+
+		final int[] order = getMergeOrder();
+
+		/* Node number of each merge after sorting */
+		final int[] nodeNums = new int[mergeNum];
+		for (int i = 0; i < order.length; i++) {
+			nodeNums[order[i]] = i + 1;
+		}
+
+		this.treeNodeData = new ArrayList<String[]>(mergeNum + 1);
+		treeNodeData.add(new String[] { "NODEID", "LEFT", "RIGHT",
+				"CORRELATION" });
+
+		for (final int m : order) {
+
+			final String rowName = getClusterName(mergeRowIDs[m], nodeNums);
+			final String colName = getClusterName(mergeColIDs[m], nodeNums);
+
+			/* A single row is put before a node, as in HierCluster */
+			final boolean swap = isNode(mergeRowIDs[m])
+					&& !isNode(mergeColIDs[m]);
+
+			final String[] nodeInfo = new String[4];
+			nodeInfo[0] = "NODE" + nodeNums[m] + "X";
+			nodeInfo[1] = (swap) ? colName : rowName;
+			nodeInfo[2] = (swap) ? rowName : colName;
+			nodeInfo[3] = String.valueOf(1 - mergeDistances[m]);
+
+			treeNodeData.add(nodeInfo);
+		}
+
+		reorderRows();
+		LogBuffer.println("NNChainCluster finished with " + mergeNum
+				+ " merges.");
+	}
+
+	/**
+	 * Sorts the merges by distance. The nearest-neighbor chain already
+	 * performs every merge after the merges of its child clusters. Distances
+	 * are propagated up the tree before sorting, so floating point deviations
+	 * can never move a node before its children.
+	 *
+	 * @return Merge indices, ordered by distance.
+	 */
+	private int[] getMergeOrder() {
+
+		final double[] sortDist = new double[mergeNum];
+		for (int m = 0; m < mergeNum; m++) {
+
+			double dist = mergeDistances[m];
+			if (isNode(mergeRowIDs[m])) {
+				dist = Math.max(dist,
+						sortDist[mergeRowIDs[m] - initial_matrix_size]);
+			}
+			if (isNode(mergeColIDs[m])) {
+				dist = Math.max(dist,
+						sortDist[mergeColIDs[m] - initial_matrix_size]);
+			}
+			sortDist[m] = dist;
+		}
+
+		final Integer[] order = new Integer[mergeNum];
+		for (int m = 0; m < mergeNum; m++) {
+			order[m] = m;
+		}
+
+		/* Stable sort keeps children before parents on equal distances */
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(final Integer m1, final Integer m2) {
+
+				return Double.compare(sortDist[m1], sortDist[m2]);
+			}
+		});
+
+		final int[] sorted = new int[mergeNum];
+		for (int i = 0; i < mergeNum; i++) {
+			sorted[i] = order[i];
+		}
+
+		return sorted;
+	}
+
+	private boolean isNode(final int clusterID) {
+
+		return clusterID >= initial_matrix_size;
+	}
+
+	private String getClusterName(final int clusterID, final int[] nodeNums) {
+
+		if (isNode(clusterID)) {
+			return "NODE" + nodeNums[clusterID - initial_matrix_size] + "X";
+		}
+
+		return String.valueOf(clusterID);
+	}
+
+	/**
+	 * Generates the reordered list of distance matrix rows from the members
+	 * of the final cluster, in reversed order like HierCluster.
+	 */
+	private void reorderRows() {
+
+		this.reorderedRowIdxs = new int[initial_matrix_size];
+		if (activeHead < 0) {
+			return;
+		}
+
+		int pos = initial_matrix_size - 1;
+		for (int row = memberHeads[activeHead]; row != -1
+				&& pos >= 0; row = memberNext[row]) {
+			reorderedRowIdxs[pos--] = row;
+		}
+	}
+
+	@Override
+	public List<String[]> getTreeNodeData() {
+
+		return treeNodeData;
+	}
+
+	@Override
+	public int[] getReorderedIDs() {
+
+		return reorderedRowIdxs;
+	}
+}
@@ -35,11 +35,15 @@ public class IntLabelInfo extends Observable implements LabelInfo {
 	public void setLabelTypeArray(final String[] newVal) {
 
 		this.labelTypeArray = newVal;
+		setChanged();
+		notifyObservers();
 	}
 
 	public void setLabelArray(final String[][] newVal) {
 
 		this.labelArray = newVal;
+		setChanged();
+		notifyObservers();
 	}
 
 	@Override
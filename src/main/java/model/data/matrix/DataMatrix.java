@@ -19,10 +19,13 @@ package model.data.matrix;
 public interface DataMatrix {
 	
 	/**
-	 * Gets the 2D double array representing the underlying matrix data.
+	 * Gets a copy of the underlying matrix data as 2D double array. This
+	 * copies the whole matrix, so it is only meant for small matrices.
 	 * 
 	 * @return A 2D double array.
+	 * @deprecated Use getRowValues() to read the data row by row.
 	 */
+	@Deprecated
 	public double[][] getExprData();
 	
 	/**
@@ -37,6 +40,35 @@ public interface DataMatrix {
 	 */
 	double getValue(int col, int row);
 
+	/**
+	 * Copies all values of a row, in the current column order. This is
+	 * faster than calling getValue() for every column.
+	 *
+	 * @param row
+	 *            row (gene) of interest
+	 * @param target
+	 *            An array for the values or null.
+	 * @return The array with the values of the row. A new array is created if
+	 *         target is null or too short.
+	 */
+	double[] getRowValues(int row, double[] target);
+
+	/**
+	 * Copies a range of values of a row, in the current column order.
+	 *
+	 * @param row
+	 *            row (gene) of interest
+	 * @param fromCol
+	 *            The first column (array) to copy.
+	 * @param length
+	 *            The amount of columns to copy.
+	 * @param target
+	 *            An array for the values or null.
+	 * @return The array with the values, starting at index 0. A new array is
+	 *         created if target is null or too short.
+	 */
+	double[] getRowValues(int row, int fromCol, int length, double[] target);
+
 	/**
 	 * Find the minimum and maximum value in the loaded data set.
 	 */
@@ -79,6 +111,16 @@ public interface DataMatrix {
 	 */
 	double getMedian();
 
+	/**
+	 * Return a percentile of the data set, e.g. for presets of the color
+	 * range. It is estimated from the values found by calculateBaseValues().
+	 *
+	 * @param percent
+	 *            The percentile, between 0 and 100.
+	 * @return The value below which the given percentage of the data lies.
+	 */
+	double getPercentile(double percent);
+
 	/**
 	 * Sets the value attribute of an element in the DataMatrix object
 	 *
@@ -0,0 +1,382 @@
+package model.data.matrix;
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics of a data matrix: minimum, maximum, mean, median and
+ * arbitrary percentiles. NaN and infinite values are ignored.
+ *
+ * Minimum, maximum, mean and a histogram are collected in one pass without
+ * copying or sorting the data. The histogram has one bucket per float
+ * exponent and 7 leading mantissa bits (65536 buckets), so the values inside
+ * a bucket differ by less than 1%. Percentiles are interpolated inside their
+ * bucket. The median is found precisely by a second pass which only looks at
+ * the values of the bucket(s) of its middle rank(s).
+ */
+public class DataStatistics {
+
+	private static final int BUCKET_SHIFT = 16;
+	private static final int BUCKET_NUM = 1 << (32 - BUCKET_SHIFT);
+	private static final int BUCKET_OFFSET = BUCKET_NUM / 2;
+
+	/* Largest amount of values which are collected to find an exact rank */
+	private static final int MAX_COLLECTED = 1 << 22;
+
+	private final long[] histogram;
+	private long count;
+	private double min = Double.MAX_VALUE;
+	private double max = -Double.MAX_VALUE;
+	private double sum;
+	private double median = Double.NaN;
+
+	/**
+	 * Calculates the statistics of all values of a matrix.
+	 *
+	 * @param data
+	 *            The matrix.
+	 */
+	public DataStatistics(final FlatMatrix data) {
+
+		this.histogram = new long[BUCKET_NUM];
+
+		final int rows = data.getNumRow();
+		final int cols = data.getNumCol();
+
+		double[] rowValues = null;
+		for (int i = 0; i < rows; i++) {
+			rowValues = data.getRow(i, rowValues);
+			for (int j = 0; j < cols; j++) {
+				add(rowValues[j]);
+			}
+		}
+
+		this.median = calculateMedian(data);
+	}
+
+	private void add(final double value) {
+
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return;
+		}
+
+		count++;
+		sum += value;
+
+		if (value < min) {
+			min = value;
+		}
+
+		if (value > max) {
+			max = value;
+		}
+
+		histogram[getBucket(value)]++;
+	}
+
+	/**
+	 * Maps a value to its histogram bucket. The mapping keeps the order of
+	 * values: the float bits are transformed so that they sort like signed
+	 * integers, of which the upper 16 bits are used.
+	 */
+	private static int getBucket(final double value) {
+
+		return (toSortableBits((float) value) >> BUCKET_SHIFT) + BUCKET_OFFSET;
+	}
+
+	private static int toSortableBits(final float value) {
+
+		final int bits = Float.floatToIntBits(value);
+		return (bits < 0) ? bits ^ 0x7fffffff : bits;
+	}
+
+	private static float fromSortableBits(final int sortable) {
+
+		final int bits = (sortable < 0) ? sortable ^ 0x7fffffff : sortable;
+		return Float.intBitsToFloat(bits);
+	}
+
+	/**
+	 * @return The smallest value which is part of a bucket.
+	 */
+	private double getBucketStart(final int bucket) {
+
+		final int sortable = (bucket - BUCKET_OFFSET) << BUCKET_SHIFT;
+		return clamp(fromSortableBits(sortable));
+	}
+
+	/**
+	 * @return The largest value which is part of a bucket.
+	 */
+	private double getBucketEnd(final int bucket) {
+
+		final int sortable = ((bucket - BUCKET_OFFSET) << BUCKET_SHIFT)
+				| ((1 << BUCKET_SHIFT) - 1);
+		return clamp(fromSortableBits(sortable));
+	}
+
+	/**
+	 * Limits bucket bounds to the range of the data. Buckets at the ends of
+	 * the float range can have infinite or NaN bounds.
+	 */
+	private double clamp(final double value) {
+
+		if (Double.isNaN(value)) {
+			return max;
+		}
+
+		return Math.max(min, Math.min(max, value));
+	}
+
+	/**
+	 * @param rank
+	 *            A rank between 0 and count - 1.
+	 * @return The bucket which contains the value of the given rank.
+	 */
+	private int findBucket(final long rank) {
+
+		long seen = 0;
+		for (int b = 0; b < BUCKET_NUM; b++) {
+			seen += histogram[b];
+			if (seen > rank) {
+				return b;
+			}
+		}
+
+		return BUCKET_NUM - 1;
+	}
+
+	/**
+	 * @return The amount of values in all buckets before the given one.
+	 */
+	private long countBefore(final int bucket) {
+
+		long seen = 0;
+		for (int b = 0; b < bucket; b++) {
+			seen += histogram[b];
+		}
+
+		return seen;
+	}
+
+	/**
+	 * Finds the values at the middle rank(s) by looking only at the values
+	 * of the bucket(s) which contain them.
+	 */
+	private double calculateMedian(final FlatMatrix data) {
+
+		if (count == 0) {
+			return Double.NaN;
+		}
+
+		final long lowRank = (count - 1) / 2;
+		final long highRank = count / 2;
+
+		final double[] values = findRankValues(data, lowRank, highRank);
+
+		return (values[0] + values[1]) / 2;
+	}
+
+	/**
+	 * Finds the values of two ranks with one more pass over the data. The
+	 * values of their buckets are collected and sorted, which gives the exact
+	 * values. Buckets with too many values (e.g. a lot of zeroes) are split
+	 * into a second histogram instead, which gives the value in float
+	 * precision.
+	 *
+	 * @param data
+	 *            The matrix.
+	 * @param lowRank
+	 *            A rank between 0 and count - 1.
+	 * @param highRank
+	 *            A rank between lowRank and count - 1.
+	 * @return The values of both ranks.
+	 */
+	private double[] findRankValues(final FlatMatrix data,
+			final long lowRank, final long highRank) {
+
+		final RankBucket low = new RankBucket(lowRank);
+		final RankBucket high = (findBucket(highRank) == low.bucket) ? low
+				: new RankBucket(highRank);
+
+		final int rows = data.getNumRow();
+		final int cols = data.getNumCol();
+		double[] rowValues = null;
+		for (int i = 0; i < rows; i++) {
+			rowValues = data.getRow(i, rowValues);
+			for (int j = 0; j < cols; j++) {
+				final double value = rowValues[j];
+				if (Double.isNaN(value) || Double.isInfinite(value)) {
+					continue;
+				}
+
+				final int bucket = getBucket(value);
+				if (bucket == low.bucket) {
+					low.add(value);
+
+				} else if (bucket == high.bucket) {
+					high.add(value);
+				}
+			}
+		}
+
+		return new double[] { low.getValue(lowRank), high.getValue(highRank) };
+	}
+
+	/**
+	 * The values of the bucket which contains a rank, gathered during a pass
+	 * over the data.
+	 */
+	private class RankBucket {
+
+		private final int bucket;
+		private final long before;
+		private final double[] collected;
+		private final long[] subHistogram;
+		private int collectedNum = 0;
+		private boolean sorted = false;
+
+		private RankBucket(final long rank) {
+
+			this.bucket = findBucket(rank);
+			this.before = countBefore(bucket);
+
+			final boolean collect = (histogram[bucket] <= MAX_COLLECTED);
+			this.collected = (collect) ? new double[(int) histogram[bucket]]
+					: null;
+			this.subHistogram = (collect) ? null
+					: new long[1 << BUCKET_SHIFT];
+		}
+
+		private void add(final double value) {
+
+			if (collected != null) {
+				collected[collectedNum++] = value;
+
+			} else {
+				subHistogram[toSortableBits((float) value)
+						& ((1 << BUCKET_SHIFT) - 1)]++;
+			}
+		}
+
+		/**
+		 * @param rank
+		 *            A rank inside of this bucket.
+		 * @return The value of the rank.
+		 */
+		private double getValue(final long rank) {
+
+			final long rankInBucket = rank - before;
+			if (collected != null) {
+				if (!sorted) {
+					Arrays.sort(collected, 0, collectedNum);
+					sorted = true;
+				}
+				return collected[(int) rankInBucket];
+			}
+
+			long seen = 0;
+			for (int sub = 0; sub < subHistogram.length; sub++) {
+				seen += subHistogram[sub];
+				if (seen > rankInBucket) {
+					return clamp(fromSortableBits(((bucket - BUCKET_OFFSET) << BUCKET_SHIFT)
+							| sub));
+				}
+			}
+
+			return getRankValue(rank);
+		}
+	}
+
+	/**
+	 * Estimates the value of a rank from the histogram by interpolating
+	 * linearly inside its bucket.
+	 */
+	private double getRankValue(final long rank) {
+
+		final int bucket = findBucket(rank);
+		final long before = countBefore(bucket);
+		final double fraction = (rank - before + 0.5) / histogram[bucket];
+
+		final double start = getBucketStart(bucket);
+		final double end = getBucketEnd(bucket);
+
+		return start + fraction * (end - start);
+	}
+
+	/**
+	 * Returns a percentile of the data, interpolated linearly between the
+	 * closest ranks. The result is estimated from the histogram, so it is
+	 * exact up to the width of a bucket (less than 1% of the value).
+	 *
+	 * @param percent
+	 *            The percentile, between 0 and 100.
+	 * @return The value below which the given percentage of the data lies,
+	 *         or NaN if there is no data.
+	 */
+	public double getPercentile(final double percent) {
+
+		if (count == 0) {
+			return Double.NaN;
+		}
+
+		if (percent <= 0) {
+			return min;
+		}
+
+		if (percent >= 100) {
+			return max;
+		}
+
+		final double position = percent / 100 * (count - 1);
+		final long lowRank = (long) Math.floor(position);
+		final long highRank = Math.min(count - 1, lowRank + 1);
+		final double weight = position - lowRank;
+
+		final double low = getRankValue(lowRank);
+		if (weight == 0) {
+			return low;
+		}
+
+		return low + weight * (getRankValue(highRank) - low);
+	}
+
+	/**
+	 * @return The amount of values which are neither NaN nor infinite.
+	 */
+	public long getCount() {
+
+		return count;
+	}
+
+	/**
+	 * @return The smallest value, or Double.MAX_VALUE if there is no data.
+	 */
+	public double getMin() {
+
+		return min;
+	}
+
+	/**
+	 * @return The largest value, or -Double.MAX_VALUE if there is no data.
+	 */
+	public double getMax() {
+
+		return max;
+	}
+
+	/**
+	 * @return The mean of all values or NaN if there is no data.
+	 */
+	public double getMean() {
+
+		return (count == 0) ? Double.NaN : sum / count;
+	}
+
+	/**
+	 * @return The exact median of all values or NaN if there is no data.
+	 */
+	public double getMedian() {
+
+		return median;
+	}
+}
@@ -0,0 +1,396 @@
+package model.data.matrix;
+
+import util.MemoryBudget;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Row-major storage for the values of a data matrix, packed into a single
+ * primitive array instead of one array per row. In reduced precision mode,
+ * values are stored as floats, which halves the memory footprint.
+ *
+ * Matrices with more cells than fit into one array are stored off-heap in
+ * several direct buffers.
+ *
+ * Reordering does not move any values. Instead, row and column permutations
+ * are kept and applied on every access, so reordering costs O(rows + cols).
+ */
+public class FlatMatrix {
+
+	/* Largest amount of cells which is stored in a single array */
+	public static final int MAX_ARRAY_CELLS = Integer.MAX_VALUE - 8;
+
+	/* Amount of cells per off-heap buffer */
+	private static final int SEGMENT_SHIFT = 27;
+	private static final int SEGMENT_CELLS = 1 << SEGMENT_SHIFT;
+	private static final int SEGMENT_MASK = SEGMENT_CELLS - 1;
+
+	/* Cell values, only one of these is used */
+	private double[] values;
+	private float[] floatValues;
+	private ByteBuffer[] segments;
+
+	private final int rows;
+	private final int cols;
+	private final boolean reducedPrecision;
+
+	/* Stored row and column index for each row and column, null if unchanged */
+	private int[] rowOrder;
+	private int[] colOrder;
+
+	/**
+	 * Creates a matrix with all values set to NaN.
+	 *
+	 * @param rows
+	 *            The amount of rows.
+	 * @param cols
+	 *            The amount of columns.
+	 * @param reducedPrecision
+	 *            Whether values are stored as floats instead of doubles.
+	 */
+	public FlatMatrix(final int rows, final int cols,
+			final boolean reducedPrecision) {
+
+		this.rows = rows;
+		this.cols = cols;
+		this.reducedPrecision = reducedPrecision;
+
+		final long cells = (long) rows * cols;
+		if (cells > MAX_ARRAY_CELLS) {
+			final int cellBytes = (reducedPrecision) ? Float.BYTES
+					: Double.BYTES;
+			final int segmentNum = (int) ((cells + SEGMENT_CELLS - 1) >> SEGMENT_SHIFT);
+			this.segments = new ByteBuffer[segmentNum];
+			for (int i = 0; i < segmentNum; i++) {
+				final long segmentCells = Math.min(SEGMENT_CELLS, cells
+						- ((long) i << SEGMENT_SHIFT));
+				segments[i] = ByteBuffer.allocateDirect(
+						(int) segmentCells * cellBytes).order(
+						ByteOrder.nativeOrder());
+			}
+			fillMissing(0, cells);
+
+		} else if (reducedPrecision) {
+			this.floatValues = new float[(int) cells];
+			Arrays.fill(floatValues, Float.NaN);
+
+		} else {
+			this.values = new double[(int) cells];
+			Arrays.fill(values, DataModel.NAN);
+		}
+	}
+
+	/**
+	 * Copies nested row arrays into a new matrix. Rows which are shorter than
+	 * the amount of columns are padded with NaN.
+	 *
+	 * @param data
+	 *            The rows of the matrix.
+	 * @param cols
+	 *            The amount of columns.
+	 * @param releaseRows
+	 *            Whether the rows of data are set to null once they are
+	 *            copied. This keeps the memory peak low when the nested
+	 *            arrays are not needed anymore.
+	 * @return The new matrix.
+	 */
+	public static FlatMatrix fromRows(final double[][] data, final int cols,
+			final boolean releaseRows) {
+
+		final FlatMatrix matrix = new FlatMatrix(data.length, cols,
+				needsReducedPrecision(data.length, cols));
+
+		for (int i = 0; i < data.length; i++) {
+			matrix.setRow(i, data[i]);
+			if (releaseRows) {
+				data[i] = null;
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Decides whether a matrix of the given size should use reduced precision,
+	 * which is the case if double values would occupy more than half of the
+	 * maximum heap size.
+	 *
+	 * @param rows
+	 *            The amount of rows.
+	 * @param cols
+	 *            The amount of columns.
+	 * @return Whether floats should be used to store the values.
+	 */
+	public static boolean needsReducedPrecision(final int rows, final int cols) {
+
+		final long bytes = (long) rows * cols * Double.BYTES;
+		return !MemoryBudget.fitsData(bytes);
+	}
+
+	private void fillMissing(final long from, final long to) {
+
+		for (long idx = from; idx < to; idx++) {
+			setCell(idx, DataModel.NAN);
+		}
+	}
+
+	private double getCell(final long idx) {
+
+		if (values != null) {
+			return values[(int) idx];
+		}
+
+		if (floatValues != null) {
+			return floatValues[(int) idx];
+		}
+
+		final ByteBuffer segment = segments[(int) (idx >> SEGMENT_SHIFT)];
+		final int offset = (int) (idx & SEGMENT_MASK);
+		if (reducedPrecision) {
+			return segment.getFloat(offset * Float.BYTES);
+		}
+
+		return segment.getDouble(offset * Double.BYTES);
+	}
+
+	private void setCell(final long idx, final double value) {
+
+		if (values != null) {
+			values[(int) idx] = value;
+
+		} else if (floatValues != null) {
+			floatValues[(int) idx] = (float) value;
+
+		} else {
+			final ByteBuffer segment = segments[(int) (idx >> SEGMENT_SHIFT)];
+			final int offset = (int) (idx & SEGMENT_MASK);
+			if (reducedPrecision) {
+				segment.putFloat(offset * Float.BYTES, (float) value);
+
+			} else {
+				segment.putDouble(offset * Double.BYTES, value);
+			}
+		}
+	}
+
+	/**
+	 * @param row
+	 *            The row index.
+	 * @param col
+	 *            The column index.
+	 * @return The value of the cell.
+	 */
+	public double get(final int row, final int col) {
+
+		return getCell(getCellIndex(row, col));
+	}
+
+	private long getCellIndex(final int row, final int col) {
+
+		final int storedRow = (rowOrder == null) ? row : rowOrder[row];
+		final int storedCol = (colOrder == null) ? col : colOrder[col];
+
+		return (long) storedRow * cols + storedCol;
+	}
+
+	private long getRowStart(final int row) {
+
+		return (long) ((rowOrder == null) ? row : rowOrder[row]) * cols;
+	}
+
+	/**
+	 * @param row
+	 *            The row index.
+	 * @param col
+	 *            The column index.
+	 * @param value
+	 *            The new value of the cell.
+	 */
+	public void set(final int row, final int col, final double value) {
+
+		setCell(getCellIndex(row, col), value);
+	}
+
+	/**
+	 * Copies the values of a row into an array.
+	 *
+	 * @param row
+	 *            The row index.
+	 * @param target
+	 *            An array for the values or null.
+	 * @return The array with the values of the row. A new array is created
+	 *         if target is null or too short.
+	 */
+	public double[] getRow(final int row, final double[] target) {
+
+		return getRow(row, 0, cols, target);
+	}
+
+	/**
+	 * Copies a part of a row into an array.
+	 *
+	 * @param row
+	 *            The row index.
+	 * @param fromCol
+	 *            The index of the first column to copy.
+	 * @param length
+	 *            The amount of columns to copy.
+	 * @param target
+	 *            An array for the values or null.
+	 * @return The array with the values, starting at index 0. A new array is
+	 *         created if target is null or too short.
+	 */
+	public double[] getRow(final int row, final int fromCol, final int length,
+			final double[] target) {
+
+		final double[] rowValues = (target == null || target.length < length) ? new double[length]
+				: target;
+		final long start = getRowStart(row);
+
+		if (colOrder != null) {
+			for (int j = 0; j < length; j++) {
+				rowValues[j] = getCell(start + colOrder[fromCol + j]);
+			}
+
+		} else if (values != null) {
+			System.arraycopy(values, (int) start + fromCol, rowValues, 0,
+					length);
+
+		} else if (floatValues != null) {
+			final int offset = (int) start + fromCol;
+			for (int j = 0; j < length; j++) {
+				rowValues[j] = floatValues[offset + j];
+			}
+
+		} else {
+			for (int j = 0; j < length; j++) {
+				rowValues[j] = getCell(start + fromCol + j);
+			}
+		}
+
+		return rowValues;
+	}
+
+	/**
+	 * Replaces the values of a row. Missing values at the end of a short row
+	 * are set to NaN, additional values of a long row are ignored.
+	 *
+	 * @param row
+	 *            The row index.
+	 * @param rowValues
+	 *            The new values of the row.
+	 */
+	public void setRow(final int row, final double[] rowValues) {
+
+		final long start = getRowStart(row);
+		final int length = (rowValues == null) ? 0 : Math.min(cols,
+				rowValues.length);
+
+		if (colOrder != null) {
+			for (int j = 0; j < cols; j++) {
+				setCell(start + colOrder[j], (j < length) ? rowValues[j]
+						: DataModel.NAN);
+			}
+
+		} else if (values != null) {
+			System.arraycopy(rowValues, 0, values, (int) start, length);
+			Arrays.fill(values, (int) start + length, (int) start + cols,
+					DataModel.NAN);
+
+		} else {
+			for (int j = 0; j < length; j++) {
+				setCell(start + j, rowValues[j]);
+			}
+			fillMissing(start + length, start + cols);
+		}
+	}
+
+	/**
+	 * @return A copy of the matrix as nested row arrays.
+	 */
+	public double[][] toArray() {
+
+		final double[][] data = new double[rows][];
+		for (int i = 0; i < rows; i++) {
+			data[i] = getRow(i, null);
+		}
+
+		return data;
+	}
+
+	/**
+	 * Reorders rows and columns without moving any values. The new order is
+	 * combined with any previous reordering.
+	 *
+	 * @param newRowOrder
+	 *            For each new row, the index of the old row. Null keeps the
+	 *            row order.
+	 * @param newColOrder
+	 *            For each new column, the index of the old column. Null
+	 *            keeps the column order.
+	 */
+	public void reorder(final int[] newRowOrder, final int[] newColOrder) {
+
+		if (newRowOrder != null) {
+			this.rowOrder = combineOrder(rowOrder, newRowOrder, rows);
+		}
+
+		if (newColOrder != null) {
+			this.colOrder = combineOrder(colOrder, newColOrder, cols);
+		}
+	}
+
+	private static int[] combineOrder(final int[] oldOrder,
+			final int[] newOrder, final int size) {
+
+		if (newOrder.length != size) {
+			throw new IllegalArgumentException("Expected an ordering of "
+					+ size + " indices but got " + newOrder.length + ".");
+		}
+
+		final int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = (oldOrder == null) ? newOrder[i]
+					: oldOrder[newOrder[i]];
+		}
+
+		return order;
+	}
+
+	/**
+	 * @return Whether rows or columns were reordered since the values were
+	 *         stored.
+	 */
+	public boolean isReordered() {
+
+		return rowOrder != null || colOrder != null;
+	}
+
+	public int getNumRow() {
+
+		return rows;
+	}
+
+	public int getNumCol() {
+
+		return cols;
+	}
+
+	/**
+	 * @return Whether the values are stored as floats.
+	 */
+	public boolean isReducedPrecision() {
+
+		return reducedPrecision;
+	}
+
+	/**
+	 * @return Whether the values are stored outside of the Java heap.
+	 */
+	public boolean isOffHeap() {
+
+		return segments != null;
+	}
+}
@@ -0,0 +1,169 @@
+package model.data.matrix;
+
+import util.MemoryBudget;
+
+/**
+ * Prefix sums and prefix counts of the values of a data matrix, which give
+ * the sum, count and mean of any rectangular region in constant time. NaN
+ * and infinite values are not counted.
+ *
+ * Entry (i, j) of the tables holds the sum and count of all values in the
+ * rows before i and the columns before j, so the tables have one more row and
+ * column than the matrix.
+ */
+public class SummedAreaTable {
+
+	private static final int ENTRY_BYTES = Double.BYTES + Integer.BYTES;
+
+	private final int rows;
+	private final int cols;
+	private final int width;
+	private final double[] sums;
+	private final int[] counts;
+
+	/**
+	 * Calculates the tables in one pass over the matrix.
+	 *
+	 * @param data
+	 *            The matrix, in its current order.
+	 */
+	public SummedAreaTable(final FlatMatrix data) {
+
+		this.rows = data.getNumRow();
+		this.cols = data.getNumCol();
+		this.width = cols + 1;
+
+		final int size = (rows + 1) * width;
+		this.sums = new double[size];
+		this.counts = new int[size];
+
+		double[] rowValues = null;
+		for (int i = 0; i < rows; i++) {
+			rowValues = data.getRow(i, rowValues);
+
+			double rowSum = 0;
+			int rowCount = 0;
+			final int above = i * width;
+			final int current = above + width;
+			for (int j = 0; j < cols; j++) {
+				final double value = rowValues[j];
+				if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+					rowSum += value;
+					rowCount++;
+				}
+
+				sums[current + j + 1] = sums[above + j + 1] + rowSum;
+				counts[current + j + 1] = counts[above + j + 1] + rowCount;
+			}
+		}
+	}
+
+	/**
+	 * Decides whether the tables for a matrix of the given size can be kept
+	 * in memory. They take 12 bytes per cell, more than the matrix itself.
+	 *
+	 * @param rows
+	 *            The amount of rows.
+	 * @param cols
+	 *            The amount of columns.
+	 * @return Whether the tables should be built for the matrix.
+	 */
+	public static boolean fits(final int rows, final int cols) {
+
+		final long size = (long) (rows + 1) * (cols + 1);
+		return size <= FlatMatrix.MAX_ARRAY_CELLS
+				&& MemoryBudget.fitsOptional(size * ENTRY_BYTES);
+	}
+
+	/**
+	 * @return The index in the tables of the region ending before row and
+	 *         col.
+	 */
+	private int getIndex(final int row, final int col) {
+
+		return row * width + col;
+	}
+
+	/**
+	 * Sums all values in a region. The bounds are inclusive and must be
+	 * within the matrix.
+	 *
+	 * @param startingRow
+	 *            The first row of the region.
+	 * @param endingRow
+	 *            The last row of the region.
+	 * @param startingCol
+	 *            The first column of the region.
+	 * @param endingCol
+	 *            The last column of the region.
+	 * @return The sum of all values which are neither NaN nor infinite.
+	 */
+	public double getSum(final int startingRow, final int endingRow,
+			final int startingCol, final int endingCol) {
+
+		return sums[getIndex(endingRow + 1, endingCol + 1)]
+				- sums[getIndex(startingRow, endingCol + 1)]
+				- sums[getIndex(endingRow + 1, startingCol)]
+				+ sums[getIndex(startingRow, startingCol)];
+	}
+
+	/**
+	 * Counts the values in a region. The bounds are inclusive and must be
+	 * within the matrix.
+	 *
+	 * @param startingRow
+	 *            The first row of the region.
+	 * @param endingRow
+	 *            The last row of the region.
+	 * @param startingCol
+	 *            The first column of the region.
+	 * @param endingCol
+	 *            The last column of the region.
+	 * @return The amount of values which are neither NaN nor infinite.
+	 */
+	public int getCount(final int startingRow, final int endingRow,
+			final int startingCol, final int endingCol) {
+
+		return counts[getIndex(endingRow + 1, endingCol + 1)]
+				- counts[getIndex(startingRow, endingCol + 1)]
+				- counts[getIndex(endingRow + 1, startingCol)]
+				+ counts[getIndex(startingRow, startingCol)];
+	}
+
+	/**
+	 * Calculates the mean of a region. The bounds are inclusive and must be
+	 * within the matrix.
+	 *
+	 * @param startingRow
+	 *            The first row of the region.
+	 * @param endingRow
+	 *            The last row of the region.
+	 * @param startingCol
+	 *            The first column of the region.
+	 * @param endingCol
+	 *            The last column of the region.
+	 * @return The mean of all values which are neither NaN nor infinite, or
+	 *         NaN if there are none.
+	 */
+	public double getMean(final int startingRow, final int endingRow,
+			final int startingCol, final int endingCol) {
+
+		final int count = getCount(startingRow, endingRow, startingCol,
+				endingCol);
+		if (count == 0) {
+			return Double.NaN;
+		}
+
+		return getSum(startingRow, endingRow, startingCol, endingCol) / count;
+	}
+
+	public int getNumRow() {
+
+		return rows;
+	}
+
+	public int getNumCol() {
+
+		return cols;
+	}
+}
@@ -14,15 +14,31 @@ import model.fileType.FileSet;
 import model.fileType.FileSetListener;
 import util.LogBuffer;
 
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.prefs.Preferences;
 
 public class TVModel extends Observable implements DataModel {
 
+	/* Rebuilds summed area tables after the data changed, so that the EDT
+	 * does not wait for them */
+	private static final ExecutorService SUMMED_AREA_EXECUTOR = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable r) {
+
+					final Thread thread = new Thread(r, "SummedAreaBuilder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
 	private boolean wasModified = false;
 	
 	private int kmeans_rowClusterNum = 0;
@@ -156,8 +172,19 @@ public class TVModel extends Observable implements DataModel {
 	}
 
 	public void setExprData(final double[][] newData) {
+		setExprData(newData, false);
+	}
+
+	/**
+	 * Copies the data into the flat storage of the data matrix.
+	 * @param newData - The rows of the data.
+	 * @param releaseRows - Whether the rows of newData may be set to null
+	 * while they are copied, which keeps the memory peak low.
+	 */
+	public void setExprData(final double[][] newData,
+	                        final boolean releaseRows) {
 		LogBuffer.println("Adding data to model...");
-		dataMatrix.setExprData(newData);
+		dataMatrix.setExprData(newData, releaseRows);
 	}
 
 	public double getValue(final int x, final int y) {
@@ -346,18 +373,7 @@ public class TVModel extends Observable implements DataModel {
 				|| ordering.length != dataMatrix.getNumUnappendedCol())
 			return;
 
-		final DataMatrix data = getDataMatrix();
-
-		final double[] temp = new double[data.getNumUnappendedCol()];
-		for (int j = 0; j < data.getNumRow(); j++) {
-			for (int i = 0; i < ordering.length; i++) {
-				temp[i] = data.getValue(ordering[i], j);
-			}
-
-			for (int i = 0; i < ordering.length; i++) {
-				data.setValue(temp[i], i, j);
-			}
-		}
+		dataMatrix.reorderMatrixData(null, ordering);
 
 		final String[][] colLabels = colLabelInfo.getLabelArray();
 		final String[][] temp2 = new String[colLabels.length][];
@@ -389,17 +405,7 @@ public class TVModel extends Observable implements DataModel {
 			return;
 		}
 
-		final DataMatrix data = getDataMatrix();
-		final double[] temp = new double[data.getNumRow()];
-		for (int j = 0; j < data.getNumUnappendedCol(); j++) {
-			for (int i = 0; i < ordering.length; i++) {
-				temp[i] = data.getValue(j, ordering[i]);
-			}
-
-			for (int i = 0; i < ordering.length; i++) {
-				data.setValue(temp[i], j, i);
-			}
-		}
+		dataMatrix.reorderMatrixData(ordering, null);
 		rowLabelInfo.reorderLabels(ordering);
 		hashGIDs();
 		setChanged();
@@ -568,11 +574,17 @@ public class TVModel extends Observable implements DataModel {
 	public class TVDataMatrix implements DataMatrix {
 
 		private boolean modified = false;
-		private double[][] exprData = null;
+		private volatile FlatMatrix exprData = null;
 		private double minVal = Double.MAX_VALUE;
 		private double maxVal = Double.MIN_VALUE;
 		private double mean = Double.NaN;
 		private double median = Double.NaN;
+		private DataStatistics statistics = null;
+		/* Region sums for fast means, null while they are (re)built */
+		private volatile SummedAreaTable summedAreas = null;
+		/* Counts the data changes, a table built from older data is not
+		 * installed */
+		private int summedAreaGeneration = 0;
 
 		/**
 		 * Sets all member variables of the DataMatrix instance to their initial
@@ -586,6 +598,8 @@ public class TVModel extends Observable implements DataModel {
 			maxVal = Double.MIN_VALUE;
 			mean = Double.NaN;
 			median = Double.NaN;
+			statistics = null;
+			invalidateSummedAreas();
 		}
 
 		/**
@@ -596,73 +610,138 @@ public class TVModel extends Observable implements DataModel {
 		 */
 		public void treatZeroesAsMissing() {
 
-			for (int i = 0; i < exprData.length; i++) {
-				for (int j = 0; j < exprData[i].length; j++) {
-					if (Helper.nearlyEqual(0.0, exprData[i][j])) {
-						exprData[i][j] = DataModel.NAN;
+			for (int i = 0; i < exprData.getNumRow(); i++) {
+				for (int j = 0; j < exprData.getNumCol(); j++) {
+					if (Helper.nearlyEqual(0.0, exprData.get(i, j))) {
+						exprData.set(i, j, DataModel.NAN);
 					}
 				}
 			}
+
+			rebuildSummedAreasInBackground();
 		}
 
 		/** 
 		 * Finds the maximum and minimum values in the data, as well as mean and
-		 * median.
+		 * median. The data is not copied or sorted, see DataStatistics.
 		 */
 		@Override
 		public void calculateBaseValues() {
 
-			// Double.MAX_VALUE is multiplied by -1 because data can be negative
-			// and we want to start with the smallest value possible for finding
-			// a maximum in a data array. Double.MIN_VALUE is the smallest
-			// positive value.
-			double maxVal = -1.0 * Double.MAX_VALUE;
-			double minVal = Double.MAX_VALUE;
-			double roundedMean = Double.NaN;
-			double roundedMedian = Double.NaN;
-			
 			if (exprData == null) {
 				LogBuffer.println("Could not calculate base values for data " +
 					"(min, max, median, mean). Data matrix was null.");
 				return;
 			}
-			
-			final int nRows = nRows();
-			final int nCols = nCols();
-			
-			double sum = 0;
-			int skipped = 0;
 
-			int i = 0, j = 0;
-			for (i = 0; i < nRows; i++) {
-				for (j = 0; j < nCols; j++) {
+			final DataStatistics stats = new DataStatistics(exprData);
+			this.statistics = stats;
 
-					final double dataPoint = exprData[i][j];
+			if (stats.getCount() < 1) {
+				LogBuffer.println("Not enough data points for calculation of " +
+					"mean: " + stats.getCount());
+			}
 
-					if(!Double.isNaN(dataPoint) 
-							&& !Double.isInfinite(dataPoint)) {
-						sum += dataPoint;
+			setMinVal(stats.getMin());
+			setMaxVal(stats.getMax());
+			setMean(Helper.roundDouble(stats.getMean(), 4));
+			setMedian(Helper.roundDouble(stats.getMedian(), 4));
 
-						if (dataPoint > maxVal) {
-							maxVal = dataPoint;
-						}
+			/* Build the region sums now, while the data is being loaded */
+			buildSummedAreas(invalidateSummedAreas());
+		}
 
-						if (dataPoint < minVal) {
-							minVal = dataPoint;
-						}
-					} else {
-						skipped++;
-					}
+		/**
+		 * Returns the summed area table of the data in its current order. It
+		 * is never built here, so callers on the EDT do not wait for it.
+		 * @return The table, or null if there is no data, the table would
+		 * not fit into memory or it is still being rebuilt after a change. 
+		 * Callers scan the data instead.
+		 */
+		private SummedAreaTable getSummedAreas() {
+
+			return summedAreas;
+		}
+
+		/**
+		 * Discards the summed area table, also a table which is still being
+		 * built from the previous data.
+		 * @return The generation of the current data.
+		 */
+		private synchronized int invalidateSummedAreas() {
+
+			summedAreas = null;
+			return ++summedAreaGeneration;
+		}
+
+		/**
+		 * Builds the summed area table of the current data and installs it,
+		 * unless the data changed again in the meantime.
+		 * @param generation - The generation of the data to build from.
+		 */
+		private void buildSummedAreas(final int generation) {
+
+			final FlatMatrix data = exprData;
+			if (data == null 
+				|| !SummedAreaTable.fits(data.getNumRow(), data.getNumCol())) {
+				return;
+			}
+
+			synchronized (this) {
+				if (generation != summedAreaGeneration) {
+					return;
 				}
 			}
 
-			roundedMean = calculateMean(sum, skipped);
-			roundedMedian = calculateMedian(exprData);
+			final SummedAreaTable areas = new SummedAreaTable(data);
 
-			setMinVal(minVal);
-			setMaxVal(maxVal);
-			setMean(roundedMean);
-			setMedian(roundedMedian);
+			synchronized (this) {
+				if (generation == summedAreaGeneration) {
+					summedAreas = areas;
+				}
+			}
+		}
+
+		/**
+		 * Discards the summed area table and builds a new one on a
+		 * background thread. Until it is ready, means are calculated by
+		 * scanning the data.
+		 */
+		private void rebuildSummedAreasInBackground() {
+
+			final int generation = invalidateSummedAreas();
+
+			SUMMED_AREA_EXECUTOR.execute(new Runnable() {
+
+				@Override
+				public void run() {
+
+					try {
+						buildSummedAreas(generation);
+
+					} catch (final RuntimeException e) {
+						LogBuffer.logException(e);
+					}
+				}
+			});
+		}
+
+		/**
+		 * Returns a percentile of the data, estimated from the statistics
+		 * collected by calculateBaseValues() without another pass over the
+		 * data.
+		 * @param percent - The percentile, between 0 and 100.
+		 * @return The value below which the given percentage of the data lies
+		 * or NaN if no statistics are available.
+		 */
+		@Override
+		public double getPercentile(final double percent) {
+
+			if (statistics == null) {
+				return Double.NaN;
+			}
+
+			return statistics.getPercentile(percent);
 		}
 		
 		/**
@@ -689,6 +768,18 @@ public class TVModel extends Observable implements DataModel {
 				return 0;
 			}
 
+			final SummedAreaTable areas = getSummedAreas();
+			if (areas != null) {
+				final int count = areas.getCount(startingRow, endingRow, 
+					startingCol, endingCol);
+				final int cells = (endingRow - startingRow + 1) 
+					* (endingCol - startingCol + 1);
+
+				return calculateZoomMean(startingRow, endingRow, startingCol,
+					endingCol, areas.getSum(startingRow, endingRow, startingCol, 
+					endingCol), cells - count);
+			}
+
 			double roundedMean = Double.NaN;
 			double sum = 0;
 			int skipped = 0;
@@ -696,7 +787,7 @@ public class TVModel extends Observable implements DataModel {
 			for (int i = startingRow; i <= endingRow; i++) {
 				for (int j = startingCol; j <= endingCol; j++) {
 
-					final double dataPoint = exprData[i][j];
+					final double dataPoint = exprData.get(i, j);
 
 					if(!Double.isNaN(dataPoint) &&
 						!Double.isInfinite(dataPoint)) {
@@ -750,129 +841,30 @@ public class TVModel extends Observable implements DataModel {
 			return roundedMean;
 		}
 		
-		/**
-		 * Finds the median value of a 2D double array.
-		 * @param data
-		 * @return Median value.
-		 */
-		private double calculateMedian(double[][] data) {
-
-			double result = Double.NaN;
-			
-			final int nRows = nRows();
-			final int nCols = nCols();
-			
-			/* ROW ORDER 
-			 * Although allocating a second array kills RAM for large
-			 * matrices it needs to be done. Sorting the data is required
-			 * for median and the original data cannot be disturbed...
-			 */
-			double[] newData = new double[nRows * nCols];
-
-			for (int i = 0; i < nRows; i++) {
-				for (int j = 0; j < nCols; j++) {
-					newData[nCols * i + j] = exprData[i][j];
-				}
-			}
-			Arrays.sort(newData); /* Good night cpu...*/
-
-			int realDataSize = getRealDataSize(newData);
-
-			/* Even length case */
-			if(realDataSize % 2 == 0) {
-				int idxLeft = realDataSize / 2;
-				int idxRight = (realDataSize / 2) + 1;
-				result = (newData[idxLeft] + newData[idxRight]) / 2;
-			} else {
-				//E.g. size of 3 results in 1.5. Floor is 1. Indexes start from
-				//0, so 1 is element 2 (the middle of the 3 element array)
-				result = newData[(int) Math.floor(realDataSize / 2)];
-			}
-
-			return Helper.roundDouble(result, 4);
-		}
-		
 		/** Uses lists of reordered axis indices to reorder the expression 
-		 * data matrix. This algorithm is not in place!
+		 * data matrix. No values are moved, the new order is applied on
+		 * access.
 		 * 
-		 * @param reorderedRowIndices List of reordered row indices.
-		 * @param reorderedColIndices List of reordered column indices */
+		 * @param reorderedRowIndices List of reordered row indices or null
+		 * to keep the row order.
+		 * @param reorderedColIndices List of reordered column indices or null
+		 * to keep the column order. */
 		public void reorderMatrixData(final int[] reorderedRowIndices,
 																	final int[] reorderedColIndices) {
 
-			int rows = reorderedRowIndices.length;
-			int cols = reorderedColIndices.length;
-			
-			if(rows != getNumRow() || cols != getNumCol()) {
+			if((reorderedRowIndices != null 
+				&& reorderedRowIndices.length != exprData.getNumRow()) 
+				|| (reorderedColIndices != null 
+				&& reorderedColIndices.length != exprData.getNumCol())) {
 				LogBuffer.println("Size of reordered axes does not match the original matrix.");
 				return;
 			}
 
-			double[][] reorderedMatrixData = new double[rows][cols];
-
-			// order the numerical data.
-			int row = -1;
-			int col = -1;
-
-			for(int i = 0; i < rows; i++) {
-				row = reorderedRowIndices[i];
-
-				for(int j = 0; j < cols; j++) {
-					col = reorderedColIndices[j];
-					reorderedMatrixData[i][j] = exprData[row][col];
-				}
-			}
-
-			setExprData(reorderedMatrixData);
+			exprData.reorder(reorderedRowIndices, reorderedColIndices);
+			rebuildSummedAreasInBackground();
 			setChanged();
 		}
-		
-
-		private int getRealDataSize(final double[] data) {
-			int size = data.length;
-
-			//This is for testing - it simulates an out of memory exception
-			//during load on the Ubuntu VM Rob created
-//			double[] causeMemExcep = Arrays.copyOfRange(data,0,data.length - 1);
-
-			// find first NaN or Infinity value
-			for(int i = 0; i < data.length; i++) {
-				double dataPoint = data[i];
-				if(Double.isNaN(dataPoint) || Double.isInfinite(dataPoint)) {
-					size = i;
-					break;
-				}
-			}
-
-			return size;
-		}
-
-		/**
-		 * Helper for calculateBaseValues().
-		 * Finds the mean value of a 2D double array given the sum of the data
-		 * values and the amount of skipped values.
-		 * This doesn't calculate the mean from the data itself because during
-		 * search min and max values, the sum is already created. This way,
-		 * another walk of the data arrays can be avoided.
-		 * @param sum - Sum of all data values.
-		 * @param skipped - Amount of skipped data array entries.
-		 * @return Mean value.
-		 */
-		private double calculateMean(double sum, int skipped) {
-
-			double mean;
-			int numDataPoints = (nRows() * nCols()) - skipped;
-
-			if(numDataPoints < 1) {
-				LogBuffer.println("Not enough data points for calculation of " +
-					"mean: " + numDataPoints);
-				return Double.NaN;
-			}
-
-			mean = sum / numDataPoints;
 
-			return Helper.roundDouble(mean, 4);
-		}
 
 		@Override
 		public void setMinVal(final double newMinVal) {
@@ -929,26 +921,67 @@ public class TVModel extends Observable implements DataModel {
 			final int ngene = nRows();
 
 			if ((x < nexpr) && (y < ngene) && (x >= 0) && (y >= 0)) {
-				return exprData[y][x];
+				return exprData.get(y, x);
 			}
 
 			return DataModel.NAN;
 		}
 
-		public void setExprData(final double[][] newData) {
+		@Override
+		public double[] getRowValues(final int row, final double[] target) {
+
+			return exprData.getRow(row, target);
+		}
+
+		@Override
+		public double[] getRowValues(final int row, final int fromCol,
+		                             final int length, final double[] target) {
+
+			return exprData.getRow(row, fromCol, length, target);
+		}
+
+		/**
+		 * Copies the data into flat storage. The amount of columns is defined
+		 * by the first row.
+		 * @param newData - The rows of the data.
+		 * @param releaseRows - Whether the rows of newData may be set to null
+		 * while they are copied.
+		 */
+		public void setExprData(final double[][] newData,
+		                        final boolean releaseRows) {
+
+			invalidateSummedAreas();
+
+			if (newData == null) {
+				exprData = null;
+				return;
+			}
+
+			final int cols = (newData.length > 0) ? newData[0].length : 0;
+			exprData = FlatMatrix.fromRows(newData, cols, releaseRows);
 
-			exprData = newData;
+			if (exprData.isReducedPrecision()) {
+				LogBuffer.println("Data is stored with reduced precision "
+					+ "(float) to fit into memory.");
+			}
 		}
 
+		/**
+		 * @return A copy of the data as nested row arrays.
+		 * @deprecated Use getRowValues() to read the data row by row.
+		 */
+		@Deprecated
+		@Override
 		public double[][] getExprData() {
 
-			return exprData;
+			return (exprData == null) ? null : exprData.toArray();
 		}
 
 		@Override
 		public void setValue(final double value, final int x, final int y) {
 
-			exprData[x][y] = value;
+			exprData.set(y, x, value);
+			rebuildSummedAreasInBackground();
 			setModified(true);
 			setChanged();
 		}
@@ -996,6 +1029,13 @@ public class TVModel extends Observable implements DataModel {
 		 * int)
 		 */
 		public double getRowAverage(int fromRowId, int toRowId){
+
+			final SummedAreaTable areas = getSummedAreas();
+			if (areas != null) {
+				return getRegionAverage(areas, fromRowId, toRowId, 0, 
+					nCols() - 1);
+			}
+
 			double sum = 0;
 			int count = 0;
 			final int numOfCols = nCols();
@@ -1023,6 +1063,13 @@ public class TVModel extends Observable implements DataModel {
 		 * @see treeview.DataMatrix#getColAverage(int,int)
 		 */
 		public double getColAverage(int fromColId, int toColId){
+
+			final SummedAreaTable areas = getSummedAreas();
+			if (areas != null) {
+				return getRegionAverage(areas, 0, nRows() - 1, fromColId, 
+					toColId);
+			}
+
 			double sum = 0;
 			int count = 0;
 			final int numOfRows = nRows();
@@ -1042,6 +1089,34 @@ public class TVModel extends Observable implements DataModel {
 				return Helper.roundDouble(avg, 4);
 			}
 		}
+
+		/**
+		 * Looks up the average of a region in the summed area table. Parts of
+		 * the region outside of the matrix are ignored.
+		 * @return The average rounded to 4 decimals or NaN if the region has
+		 * no values.
+		 */
+		private double getRegionAverage(final SummedAreaTable areas,
+		                                final int fromRow, final int toRow,
+		                                final int fromCol, final int toCol) {
+
+			final int startingRow = Math.max(0, fromRow);
+			final int endingRow = Math.min(areas.getNumRow() - 1, toRow);
+			final int startingCol = Math.max(0, fromCol);
+			final int endingCol = Math.min(areas.getNumCol() - 1, toCol);
+
+			if (startingRow > endingRow || startingCol > endingCol) {
+				return Double.NaN;
+			}
+
+			final double avg = areas.getMean(startingRow, endingRow, 
+				startingCol, endingCol);
+			if (Double.isNaN(avg)) {
+				return Double.NaN;
+			}
+
+			return Helper.roundDouble(avg, 4);
+		}
 	}
 
 	/** holds actual node information for column tree */
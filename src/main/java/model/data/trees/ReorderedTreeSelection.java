@@ -150,6 +150,18 @@ public class ReorderedTreeSelection extends Observable implements
 		return(-1);
 	}
 
+	@Override
+	public int getNextSelectedIndex(final int i) {
+
+		return parent.getNextSelectedIndex(i);
+	}
+
+	@Override
+	public int getNextDeselectedIndex(final int i) {
+
+		return parent.getNextDeselectedIndex(i);
+	}
+
 	@Override
 	public int getNumIndexes() {
 
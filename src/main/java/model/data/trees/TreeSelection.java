@@ -8,6 +8,7 @@ package model.data.trees;
 
 import util.LogBuffer;
 
+import java.util.BitSet;
 import java.util.Observable;
 
 /**
@@ -43,14 +44,13 @@ public class TreeSelection extends Observable implements TreeSelectionI {
 
 		final IntegerSelection temp = new IntegerSelection(nIndex);
 
-		for (int i = 0; i < nIndex; i++) {
+		for (int i = integerSelection.getNextSelected(0); i >= 0
+				&& i < nIndex; i = integerSelection.getNextSelected(i + 1)) {
 
-			if (i < integerSelection.getNSelectable()) {
-				temp.set(i, integerSelection.isSelected(i));
-
-			} else {
-				temp.set(i, false);
-			}
+			final int end = Math.min(integerSelection.getRunEnd(i),
+					nIndex - 1);
+			temp.setRange(i, end, true);
+			i = end;
 		}
 
 		this.integerSelection = temp;
@@ -132,13 +132,7 @@ public class TreeSelection extends Observable implements TreeSelectionI {
 			return(i);
 		}
 
-		int j = i;
-		for(j = i;j > 0;j--){
-			if(!isIndexSelected(j - 1)) {
-				break;
-			}
-		}
-		return(j);
+		return(integerSelection.getRunStart(i));
 	}
 
 	/**
@@ -161,13 +155,29 @@ public class TreeSelection extends Observable implements TreeSelectionI {
 			return(i);
 		}
 
-		int j = i;
-		for(j = i; j < getMaxIndex(); j++){
-			if(!isIndexSelected(j + 1)) {
-				break;
-			}
-		}
-		return(j);
+		return(integerSelection.getRunEnd(i));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see treeview.TreeSelectionI#getNextSelectedIndex(int)
+	 */
+	@Override
+	public int getNextSelectedIndex(final int i) {
+
+		return integerSelection.getNextSelected(i);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see treeview.TreeSelectionI#getNextDeselectedIndex(int)
+	 */
+	@Override
+	public int getNextDeselectedIndex(final int i) {
+
+		return integerSelection.getNextDeselected(i);
 	}
 
 	/*
@@ -239,9 +249,7 @@ public class TreeSelection extends Observable implements TreeSelectionI {
 			max = swap;
 		}
 
-		for(int i = min;i <= max;i++) {
-			setIndexSelection(i,true);
-		}
+		integerSelection.setRange(min,max,true);
 	}
 
 	/*
@@ -285,49 +293,48 @@ public class TreeSelection extends Observable implements TreeSelectionI {
 
 	/**
 	 * a class to efficiently model a range of integers which can be selected.
+	 * The selected indexes are kept in a bit set, so that ranges are selected
+	 * a word at a time and runs of selected indexes are found without looking
+	 * at every index. The number of selected indexes and the smallest and
+	 * largest one are cached until the selection changes.
 	 */
 	class IntegerSelection {
 
-		boolean[] isSelected;
+		private final BitSet isSelected;
+		private final int size;
+
+		/* Cached values, valid if nSelected >= 0 */
+		private int nSelected;
+		private int min;
+		private int max;
 
 		IntegerSelection(final int size) {
 
-			isSelected = new boolean[size];
+			this.size = size;
+			this.isSelected = new BitSet(size);
 			deselectAll();
 		}
 
 		public int getNSelectable() {
 
-			return isSelected.length;
+			return size;
 		}
 
 		public int getNSelected() {
-			int n = 0;
 
-			for (final boolean element : isSelected) {
-
-				if (element) {
-					n++;
-				}
-			}
-
-			return n;
+			update();
+			return nSelected;
 		}
 
 		public int[] getSelectedIndexes() {
 
-			final int nSelected = getNSelected();
-			final int[] indexes = new int[nSelected];
+			final int[] indexes = new int[getNSelected()];
 			int curr = 0;
 
-			// LogBuffer.println("Num Selected: [" + nSelected + "].");
+			for (int i = isSelected.nextSetBit(0); i >= 0; i = isSelected
+					.nextSetBit(i + 1)) {
 
-			for (int i = 0; i < isSelected.length; i++) {
-
-				if (isSelected[i]) {
-					// LogBuffer.println("Index: [" + i + "] is selected.");
-					indexes[curr++] = i;
-				}
+				indexes[curr++] = i;
 			}
 
 			return indexes;
@@ -336,63 +343,118 @@ public class TreeSelection extends Observable implements TreeSelectionI {
 		public void deselectAll() {
 
 			TreeSelection.this.setChanged();
-			for (int i = 0; i < isSelected.length; i++) {
-
-				isSelected[i] = false;
-			}
+			isSelected.clear();
+			nSelected = 0;
+			min = -1;
+			max = -1;
 		}
 
 		public void selectAll() {
 
 			TreeSelection.this.setChanged();
-			for (int i = 0; i < isSelected.length; i++) {
-
-				isSelected[i] = true;
-			}
+			isSelected.set(0, size);
+			nSelected = -1;
 		}
 
 		public void set(final int i, final boolean b) {
 
-			if ((i >= 0) && (i < isSelected.length)) {
+			if ((i >= 0) && (i < size)) {
 				TreeSelection.this.setChanged();
-				// LogBuffer.println("Setting isSelected to [" + (b ? "true" :
-				// "false") + "] for index: [" + i + "].");
-				isSelected[i] = b;
+				if (isSelected.get(i) != b) {
+					isSelected.set(i, b);
+					nSelected = -1;
+				}
 			}
 		}
 
+		/**
+		 * Sets the selection status of all indexes from min to max, both
+		 * included. Indexes outside of the selectable range are ignored.
+		 */
+		public void setRange(final int min, final int max, final boolean b) {
+
+			final int from = Math.max(0, min);
+			final int to = Math.min(size - 1, max);
+			if (from > to) {
+				return;
+			}
+
+			TreeSelection.this.setChanged();
+			isSelected.set(from, to + 1, b);
+			nSelected = -1;
+		}
+
 		public boolean isSelected(final int i) {
 			
-			if ((i >= 0) && (i < isSelected.length)) {
-				return isSelected[i];
+			if ((i >= 0) && (i < size)) {
+				return isSelected.get(i);
 			}
 			
 			return false;
 		}
 
-		public int getMin() {
-
-			final int min = -1;
-			for (int i = 0; i < isSelected.length; i++) {
+		/**
+		 * @return The first selected index from i on, or -1 if there is none.
+		 */
+		public int getNextSelected(final int i) {
 
-				if (isSelected[i])
-					return i;
+			if (i >= size) {
+				return -1;
 			}
 
+			return isSelected.nextSetBit(Math.max(0, i));
+		}
+
+		/**
+		 * @return The first index from i on which is not selected.
+		 */
+		public int getNextDeselected(final int i) {
+
+			return Math.min(size, isSelected.nextClearBit(Math.max(0, i)));
+		}
+
+		/**
+		 * @return The first selected index of the run of selected indexes
+		 *         which contains i.
+		 */
+		public int getRunStart(final int i) {
+
+			return isSelected.previousClearBit(i) + 1;
+		}
+
+		/**
+		 * @return The last selected index of the run of selected indexes
+		 *         which contains i.
+		 */
+		public int getRunEnd(final int i) {
+
+			return isSelected.nextClearBit(i) - 1;
+		}
+
+		public int getMin() {
+
+			update();
 			return min;
 		}
 
 		public int getMax() {
 
-			int max = -1;
-			for (int i = 0; i < isSelected.length; i++) {
+			update();
+			return max;
+		}
 
-				if (isSelected[i]) {
-					max = i;
-				}
+		/**
+		 * Recalculates the cached values after the selection changed.
+		 */
+		private void update() {
+
+			if (nSelected >= 0) {
+				return;
 			}
 
-			return max;
+			nSelected = isSelected.cardinality();
+			min = isSelected.nextSetBit(0);
+			max = isSelected.length() - 1;
 		}
 	}
 
@@ -88,6 +88,29 @@ public interface TreeSelectionI {
 	 */
 	public abstract int getMaxContiguousIndex(final int i);
 
+	/**
+	 * Finds the next selected index. Together with getNextDeselectedIndex(),
+	 * this walks over the runs of selected indexes without visiting each
+	 * selected index. Indexes are the same as in getSelectedIndexes().
+	 *
+	 * @param i
+	 *            The index to start from
+	 * @return The first selected index which is not smaller than i, or -1 if
+	 *         there is none.
+	 */
+	public abstract int getNextSelectedIndex(int i);
+
+	/**
+	 * Finds the next index which is not selected, e.g. the end of a run of
+	 * selected indexes.
+	 *
+	 * @param i
+	 *            The index to start from
+	 * @return The first index which is not smaller than i and not selected.
+	 *         This is the number of indexes if all following are selected.
+	 */
+	public abstract int getNextDeselectedIndex(int i);
+
 	/**
 	 * Nice for find boxes which are curious.
 	 *
@@ -11,8 +11,10 @@ import gui.general.OutOfMemoryDialogController;
 import gui.labels.LabelView;
 import gui.matrix.AspectType;
 import gui.matrix.MapContainer;
+import model.data.matrix.FlatMatrix;
 import model.data.trees.TreeSelectionI;
 import model.export.labels.LabelExportOption;
+import model.export.matrix.MatrixExportOption;
 import model.export.trees.TreeExportOption;
 import model.fileImport.ModelLoader;
 import org.freehep.graphics2d.VectorGraphics;
@@ -23,6 +25,7 @@ import org.freehep.graphicsio.pdf.PDFGraphics2D;
 import org.freehep.graphicsio.ps.PSGraphics2D;
 import org.freehep.graphicsio.svg.SVGGraphics2D;
 import util.LogBuffer;
+import util.MemoryBudget;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
@@ -33,6 +36,7 @@ import javax.imageio.stream.FileImageOutputStream;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -42,6 +46,7 @@ import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
@@ -53,9 +58,9 @@ import java.util.concurrent.ExecutionException;
  */
 public class ExportHandler {
 
-	//This is the maximum size for an exported image format imposed by the fact
-	//that the ImageIO class for writing PNG/PPM uses BufferedImage which
-	//uses this maximum
+	//This is the maximum size of JPG images and of the matrix image embedded
+	//in documents, imposed by the fact that they are held in one BufferedImage
+	//which uses this maximum.  PNG/PPM images are written in strips.
 	static final Integer MAX_IMAGE_SIZE = Integer.MAX_VALUE;
 
 	final protected DendroView dendroView;
@@ -96,6 +101,8 @@ public class ExportHandler {
 	protected LabelExportOption colLabelsIncluded = LabelExportOption.NO;
 	protected TreeExportOption rowTreeIncluded = TreeExportOption.AUTO;
 	protected TreeExportOption colTreeIncluded = TreeExportOption.AUTO;
+	//How the matrix is written to document formats
+	protected MatrixExportOption matrixOption = MatrixExportOption.getDefault();
 	protected int minFontPoints = 1;
 	public final static int SQUEEZE = LabelView.getSqueeze(); //static
 	protected int labelAreaHeight = minFontPoints + SQUEEZE; //Hght for 1 label
@@ -621,7 +628,7 @@ public class ExportHandler {
 			}
 
 			//If this region is not too big
-			if((double) xdim / (double) MAX_IMAGE_SIZE * (double) ydim <= 1.0) {
+			if(!isTooBig(matrixOnly,xdim,ydim)) {
 				regs.add(rt);
 			}
 		}
@@ -673,9 +680,7 @@ public class ExportHandler {
 			}
 
 			//If this region is too big
-			if((((double) xdim / (double) MAX_IMAGE_SIZE) * (double) ydim) >
-				1.0) {
-
+			if(isTooBig(matrixOnly,xdim,ydim)) {
 				regs.add(RegionType.values()[i]);
 			}
 		}
@@ -715,15 +720,10 @@ public class ExportHandler {
 			AspectType aspect = AspectType.values()[i];
 			setCalculatedDimensions(selectedRegion,aspect);
 			//If this aspect results in an image that is too big
-			//The logic below is weird to avoid generating a number larger than
-			//Integer.MAX_VALUE.  It's more easily understood as:
-			//if(w*h > Integer.MAX_VALUE)
 			//NOTE: if we are doing matrixOnly, we do not include the gaps,
 			//labels, or trees.  This is intended to service the case where we
 			//embed a PNG of the matrix inside a PDF
-			if(((double) xdim / (double) MAX_IMAGE_SIZE * (double) ydim) >
-				1.0) {
-
+			if(isTooBig(matrixOnly,xdim,ydim)) {
 				asps.add(aspect);
 			}
 		}
@@ -756,21 +756,59 @@ public class ExportHandler {
 	 */
 	public boolean isOversized(RegionType reg) {
 		if(format == null || !format.isDocumentFormat()) {
-			if((((double) getXDim(reg) / (double) MAX_IMAGE_SIZE) *
-				(double) getYDim(reg)) > 1.0) {
+			return(isTooBig(format,getXDim(reg),getYDim(reg)));
+		}
+		return(isTooBig(format,getMatrixXDim(reg),getMatrixYDim(reg)));
+	}
 
-				return(true);
-			}
-		} else {
-			if((((double) getMatrixXDim(reg) / (double) MAX_IMAGE_SIZE) *
-				(double) getMatrixYDim(reg)) > 1.0) {
+	/**
+	 * Determines whether an image is too big to be exported.  PNG and PPM
+	 * images are encoded in strips of rows, so only one row of them has to fit
+	 * into an array.  JPG images and the matrix image embedded in documents
+	 * are held in one BufferedImage, which has at most MAX_IMAGE_SIZE pixels.
+	 * Documents which draw the matrix as shapes embed no image at all.
+	 *
+	 * @param fmt - The format of the model.export, null for the default
+	 * @param xdim - The width of the whole image, or of the matrix for
+	 *               document formats
+	 * @param ydim - The height of the whole image, or of the matrix for
+	 *               document formats
+	 * @return
+	 */
+	public boolean isTooBig(final FormatType fmt,final int xdim,
+		final int ydim) {
 
-				return(true);
-			}
+		final FormatType f = (fmt == null ? FormatType.getDefault() : fmt);
+		if(f.isWrittenInStrips()) {
+			//PngStripWriter keeps rows of up to 4 bytes per pixel
+			return((long) xdim * Integer.BYTES >= FlatMatrix.MAX_ARRAY_CELLS);
+		}
+		if(f.isDocumentFormat() && matrixOption.isVector()) {
+			return(false);
 		}
 
-		//If this region is too big
-		return(false);
+		//Avoids generating a number larger than Integer.MAX_VALUE.  It's more
+		//easily understood as: w*h > MAX_IMAGE_SIZE
+		return(((double) xdim / (double) MAX_IMAGE_SIZE) * (double) ydim >
+			1.0);
+	}
+
+	/**
+	 * Determines whether an image is too big to be exported, for the checks
+	 * which only distinguish document from image formats.  The default image
+	 * format stands for all image formats.
+	 *
+	 * @param matrixOnly - Whether the size is that of the matrix embedded in a
+	 *                     document or that of a whole image
+	 * @param xdim
+	 * @param ydim
+	 * @return
+	 */
+	private boolean isTooBig(final boolean matrixOnly,final int xdim,
+		final int ydim) {
+
+		return(isTooBig(matrixOnly ? FormatType.getDefaultDocumentFormat() :
+			FormatType.getDefaultImageFormat(),xdim,ydim));
 	}
 
 	public class ExportWorker extends SwingWorker<Void,ModelLoader.LoadStatus>
@@ -785,6 +823,12 @@ public class ExportHandler {
 		final LabelExportOption colLabelOption;
 		ModelLoader.LoadStatus ls;
 		private boolean exportSuccessful = true;
+		//Set while an image is drawn in strips, so that the progress covers
+		//the whole image instead of restarting for every strip
+		private boolean exportingStrips = false;
+		//Lengths of the longest labels, measured once per model.export
+		private int rowLabelLength = -1;
+		private int colLabelLength = -1;
 
 		public ExportWorker(FormatType format,String fileName,
 			final RegionType region,
@@ -825,9 +869,7 @@ public class ExportHandler {
 					getMatrixXDim(region) : getXDim(region));
 				int y = (format.isDocumentFormat() ?
 					getMatrixYDim(region) : getYDim(region));
-				double tooBig =
-					((double) x / (double) MAX_IMAGE_SIZE) * (double) y;
-				if(tooBig > 1.0) {
+				if(isTooBig(format,x,y)) {
 					throw new ExportException(ExportHandler.this,region);
 				} else {
 					LogBuffer.println("Export NOT too big.  [x" + x + " * y" +
@@ -878,7 +920,8 @@ public class ExportHandler {
 
 		@Override
 		public void update(Observable o,Object arg) {
-			if((arg != null) && Integer.class.isInstance(arg)) {
+			if(!exportingStrips && (arg != null) &&
+				Integer.class.isInstance(arg)) {
 				if(o ==
 					dendroView.getInteractiveMatrixView().getArrayDrawer()) {
 					int i = (int) arg;
@@ -921,10 +964,9 @@ public class ExportHandler {
 		private void createContentForTrees(final Graphics2D g2d,final RegionType region,
 			final boolean showSelections) {
 
-			if(isColTreeIncluded()) {
-				ls.setProgress(0);
-				ls.setStatus("Exporting column tree ...");
-				publish(ls);
+			if(isColTreeIncluded() &&
+				intersectsClip(g2d,0,getColTreeAndGapLen())) {
+				startPart("Exporting column tree ...");
 
 				dendroView.getColumnTreeView().export(g2d,
 					getRowTreeAndGapLen() + getRowLabelAndGapLen(),
@@ -934,9 +976,7 @@ public class ExportHandler {
 			}
 
 			if(isRowTreeIncluded()) {
-				ls.setProgress(0);
-				ls.setStatus("Exporting row tree ...");
-				publish(ls);
+				startPart("Exporting row tree ...");
 
 				dendroView.getRowTreeView().export(g2d,treesHeight,
 					getColTreeAndGapLen() + getColLabelAndGapLen(),
@@ -944,40 +984,107 @@ public class ExportHandler {
 					showSelections);
 			} 
 		}
+
+		/**
+		 * Reports the start of a part of the image.  The progress of a strip
+		 * export is reported by exportStrips for all parts together.
+		 * @param status
+		 */
+		private void startPart(final String status) {
+			if(exportingStrips) {
+				return;
+			}
+			ls.setProgress(0);
+			ls.setStatus(status);
+			publish(ls);
+		}
+
+		/**
+		 * @param g2d
+		 * @param y - The top of a band of rows of the image
+		 * @param height - The height of the band
+		 * @return Whether the band intersects the clip of g2d, e.g. the strip
+		 * which is drawn
+		 */
+		private boolean intersectsClip(final Graphics2D g2d,final int y,
+			final int height) {
+			final Rectangle clip = g2d.getClipBounds();
+			return(clip == null ||
+				(clip.y < y + height && y < clip.y + clip.height));
+		}
+
+		/**
+		 * @return The length of the longest exported row label
+		 */
+		private int getRowLabelLength() {
+			if(rowLabelLength < 0) {
+				rowLabelLength =
+					dendroView.getRowLabelView().getMaxExportStringLength(region,
+						rowLabelOption == LabelExportOption.SELECTION,
+						labelAreaHeight - SQUEEZE);
+			}
+			return(rowLabelLength);
+		}
+
+		/**
+		 * @return The length of the longest exported column label
+		 */
+		private int getColLabelLength() {
+			if(colLabelLength < 0) {
+				colLabelLength =
+					dendroView.getColLabelView().getMaxExportStringLength(region,
+						colLabelOption == LabelExportOption.SELECTION,
+						labelAreaHeight - SQUEEZE);
+			}
+			return(colLabelLength);
+		}
 		
 		/**
 		 * This calls the model.export functions of the various components of the total
 		 * image, arranged in an aligned fashion together
 		 * 
 		 * @param g2d
+		 * @param im - The image g2d draws to, into which the matrix is
+		 * written directly. Null for document formats.
+		 * @param stripY - The y position of im in the exported image, when im
+		 * is one strip of it. g2d must be translated accordingly.
 		 * @param region
 		 */
-		private void createContent(final Graphics2D g2d,
-			final RegionType region,final boolean showSelections,
+		private void createContent(final Graphics2D g2d,final BufferedImage im,
+			final int stripY,final RegionType region,final boolean showSelections,
 			final LabelExportOption rowLabelOption,
 			final LabelExportOption colLabelOption,final boolean isDocFormat) {
 
-			ls.setProgress(0);
-			ls.setStatus("Exporting matrix ...");
-			publish(ls);
+			startPart("Exporting matrix ...");
 			//If this is a document format, embed a PNG of the matrix in the
-			//document so that the size of the exported file is not enormous
-			if(isDocFormat) {
-				BufferedImage im =
+			//document so that the size of the exported file is not enormous,
+			//unless the cells were requested as shapes
+			if(isDocFormat && !matrixOption.isVector()) {
+				BufferedImage matrixIm =
 					new BufferedImage(getNumXExportIndexes(region) * tileWidth,
 						getNumYExportIndexes(region) * tileHeight,
 						BufferedImage.TYPE_INT_ARGB);
-				Graphics2D imGraphics = (Graphics2D) im.getGraphics();
 				// create contents of the image
-				createContentForIMVAlone(imGraphics,region,showSelections);
+				createContentForIMVAlone(matrixIm,region,showSelections);
 				// draw the image to the vector graphics g
-				g2d.drawImage(im,
+				g2d.drawImage(matrixIm,
 					getRowTreeAndGapLen() + getRowLabelAndGapLen(),
 					getColTreeAndGapLen() + getColLabelAndGapLen(),null);
-			} else {
+			} else if(isDocFormat) {
 				dendroView.getInteractiveMatrixView().export(this,g2d,
 					getRowTreeAndGapLen() + getRowLabelAndGapLen(),
 					getColTreeAndGapLen() + getColLabelAndGapLen(),
+					tileWidth,tileHeight,region,showSelections,
+					matrixOption == MatrixExportOption.REDUCED_SHAPES);
+				if(isCancelled()) {
+					setExportSuccessful(false);
+					return;
+				}
+			} else {
+				//Write the tiles straight into the pixels of the image
+				dendroView.getInteractiveMatrixView().export(this,im,
+					getRowTreeAndGapLen() + getRowLabelAndGapLen(),
+					getColTreeAndGapLen() + getColLabelAndGapLen() - stripY,
 					tileWidth,tileHeight,region,showSelections);
 				// Checks if the worker has been cancelled
 				if(isCancelled()) {
@@ -989,48 +1096,38 @@ public class ExportHandler {
 			createContentForTrees(g2d, region, showSelections);
 
 			if(rowLabelOption != LabelExportOption.NO) {
-				ls.setProgress(0);
-				ls.setStatus("Exporting row labels ...");
-				publish(ls);
-
-				//Determine how long the labels are
-				int labelLength =
-					dendroView.getColLabelView().getMaxExportStringLength(region,
-						colLabelOption == LabelExportOption.SELECTION,labelAreaHeight - SQUEEZE);
+				startPart("Exporting row labels ...");
 
 				dendroView.getRowLabelView().export(g2d,
 					getRowTreeAndGapLen(),
 					getColTreeAndGapLen() +
 					(colLabelOption != LabelExportOption.NO ?
-						labelLength + gapSize : 0),
+						getColLabelLength() + gapSize : 0),
 					tileHeight,region,showSelections,
 					rowLabelOption == LabelExportOption.SELECTION,
-					labelAreaHeight - SQUEEZE);
+					labelAreaHeight - SQUEEZE,getRowLabelLength());
 			}
 
 			//Doing the column labels last because it rotates the coordinate system and I'm not certain how to unrotate it
-			if(colLabelOption != LabelExportOption.NO) {
-				ls.setProgress(0);
-				ls.setStatus("Exporting column labels ...");
-				publish(ls);
-
-				//Determine how long the labels are
-				int labelLength =
-					dendroView.getRowLabelView().getMaxExportStringLength(region,
-						rowLabelOption == LabelExportOption.SELECTION,labelAreaHeight - SQUEEZE);
+			if(colLabelOption != LabelExportOption.NO &&
+				intersectsClip(g2d,getColTreeAndGapLen(),getColLabelLength())) {
+				startPart("Exporting column labels ...");
 
 				dendroView.getColLabelView().export(g2d,
 					getRowTreeAndGapLen() +
 						(rowLabelOption != LabelExportOption.NO ?
-								labelLength + gapSize : 0),
+								getRowLabelLength() + gapSize : 0),
 					getColTreeAndGapLen(),tileWidth,region,showSelections,
 					colLabelOption == LabelExportOption.SELECTION,
-					labelAreaHeight - SQUEEZE);
+					labelAreaHeight - SQUEEZE,getColLabelLength());
 			}
 			if(isCancelled()) {
 				setExportSuccessful(false);
 				return;
 			}
+			if(exportingStrips) {
+				return;
+			}
 
 			ls.setStatus("Preparing to open the file in the default system " +
 				"app");
@@ -1038,18 +1135,106 @@ public class ExportHandler {
 		}
 		
 		/**
-		 * @param g2d
+		 * @param im
 		 * @param region
 		 * @param showSelections
 		 */
-		private void createContentForIMVAlone(final Graphics2D g2d,
+		private void createContentForIMVAlone(final BufferedImage im,
 			final RegionType region, final boolean showSelections) {
 			ls.setStatus("Exporting matrix ...");
 			publish(ls);
-			dendroView.getInteractiveMatrixView().export(this,g2d,0,0,
+			dendroView.getInteractiveMatrixView().export(this,im,0,0,
 				tileWidth,tileHeight,region,showSelections);
 		}
 
+		/**
+		 * Renders the image in horizontal strips and encodes each strip
+		 * before the next one is rendered. Memory use is bounded by the strip
+		 * height times the width of the image. Each strip only draws what is
+		 * inside of its clip. If the model.export is cancelled or fails, the
+		 * incomplete file is deleted.
+		 * @param exportFile
+		 * @param colorProfile - The BufferedImage type of the strips
+		 * @throws IOException
+		 */
+		private void exportStrips(final File exportFile,final int colorProfile)
+			throws IOException {
+
+			final int width = getXDim(region);
+			final int height = getYDim(region);
+			final int stripHeight = getStripHeight(width,height);
+
+			final BufferedImage strip =
+				new BufferedImage(width,stripHeight,colorProfile);
+			final int[] pixels =
+				((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+
+			//PPM has no alpha channel, so it needs a white canvas
+			final int background =
+				format.hasDefaultBackground() ? Color.WHITE.getRGB() : 0;
+
+			ls.setProgress(0);
+			ls.setStatus("Exporting image ...");
+			publish(ls);
+
+			exportingStrips = true;
+			boolean complete = false;
+			ImageStripWriter writer = null;
+			final OutputStream os = new BufferedOutputStream(
+				new FileOutputStream(exportFile));
+			try {
+				if(format == FormatType.PNG) {
+					writer = new PngStripWriter(os,width,height,
+						format.hasAlpha());
+				} else {
+					writer = new PpmWriter(os,width,height);
+				}
+
+				for(int y = 0;y < height;y += stripHeight) {
+					final int numRows = Math.min(stripHeight,height - y);
+					Arrays.fill(pixels,background);
+
+					final Graphics2D g2d = strip.createGraphics();
+					g2d.translate(0,-y);
+					g2d.setClip(0,y,width,numRows);
+					createContent(g2d,strip,y,region,showSelections,
+						rowLabelOption,colLabelOption,false);
+					g2d.dispose();
+
+					if(isCancelled() || !isExportSuccessful()) {
+						return;
+					}
+
+					writer.writeRows(pixels,width,numRows);
+
+					ls.setProgress((int) ((long) ls.getMaxProgress() *
+						(y + numRows) / height));
+					publish(ls);
+				}
+
+				writer.finish();
+				complete = true;
+
+				ls.setStatus("Preparing to open the file in the default " +
+					"system app");
+				publish(ls);
+			} finally {
+				exportingStrips = false;
+				try {
+					if(writer != null) {
+						writer.release();
+					}
+					os.close();
+				} finally {
+					if(!complete && exportFile.exists() &&
+						!exportFile.delete()) {
+						LogBuffer.println("Incomplete file [" + exportFile +
+							"] could not be deleted.");
+					}
+				}
+			}
+		}
+
 		public boolean isExportSuccessful() {
 			return exportSuccessful;
 		}
@@ -1107,7 +1292,7 @@ public class ExportHandler {
 
 					g.startExport();
 
-					createContent(g,region,showSelections,rowLabelOption,
+					createContent(g,null,0,region,showSelections,rowLabelOption,
 						colLabelOption,true);
 
 					g.endExport();
@@ -1121,6 +1306,13 @@ public class ExportHandler {
 						LogBuffer.println("Exporting withOUT an alpha channel");
 					}
 
+					//PNG and PPM are encoded row by row, so the whole image
+					//never has to be in memory
+					if(format.isWrittenInStrips()) {
+						exportStrips(exportFile,colorProfile);
+						return;
+					}
+
 					BufferedImage im = new BufferedImage(getXDim(region),
 						getYDim(region),colorProfile);
 					Graphics2D g2d = (Graphics2D) im.getGraphics();
@@ -1134,7 +1326,7 @@ public class ExportHandler {
 						g2d.fillRect(0,0,getXDim(region),getYDim(region));
 					}
 
-					createContent(g2d,region,showSelections,rowLabelOption,
+					createContent(g2d,im,0,region,showSelections,rowLabelOption,
 						colLabelOption,false);
 
 					if(format == FormatType.PNG) {
@@ -1179,7 +1371,7 @@ public class ExportHandler {
 					getMatrixYDim(region) : getYDim(region));
 				double tooBig =
 					((double) x / (double) MAX_IMAGE_SIZE) * (double) y;
-				if(tooBig > 1.0) {
+				if(isTooBig(format,x,y)) {
 					BigDecimal bd = new BigDecimal(tooBig);
 					bd = bd.round(new MathContext(4));
 					double rounded = bd.doubleValue();
@@ -1245,8 +1437,7 @@ public class ExportHandler {
 		}
 
 		//If this region is valid for model.export and it is not too big
-		if(isExportValid(reg) &&
-			((double) xdim / (double) MAX_IMAGE_SIZE * (double) ydim) < 1.0) {
+		if(isExportValid(reg) && !isTooBig(matrixOnly,xdim,ydim)) {
 
 			setRowLabelsIncluded(save_rleo);
 			setCalculatedDimensions(reg);
@@ -1289,8 +1480,7 @@ public class ExportHandler {
 		}
 
 		//If this region is valid for model.export and it is not too big
-		if(isExportValid(reg) &&
-			((double) xdim / (double) MAX_IMAGE_SIZE * (double) ydim) < 1.0) {
+		if(isExportValid(reg) && !isTooBig(matrixOnly,xdim,ydim)) {
 
 			setColLabelsIncluded(save_cleo);
 			setCalculatedDimensions(reg);
@@ -1596,6 +1786,21 @@ public class ExportHandler {
 		this.format = format;
 	}
 
+	/**
+	 * @param matrixOption - Whether document formats embed the matrix as an
+	 * image or draw its cells as shapes
+	 */
+	public void setMatrixOption(MatrixExportOption matrixOption) {
+		this.matrixOption = matrixOption;
+	}
+
+	/**
+	 * @return how document formats draw the matrix
+	 */
+	public MatrixExportOption getMatrixOption() {
+		return(matrixOption);
+	}
+
 	public void setOptions(ExportOptions eo) {
 		setRowLabelsIncluded(eo.getRowLabelOption());
 		setColLabelsIncluded(eo.getColLabelOption());
@@ -1606,6 +1811,7 @@ public class ExportHandler {
 		setPaperType(eo.getPaperType());
 		setShowSelecions(eo.isShowSelections());
 		setFormat(eo.getFormatType());
+		setMatrixOption(eo.getMatrixOption());
 	}
 
 	/**
@@ -1770,6 +1976,13 @@ public class ExportHandler {
 			setFormat(FormatType.getDefaultDocumentFormat());
 			eo.setFormatType(FormatType.getDefaultDocumentFormat());
 			return(getSetBestOptionsHelper(eo));
+		} else if(!eo.getMatrixOption().isVector() &&
+			isOversized(eo.getRegionType())) {
+
+			//Drawing the cells as shapes does not need the matrix image
+			setMatrixOption(MatrixExportOption.SHAPES);
+			eo.setMatrixOption(MatrixExportOption.SHAPES);
+			return(getSetBestOptionsHelper(eo));
 		} else if(isOversized(eo.getRegionType())) {
 			throw new ExportException(this,eo.getRegionType());
 		}
@@ -1777,6 +1990,21 @@ public class ExportHandler {
 		return(eo);
 	}
 
+	/**
+	 * Determines how many rows of a PNG/PPM export are rendered at a time,
+	 * as many as fit into the memory which is left and into the int array of
+	 * one BufferedImage.
+	 * @param width - The width of the exported image
+	 * @param height - The height of the exported image
+	 * @return The height of a strip
+	 */
+	static int getStripHeight(final int width,final int height) {
+		final long maxPixels = Math.min(FlatMatrix.MAX_ARRAY_CELLS,
+			MemoryBudget.getOptionalBytes() / Integer.BYTES);
+		return((int) Math.max(1,Math.min(height,
+			maxPixels / Math.max(1,width))));
+	}
+
 	/**
 	 * 
 	 * @return the maxImageSize
@@ -2,6 +2,7 @@ package model.export;
 
 import gui.matrix.AspectType;
 import model.export.labels.LabelExportOption;
+import model.export.matrix.MatrixExportOption;
 import model.export.trees.TreeExportOption;
 import org.freehep.graphicsio.PageConstants;
 
@@ -21,6 +22,7 @@ public class ExportOptions {
 	private LabelExportOption colLabelOption;
 	private TreeExportOption rowTreeOption;
 	private TreeExportOption colTreeOption;
+	private MatrixExportOption matrixOption;
 	
 	public ExportOptions() {
 		
@@ -35,6 +37,7 @@ public class ExportOptions {
 		//This currently never changes
 		this.rowTreeOption = TreeExportOption.getDefault();
 		this.colTreeOption = TreeExportOption.getDefault();
+		this.matrixOption = MatrixExportOption.getDefault();
 	}
 	
 	public FormatType getFormatType() {
@@ -140,4 +143,20 @@ public class ExportOptions {
 	public void setColTreeOption(TreeExportOption colTreeOption) {
 		this.colTreeOption = colTreeOption;
 	}
+
+	/**
+	 * Getter for matrixOption, which only applies to document formats
+	 * @return the matrixOption
+	 */
+	public MatrixExportOption getMatrixOption() {
+		return(matrixOption);
+	}
+
+	/**
+	 * 
+	 * @param matrixOption the matrixOption to set
+	 */
+	public void setMatrixOption(MatrixExportOption matrixOption) {
+		this.matrixOption = matrixOption;
+	}
 }
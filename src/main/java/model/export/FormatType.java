@@ -122,6 +122,14 @@ public enum FormatType {
 		}
 	}
 
+	/**
+	 * @return Whether images of this format are encoded in strips of rows, so
+	 * that the whole image never has to be in memory
+	 */
+	public boolean isWrittenInStrips() {
+		return((this == FormatType.PNG) || (this == FormatType.PPM));
+	}
+
 	public boolean hasDefaultBackground() {
 		if((this == FormatType.JPG) || (this == FormatType.PPM)) {
 			return(true);
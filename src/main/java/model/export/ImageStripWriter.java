@@ -0,0 +1,45 @@
+/* BEGIN_HEADER                                                   TreeView 3
+ *
+ * Please refer to our LICENSE file if you wish to make changes to this software
+ *
+ * END_HEADER
+ */
+package model.export;
+
+import java.io.IOException;
+
+/**
+ * Encodes an image which is delivered in horizontal strips of rows, from top
+ * to bottom. Only the current strip needs to be in memory, so images of any
+ * height can be written.
+ */
+public interface ImageStripWriter {
+
+	/**
+	 * Encodes the next rows of the image.
+	 *
+	 * @param pixels
+	 *            ARGB pixels. Pixel x of row y is at pixels[x + y * scanSize].
+	 * @param scanSize
+	 *            The width of a row in the pixel array.
+	 * @param numRows
+	 *            The amount of rows to be written.
+	 * @throws IOException
+	 */
+	void writeRows(int[] pixels, int scanSize, int numRows) throws IOException;
+
+	/**
+	 * Completes the image once all rows are written. The output stream is not
+	 * closed.
+	 *
+	 * @throws IOException
+	 */
+	void finish() throws IOException;
+
+	/**
+	 * Frees the resources of the encoder, also if the image was not finished.
+	 * Must be called once the writer is no longer used. The output stream is
+	 * not closed.
+	 */
+	void release();
+}
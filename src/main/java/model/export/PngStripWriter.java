@@ -0,0 +1,247 @@
+/* BEGIN_HEADER                                                   TreeView 3
+ *
+ * Please refer to our LICENSE file if you wish to make changes to this software
+ *
+ * END_HEADER
+ */
+package model.export;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG file one scanline at a time, so that the image never has to be
+ * in memory as a whole. Pixels are stored as 8 bit RGB or RGBA. Each row uses
+ * either the Sub or the Up filter, whichever gives the smaller residuals, which
+ * suits the runs and repeated rows of exported matrices.
+ */
+public class PngStripWriter implements ImageStripWriter {
+
+	private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10,
+			26, 10 };
+
+	private static final int COLOR_TYPE_RGB = 2;
+	private static final int COLOR_TYPE_RGBA = 6;
+
+	private static final int FILTER_SUB = 1;
+	private static final int FILTER_UP = 2;
+
+	/* Maximum amount of compressed data per IDAT chunk */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private final DataOutputStream out;
+	private final int width;
+	private final int height;
+	private final int bytesPerPixel;
+
+	private final Deflater deflater;
+	private final ChunkOutputStream chunks;
+	private final DeflaterOutputStream idat;
+
+	private byte[] previous;
+	private byte[] current;
+	private final byte[] sub;
+	private final byte[] up;
+	private int rowsWritten = 0;
+
+	/**
+	 * Writes the header of the image.
+	 *
+	 * @param out
+	 *            The stream to write to.
+	 * @param width
+	 *            The width of the image.
+	 * @param height
+	 *            The height of the image.
+	 * @param alpha
+	 *            Whether the alpha channel is stored.
+	 * @throws IOException
+	 */
+	public PngStripWriter(final OutputStream out, final int width,
+			final int height, final boolean alpha) throws IOException {
+
+		this.out = new DataOutputStream(out);
+		this.width = width;
+		this.height = height;
+		this.bytesPerPixel = (alpha) ? 4 : 3;
+
+		final int rowBytes = width * bytesPerPixel;
+		this.previous = new byte[rowBytes];
+		this.current = new byte[rowBytes];
+		this.sub = new byte[rowBytes + 1];
+		this.up = new byte[rowBytes + 1];
+		sub[0] = FILTER_SUB;
+		up[0] = FILTER_UP;
+
+		this.out.write(SIGNATURE);
+
+		final byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8;
+		header[9] = (byte) ((alpha) ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB);
+		writeChunk("IHDR", header, header.length);
+
+		this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		this.chunks = new ChunkOutputStream();
+		this.idat = new DeflaterOutputStream(chunks, deflater, CHUNK_SIZE);
+	}
+
+	@Override
+	public void writeRows(final int[] pixels, final int scanSize,
+			final int numRows) throws IOException {
+
+		if (rowsWritten + numRows > height) {
+			throw new IOException("More rows than the height of the image.");
+		}
+
+		for (int row = 0; row < numRows; row++) {
+			toBytes(pixels, row * scanSize);
+			idat.write(filter());
+
+			final byte[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		rowsWritten += numRows;
+	}
+
+	@Override
+	public void finish() throws IOException {
+
+		if (rowsWritten != height) {
+			throw new IOException("Only " + rowsWritten + " of " + height
+					+ " rows were written.");
+		}
+
+		idat.finish();
+		chunks.flush();
+		writeChunk("IEND", new byte[0], 0);
+		out.flush();
+	}
+
+	@Override
+	public void release() {
+
+		deflater.end();
+	}
+
+	/**
+	 * Unpacks a row of ARGB pixels into the current row.
+	 */
+	private void toBytes(final int[] pixels, final int offset) {
+
+		int b = 0;
+		for (int x = 0; x < width; x++) {
+			final int argb = pixels[offset + x];
+			current[b++] = (byte) (argb >> 16);
+			current[b++] = (byte) (argb >> 8);
+			current[b++] = (byte) argb;
+			if (bytesPerPixel == 4) {
+				current[b++] = (byte) (argb >>> 24);
+			}
+		}
+	}
+
+	/**
+	 * Filters the current row with Sub and Up and picks the one with the
+	 * smaller sum of absolute residuals.
+	 *
+	 * @return The filter type followed by the filtered row.
+	 */
+	private byte[] filter() {
+
+		long subSum = 0;
+		long upSum = 0;
+		for (int i = 0; i < current.length; i++) {
+			final int left = (i >= bytesPerPixel) ? current[i - bytesPerPixel]
+					: 0;
+			final byte s = (byte) (current[i] - left);
+			final byte u = (byte) (current[i] - previous[i]);
+			sub[i + 1] = s;
+			up[i + 1] = u;
+			subSum += Math.abs(s);
+			upSum += Math.abs(u);
+		}
+
+		return (upSum <= subSum) ? up : sub;
+	}
+
+	private void writeChunk(final String type, final byte[] data,
+			final int length) throws IOException {
+
+		final byte[] typeBytes = type.getBytes("US-ASCII");
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, 0, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	private static void putInt(final byte[] target, final int offset,
+			final int value) {
+
+		target[offset] = (byte) (value >>> 24);
+		target[offset + 1] = (byte) (value >>> 16);
+		target[offset + 2] = (byte) (value >>> 8);
+		target[offset + 3] = (byte) value;
+	}
+
+	/**
+	 * Collects the compressed data and writes it as IDAT chunks.
+	 */
+	private class ChunkOutputStream extends OutputStream {
+
+		private final byte[] buffer = new byte[CHUNK_SIZE];
+		private int length = 0;
+
+		@Override
+		public void write(final int b) throws IOException {
+
+			if (length == buffer.length) {
+				flush();
+			}
+
+			buffer[length++] = (byte) b;
+		}
+
+		@Override
+		public void write(final byte[] b, int off, int len) throws IOException {
+
+			while (len > 0) {
+				if (length == buffer.length) {
+					flush();
+				}
+
+				final int n = Math.min(len, buffer.length - length);
+				System.arraycopy(b, off, buffer, length, n);
+				length += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+
+			if (length > 0) {
+				writeChunk("IDAT", buffer, length);
+				length = 0;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			flush();
+		}
+	}
+}
@@ -7,21 +7,99 @@
 package model.export;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.awt.image.PixelGrabber;
 import java.io.IOException;
 import java.io.OutputStream;
 
 /**
- * This is a completely generic and self sufficient static class that writes
- * images to PPM format files.
+ * This is a completely generic and self sufficient class that writes images
+ * to PPM format files, either from a whole image or strip by strip.
  */
-public class PpmWriter {
+public class PpmWriter implements ImageStripWriter {
+
+	private final OutputStream out;
+	private final int width;
+	private final int height;
+	private final byte[] rowBytes;
+	private int rowsWritten = 0;
+
+	/**
+	 * Writes the header of an image whose rows are delivered in strips by
+	 * writeRows().
+	 *
+	 * @param out
+	 *            The stream to write to.
+	 * @param width
+	 *            The width of the image.
+	 * @param height
+	 *            The height of the image.
+	 * @throws IOException
+	 */
+	public PpmWriter(final OutputStream out, final int width, final int height)
+			throws IOException {
+
+		this.out = out;
+		this.width = width;
+		this.height = height;
+		this.rowBytes = new byte[width * 3];
+
+		writeHeader(out, width, height);
+	}
+
+	@Override
+	public void writeRows(final int[] pixels, final int scanSize,
+			final int numRows) throws IOException {
+
+		if (rowsWritten + numRows > height) {
+			throw new IOException("More rows than the height of the image.");
+		}
+
+		for (int row = 0; row < numRows; row++) {
+			writeRow(out, pixels, row * scanSize, width, rowBytes);
+		}
+
+		rowsWritten += numRows;
+	}
+
+	@Override
+	public void finish() throws IOException {
+
+		if (rowsWritten != height) {
+			throw new IOException("Only " + rowsWritten + " of " + height
+					+ " rows were written.");
+		}
+
+		out.flush();
+	}
+
+	@Override
+	public void release() {
+
+	}
 
 	public static void writePpm(final Image image, final OutputStream out)
 			throws java.io.IOException {
-		final int pixels[][] = getPixels(image);
-		final int width = pixels.length;
-		final int height = pixels[0].length;
+		final int width = image.getWidth(null);
+		final int height = image.getHeight(null);
+		writeHeader(out, width, height);
+
+		// # 9) A raster of Height rows, in order from top to bottom. Each row
+		// consists of Width pixels, in order from left # to right. Each pixel
+		// is a triplet of red, green, and blue samples, in that order. Each
+		// sample is represented in pure binary by either 1 or 2 bytes. If the
+		// Maxval is less than 256, it is 1 byte. Otherwise, it is 2 bytes. The
+		// most significant byte is first.
+		final int[] row = new int[width];
+		final byte[] rowBytes = new byte[width * 3];
+		for (int y = 0; y < height; y++) {
+			grabRow(image, y, row);
+			writeRow(out, row, 0, width, rowBytes);
+		}
+	}
+
+	private static void writeHeader(final OutputStream out, final int width,
+			final int height) throws IOException {
 		// # Each PPM image consists of the following:
 		// # 1) A "magic number" for identifying the file type. A ppm image's
 		// magic number is the two characters "P6".
@@ -41,16 +119,47 @@ public class PpmWriter {
 		out.write(("255").getBytes());
 		// # 8) Newline or other single whitespace character.
 		out.write(("\n").getBytes());
-		// # 9) A raster of Height rows, in order from top to bottom. Each row
-		// consists of Width pixels, in order from left # to right. Each pixel
-		// is a triplet of red, green, and blue samples, in that order. Each
-		// sample is represented in pure binary by either 1 or 2 bytes. If the
-		// Maxval is less than 256, it is 1 byte. Otherwise, it is 2 bytes. The
-		// most significant byte is first.
-		for (int row = 0; row < height; row++) {
-			for (int col = 0; col < width; col++) {
-				printColor(out, pixels[col][row]);
-			}
+	}
+
+	/**
+	 * Writes a row of pixels as RGB triplets with a single write call.
+	 */
+	private static void writeRow(final OutputStream out, final int[] pixels,
+			final int offset, final int width, final byte[] rowBytes)
+			throws IOException {
+
+		int b = 0;
+		for (int x = 0; x < width; x++) {
+			final int val = pixels[offset + x];
+			rowBytes[b++] = (byte) (val >> 16);
+			rowBytes[b++] = (byte) (val >> 8);
+			rowBytes[b++] = (byte) val;
+		}
+
+		out.write(rowBytes, 0, b);
+	}
+
+	/**
+	 * Copies one row of an image into the array, without copying the rest of
+	 * the image.
+	 */
+	private static void grabRow(final Image image, final int y,
+			final int[] row) throws IOException {
+
+		if (image instanceof BufferedImage) {
+			((BufferedImage) image).getRGB(0, y, row.length, 1, row, 0,
+					row.length);
+			return;
+		}
+
+		final PixelGrabber grabber = new PixelGrabber(image, 0, y,
+				row.length, 1, row, 0, row.length);
+		try {
+			if (grabber.grabPixels() != true)
+				throw new IOException("Grabber returned false: "
+						+ grabber.status());
+		} catch (final InterruptedException e) {
+			e.printStackTrace();
 		}
 	}
 
@@ -0,0 +1,48 @@
+/**
+ * 
+ */
+package model.export.matrix;
+
+/**
+ * How the matrix is written to document formats (PDF, SVG, PS).
+ */
+public enum MatrixExportOption {
+	IMAGE("Image"),SHAPES("Shapes"),REDUCED_SHAPES("Shapes (fewer colors)");
+
+	private final String toString;
+	
+	private MatrixExportOption(String toString) {
+		this.toString = toString;
+	}
+	 
+	@Override
+	public String toString() {
+		return toString;
+	}
+
+	/**
+	 * The matrix is embedded as one image, which keeps documents small.
+	 * 
+	 * @return
+	 */
+	public static MatrixExportOption getDefault() {
+		return(MatrixExportOption.IMAGE);
+	}
+
+	/**
+	 * @return Whether the matrix is drawn as rectangles. Neighboring cells of
+	 * the same color in a row are merged into one rectangle.
+	 */
+	public boolean isVector() {
+		return(this != IMAGE);
+	}
+
+	public static MatrixExportOption getMatrixExportOption(String optName) {
+		for(MatrixExportOption meo : MatrixExportOption.values()) {
+			if(meo.toString().equals(optName)) {
+				return(meo);
+			}
+		}
+		return(null);
+	}
+}
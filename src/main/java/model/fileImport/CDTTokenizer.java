@@ -0,0 +1,497 @@
+package model.fileImport;
+
+import model.data.matrix.DataModel;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads a delimited data file (e.g. CDT) line by line from a char buffer.
+ * Label cells are returned as Strings, while numeric cells of data rows are
+ * parsed straight into a double[] without creating intermediate Strings.
+ *
+ * The parsing rules are the same as for String.split() followed by
+ * Double.parseDouble(): a cell ending with 'e' or 'E' is treated as exponent
+ * notation with exponent 0 and cells which cannot be parsed become NaN.
+ * Simple decimal numbers are parsed directly from the chars. Every other cell
+ * falls back to Double.parseDouble(), so the values are always identical.
+ */
+public class CDTTokenizer {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/* Amount of significant digits which always fit exactly into a double */
+	private static final int MAX_FAST_DIGITS = 15;
+
+	/* Powers of ten which can be exactly represented as double */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/* Special delimiter character for the whitespace class (\s) */
+	private static final char WHITESPACE = 0;
+
+	private final Reader reader;
+	private final int dataStartRow;
+	private final int dataStartCol;
+
+	/* The delimiter as char, or the regex for the fallback if not possible */
+	private final char delimiter;
+	private final String delimiterRegex;
+
+	/* Read buffer */
+	private final char[] buffer;
+	private int bufferPos;
+	private int bufferLimit;
+	private boolean skipLF;
+	private boolean eof;
+	private long charsRead;
+
+	/* The current line */
+	private char[] line;
+	private int lineLength;
+	private int lineIdx;
+
+	/* Results for the current line */
+	private String[] labels;
+	private double[] data;
+
+	/* Reused for collecting the values of a data row */
+	private double[] rowBuffer;
+
+	/**
+	 * @param reader
+	 *            The source of the data file.
+	 * @param delimiter
+	 *            The delimiter in the same (regex) form as stored in
+	 *            DataLoadInfo.
+	 * @param dataStartRow
+	 *            The index of the first row which contains data.
+	 * @param dataStartCol
+	 *            The index of the first column which contains data.
+	 */
+	public CDTTokenizer(final Reader reader, final String delimiter,
+			final int dataStartRow, final int dataStartCol) {
+
+		this.reader = reader;
+		this.dataStartRow = dataStartRow;
+		this.dataStartCol = dataStartCol;
+
+		final char delimChar = toDelimiterChar(delimiter);
+		this.delimiter = delimChar;
+		this.delimiterRegex = (delimChar == WHITESPACE
+				&& !"\\s".equals(delimiter)) ? delimiter : null;
+
+		this.buffer = new char[BUFFER_SIZE];
+		this.line = new char[1024];
+		this.rowBuffer = new double[256];
+		this.lineIdx = -1;
+	}
+
+	/**
+	 * Translates the delimiters offered during import to a single char.
+	 *
+	 * @param delimiter
+	 *            The delimiter regex.
+	 * @return The delimiter char. WHITESPACE stands for the whitespace class
+	 *         or for a regex which cannot be represented by a char.
+	 */
+	private static char toDelimiterChar(final String delimiter) {
+
+		if ("\\t".equals(delimiter)) {
+			return '\t';
+		}
+
+		if (delimiter.length() == 1
+				&& ".$|()[{^?*+\\".indexOf(delimiter.charAt(0)) == -1) {
+			return delimiter.charAt(0);
+		}
+
+		return WHITESPACE;
+	}
+
+	/**
+	 * Reads the next line and splits it into labels and data.
+	 *
+	 * @return False if the end of the file was reached, true otherwise.
+	 * @throws IOException
+	 */
+	public boolean nextLine() throws IOException {
+
+		if (!readLine()) {
+			labels = null;
+			data = null;
+			return false;
+		}
+
+		lineIdx++;
+
+		if (delimiterRegex != null) {
+			splitWithRegex();
+
+		} else if (lineIdx < dataStartRow) {
+			splitLabels();
+
+		} else {
+			splitData();
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return The index of the current line, starting at 0.
+	 */
+	public int getLineIndex() {
+
+		return lineIdx;
+	}
+
+	/**
+	 * @return All cells of the current line if it is a label row, otherwise
+	 *         the label cells at the start of the current data row.
+	 */
+	public String[] getLabels() {
+
+		return labels;
+	}
+
+	/**
+	 * @return The parsed values of the current data row or null if the current
+	 *         line is a label row.
+	 */
+	public double[] getData() {
+
+		return data;
+	}
+
+	/**
+	 * @return The amount of chars which were read from the file so far.
+	 */
+	public long getCharsRead() {
+
+		return charsRead;
+	}
+
+	/**
+	 * Copies the next line (without terminator) into the line buffer. Lines
+	 * are terminated by \n, \r or \r\n, like in BufferedReader.readLine().
+	 *
+	 * @return False if no more lines are available.
+	 * @throws IOException
+	 */
+	private boolean readLine() throws IOException {
+
+		lineLength = 0;
+		boolean foundChars = false;
+
+		while (true) {
+			if (bufferPos >= bufferLimit && !fillBuffer()) {
+				return foundChars;
+			}
+
+			if (skipLF) {
+				skipLF = false;
+				if (buffer[bufferPos] == '\n') {
+					bufferPos++;
+					continue;
+				}
+			}
+
+			foundChars = true;
+
+			int end = bufferPos;
+			while (end < bufferLimit && buffer[end] != '\n'
+					&& buffer[end] != '\r') {
+				end++;
+			}
+
+			appendToLine(bufferPos, end - bufferPos);
+
+			if (end < bufferLimit) {
+				skipLF = (buffer[end] == '\r');
+				bufferPos = end + 1;
+				return true;
+			}
+
+			bufferPos = end;
+		}
+	}
+
+	private boolean fillBuffer() throws IOException {
+
+		if (eof) {
+			return false;
+		}
+
+		final int read = reader.read(buffer, 0, buffer.length);
+		if (read <= 0) {
+			eof = true;
+			return false;
+		}
+
+		bufferPos = 0;
+		bufferLimit = read;
+		charsRead += read;
+		return true;
+	}
+
+	private void appendToLine(final int start, final int length) {
+
+		if (lineLength + length > line.length) {
+			line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength
+					+ length));
+		}
+
+		System.arraycopy(buffer, start, line, lineLength, length);
+		lineLength += length;
+	}
+
+	private boolean isDelimiter(final char c) {
+
+		if (delimiter == WHITESPACE) {
+			return c == ' ' || c == '\t' || c == '\u000B' || c == '\f';
+		}
+
+		return c == delimiter;
+	}
+
+	/**
+	 * @return The index after the end of the cell starting at start.
+	 */
+	private int findCellEnd(final int start) {
+
+		int end = start;
+		while (end < lineLength && !isDelimiter(line[end])) {
+			end++;
+		}
+
+		return end;
+	}
+
+	/**
+	 * Splits a label row into Strings.
+	 */
+	private void splitLabels() {
+
+		int cellNum = 1;
+		for (int i = 0; i < lineLength; i++) {
+			if (isDelimiter(line[i])) {
+				cellNum++;
+			}
+		}
+
+		labels = new String[cellNum];
+		data = null;
+
+		int start = 0;
+		for (int i = 0; i < cellNum; i++) {
+			final int end = findCellEnd(start);
+			labels[i] = new String(line, start, end - start);
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Splits a data row into its label Strings and its parsed values.
+	 */
+	private void splitData() {
+
+		labels = new String[dataStartCol];
+
+		int start = 0;
+		int col = 0;
+		int valueNum = 0;
+		boolean lastCell = false;
+
+		while (!lastCell) {
+			final int end = findCellEnd(start);
+			lastCell = (end >= lineLength);
+
+			if (col < dataStartCol) {
+				labels[col] = new String(line, start, end - start);
+
+			} else {
+				if (valueNum == rowBuffer.length) {
+					rowBuffer = Arrays.copyOf(rowBuffer, valueNum * 2);
+				}
+				rowBuffer[valueNum++] = parseValue(line, start, end);
+			}
+
+			col++;
+			start = end + 1;
+		}
+
+		/* Short rows */
+		for (int i = col; i < dataStartCol; i++) {
+			labels[i] = "";
+		}
+
+		data = Arrays.copyOf(rowBuffer, valueNum);
+	}
+
+	/**
+	 * Fallback for delimiters which are no single character.
+	 */
+	private void splitWithRegex() {
+
+		final String[] cells = new String(line, 0, lineLength).split(
+				delimiterRegex, -1);
+
+		if (lineIdx < dataStartRow) {
+			labels = cells;
+			data = null;
+			return;
+		}
+
+		labels = new String[dataStartCol];
+		for (int i = 0; i < dataStartCol; i++) {
+			labels[i] = (i < cells.length) ? cells[i] : "";
+		}
+
+		data = new double[Math.max(0, cells.length - dataStartCol)];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = parseValue(cells[i + dataStartCol]);
+		}
+	}
+
+	/**
+	 * Parses a cell into a double. Simple decimal numbers with up to 15
+	 * significant digits and small exponents are converted directly, which is
+	 * exact because both the digits and the power of ten are exactly
+	 * representable and only one rounding step happens. All other cells are
+	 * handed to Double.parseDouble().
+	 *
+	 * @param chars
+	 *            The chars which contain the cell.
+	 * @param start
+	 *            Index of the first char of the cell.
+	 * @param end
+	 *            Index after the last char of the cell.
+	 * @return The parsed value or NaN if the cell is no number.
+	 */
+	public static double parseValue(final char[] chars, final int start,
+			final int end) {
+
+		if (start >= end) {
+			return DataModel.NAN;
+		}
+
+		int i = start;
+		final boolean negative = (chars[i] == '-');
+		if (negative || chars[i] == '+') {
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+
+		/* Integer part */
+		while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+			final int digit = chars[i] - '0';
+			hasDigits = true;
+			if (mantissa != 0 || digit != 0) {
+				mantissa = mantissa * 10 + digit;
+				digits++;
+			}
+			i++;
+		}
+
+		/* Fraction */
+		if (i < end && chars[i] == '.') {
+			i++;
+			while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+				final int digit = chars[i] - '0';
+				hasDigits = true;
+				if (mantissa != 0 || digit != 0) {
+					mantissa = mantissa * 10 + digit;
+					digits++;
+				}
+				exponent--;
+				i++;
+			}
+		}
+
+		if (!hasDigits || digits > MAX_FAST_DIGITS) {
+			return parseValue(new String(chars, start, end - start));
+		}
+
+		/* Exponent. A trailing 'e' counts as exponent 0 */
+		if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+			i++;
+			if (i < end) {
+				final boolean negativeExp = (chars[i] == '-');
+				if (negativeExp || chars[i] == '+') {
+					i++;
+				}
+
+				int exp = 0;
+				final int expStart = i;
+				while (i < end && chars[i] >= '0' && chars[i] <= '9'
+						&& exp < 1000) {
+					exp = exp * 10 + (chars[i] - '0');
+					i++;
+				}
+
+				if (i == expStart) {
+					return parseValue(new String(chars, start, end - start));
+				}
+				exponent += (negativeExp) ? -exp : exp;
+			}
+		}
+
+		if (i != end) {
+			return parseValue(new String(chars, start, end - start));
+		}
+
+		if (mantissa == 0) {
+			return (negative) ? -0.0 : 0.0;
+		}
+
+		double value;
+		if (exponent == 0) {
+			value = mantissa;
+
+		} else if (exponent > 0 && exponent < POWERS_OF_TEN.length) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+
+		} else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+
+		} else {
+			return parseValue(new String(chars, start, end - start));
+		}
+
+		return (negative) ? -value : value;
+	}
+
+	/**
+	 * Parses a cell String into a double.
+	 *
+	 * @param cell
+	 *            The cell content.
+	 * @return The parsed value or NaN if the cell is no number.
+	 */
+	public static double parseValue(final String cell) {
+
+		String element = cell;
+
+		/* no data value should ever be a word, so ending with e is
+		 * considered as exponent value notation. If it indeed is not a data
+		 * value, then the NumberFormatException will be triggered */
+		if (element.endsWith("e") || element.endsWith("E")) {
+			element += "+00";
+		}
+
+		// Trying to parse the String. If not possible add defined NAN.
+		try {
+			return Double.parseDouble(element);
+
+		} catch (final NumberFormatException e) {
+			return DataModel.NAN;
+		}
+	}
+}
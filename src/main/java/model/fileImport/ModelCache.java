@@ -0,0 +1,545 @@
+package model.fileImport;
+
+import model.data.DataLoadInfo;
+import model.fileType.FileSet;
+import util.LogBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary cache of a loaded data file, written next to the files of a FileSet.
+ * Reopening a large data file from its cache skips all text parsing.
+ *
+ * Layout (big endian):
+ * <ul>
+ * <li>Header: magic number, version, size and modification time of the
+ * data, GTR and ATR file (-1 if missing), delimiter, data start row and
+ * column.</li>
+ * <li>Dictionary: all distinct label Strings.</li>
+ * <li>Labels: all rows as returned by CDTTokenizer.getLabels(), as
+ * dictionary indices.</li>
+ * <li>Data: all data rows as doubles, row-major.</li>
+ * <li>Trees: the GTR and ATR rows as dictionary indices, or -1 if the tree
+ * is not present.</li>
+ * </ul>
+ *
+ * A cache is fresh if its header matches the current files and the current
+ * load settings. Fresh caches are read through memory-mapped windows.
+ */
+public class ModelCache {
+
+	/* "TVC1" */
+	private static final int MAGIC = 0x54564331;
+	private static final int VERSION = 1;
+
+	/* Smaller data files are parsed so fast that no cache is written */
+	public static final long MIN_CACHE_SIZE = 16L << 20;
+
+	/* Size of the memory-mapped windows used for reading */
+	private static final int WINDOW_SIZE = 1 << 28;
+
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File cacheFile;
+	private final File cdtFile;
+	private final File gtrFile;
+	private final File atrFile;
+	private final DataLoadInfo dataInfo;
+
+	private String[][] labels;
+	private double[][] data;
+	private List<String[]> gtrData;
+	private List<String[]> atrData;
+
+	/**
+	 * @param fileSet
+	 *            The FileSet of the data file.
+	 * @param dataInfo
+	 *            The settings with which the data file is loaded.
+	 */
+	public ModelCache(final FileSet fileSet, final DataLoadInfo dataInfo) {
+
+		this.cacheFile = new File(fileSet.getCache());
+		this.cdtFile = new File(fileSet.getCdt());
+		this.gtrFile = new File(fileSet.getGtr());
+		this.atrFile = new File(fileSet.getAtr());
+		this.dataInfo = dataInfo;
+	}
+
+	/**
+	 * @return Whether a cache should be written for the data file, which is
+	 *         the case for large data files.
+	 */
+	public boolean shouldWrite() {
+
+		return cdtFile.length() >= MIN_CACHE_SIZE;
+	}
+
+	/**
+	 * Checks whether the cache file exists and matches the current data
+	 * files and load settings.
+	 *
+	 * @return True if the cache can be read instead of the data file.
+	 */
+	public boolean isFresh() {
+
+		if (!cacheFile.isFile()) {
+			return false;
+		}
+
+		/* Not mapped, so an outdated cache can be replaced right away */
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(cacheFile)));
+			try {
+				return in.readInt() == MAGIC && in.readInt() == VERSION
+						&& matchesHeader(in);
+
+			} finally {
+				in.close();
+			}
+
+		} catch (final IOException e) {
+			LogBuffer.println("Could not check cache file "
+					+ cacheFile.getPath() + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	private boolean matchesHeader(final DataInputStream in)
+			throws IOException {
+
+		for (final File file : getSourceFiles()) {
+			final long[] stats = getFileStats(file);
+			if (in.readLong() != stats[0] || in.readLong() != stats[1]) {
+				return false;
+			}
+		}
+
+		final byte[] delimiter = new byte[in.readInt()];
+		in.readFully(delimiter);
+
+		return dataInfo.getDelimiter().equals(new String(delimiter, UTF8))
+				&& in.readInt() == dataInfo.getDataStartRow()
+				&& in.readInt() == dataInfo.getDataStartCol();
+	}
+
+	private File[] getSourceFiles() {
+
+		return new File[] { cdtFile, gtrFile, atrFile };
+	}
+
+	/**
+	 * @return Size and modification time of a file, or -1 for both if the
+	 *         file does not exist.
+	 */
+	private static long[] getFileStats(final File file) {
+
+		if (!file.isFile()) {
+			return new long[] { -1, -1 };
+		}
+
+		return new long[] { file.length(), file.lastModified() };
+	}
+
+	/**
+	 * Reads the whole cache. Only call this if isFresh() returned true.
+	 *
+	 * @throws IOException
+	 *             If the cache file cannot be read or is corrupt.
+	 */
+	public void read() throws IOException {
+
+		final MappedInput in = new MappedInput(cacheFile);
+		try {
+			if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+				throw new IOException("Cache file " + cacheFile.getPath()
+						+ " has an unknown format.");
+			}
+
+			/* The header was already checked by isFresh() */
+			for (int i = 0; i < getSourceFiles().length; i++) {
+				in.getLong();
+				in.getLong();
+			}
+			in.getString();
+			in.getInt();
+			in.getInt();
+
+			final String[] dictionary = new String[in.getInt()];
+			for (int i = 0; i < dictionary.length; i++) {
+				dictionary[i] = in.getString();
+			}
+
+			this.labels = readRows(in, dictionary, in.getInt());
+
+			this.data = new double[in.getInt()][];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = in.getDoubles(in.getInt());
+			}
+
+			this.gtrData = readTree(in, dictionary);
+			this.atrData = readTree(in, dictionary);
+
+		} finally {
+			in.close();
+		}
+	}
+
+	private static String[][] readRows(final MappedInput in,
+			final String[] dictionary, final int rowNum) throws IOException {
+
+		final String[][] rows = new String[rowNum][];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = new String[in.getInt()];
+			for (int j = 0; j < rows[i].length; j++) {
+				rows[i][j] = dictionary[in.getInt()];
+			}
+		}
+
+		return rows;
+	}
+
+	private static List<String[]> readTree(final MappedInput in,
+			final String[] dictionary) throws IOException {
+
+		final int rowNum = in.getInt();
+		if (rowNum < 0) {
+			return null;
+		}
+
+		final String[][] rows = readRows(in, dictionary, rowNum);
+		final List<String[]> tree = new ArrayList<String[]>(rows.length);
+		for (final String[] row : rows) {
+			tree.add(row);
+		}
+
+		return tree;
+	}
+
+	/**
+	 * Writes the cache. The file is written under a temporary name first, so
+	 * an interrupted write never leaves a corrupt cache behind.
+	 *
+	 * @param labels
+	 *            All label rows, as read from the data file.
+	 * @param data
+	 *            All data rows.
+	 * @param gtrData
+	 *            The rows of the GTR file or null.
+	 * @param atrData
+	 *            The rows of the ATR file or null.
+	 * @throws IOException
+	 *             If the cache file cannot be written.
+	 */
+	public void write(final String[][] labels, final double[][] data,
+			final List<String[]> gtrData, final List<String[]> atrData)
+			throws IOException {
+
+		/* Dictionary of all distinct label Strings */
+		final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		final List<String> entries = new ArrayList<String>();
+		addToDictionary(labels, dictionary, entries);
+		if (gtrData != null) {
+			addToDictionary(gtrData.toArray(new String[gtrData.size()][]),
+					dictionary, entries);
+		}
+		if (atrData != null) {
+			addToDictionary(atrData.toArray(new String[atrData.size()][]),
+					dictionary, entries);
+		}
+
+		final File tmpFile = new File(cacheFile.getPath() + ".tmp");
+		final BufferedOutput out = new BufferedOutput(tmpFile);
+		try {
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			for (final File file : getSourceFiles()) {
+				final long[] stats = getFileStats(file);
+				out.putLong(stats[0]);
+				out.putLong(stats[1]);
+			}
+			out.putString(dataInfo.getDelimiter());
+			out.putInt(dataInfo.getDataStartRow());
+			out.putInt(dataInfo.getDataStartCol());
+
+			out.putInt(entries.size());
+			for (final String entry : entries) {
+				out.putString(entry);
+			}
+
+			writeRows(out, labels, dictionary);
+
+			out.putInt(data.length);
+			for (final double[] row : data) {
+				out.putInt(row.length);
+				for (final double value : row) {
+					out.putDouble(value);
+				}
+			}
+
+			writeTree(out, gtrData, dictionary);
+			writeTree(out, atrData, dictionary);
+
+		} finally {
+			out.close();
+		}
+
+		if (cacheFile.exists() && !cacheFile.delete()) {
+			tmpFile.delete();
+			throw new IOException("Could not replace cache file "
+					+ cacheFile.getPath());
+		}
+
+		if (!tmpFile.renameTo(cacheFile)) {
+			tmpFile.delete();
+			throw new IOException("Could not write cache file "
+					+ cacheFile.getPath());
+		}
+	}
+
+	private static void addToDictionary(final String[][] rows,
+			final Map<String, Integer> dictionary, final List<String> entries) {
+
+		for (final String[] row : rows) {
+			for (final String cell : row) {
+				if (!dictionary.containsKey(cell)) {
+					dictionary.put(cell, entries.size());
+					entries.add(cell);
+				}
+			}
+		}
+	}
+
+	private static void writeRows(final BufferedOutput out,
+			final String[][] rows, final Map<String, Integer> dictionary)
+			throws IOException {
+
+		out.putInt(rows.length);
+		for (final String[] row : rows) {
+			out.putInt(row.length);
+			for (final String cell : row) {
+				out.putInt(dictionary.get(cell));
+			}
+		}
+	}
+
+	private static void writeTree(final BufferedOutput out,
+			final List<String[]> tree, final Map<String, Integer> dictionary)
+			throws IOException {
+
+		if (tree == null) {
+			out.putInt(-1);
+			return;
+		}
+
+		writeRows(out, tree.toArray(new String[tree.size()][]), dictionary);
+	}
+
+	/**
+	 * @return All label rows, as returned by CDTTokenizer.getLabels().
+	 */
+	public String[][] getLabels() {
+
+		return labels;
+	}
+
+	/**
+	 * @return All data rows.
+	 */
+	public double[][] getData() {
+
+		return data;
+	}
+
+	/**
+	 * @return The rows of the GTR file or null if it was not loaded.
+	 */
+	public List<String[]> getGtrData() {
+
+		return gtrData;
+	}
+
+	/**
+	 * @return The rows of the ATR file or null if it was not loaded.
+	 */
+	public List<String[]> getAtrData() {
+
+		return atrData;
+	}
+
+	/**
+	 * Reads a file through a memory-mapped window which is moved along when
+	 * it is used up, so files larger than 2 GB can be read as well.
+	 */
+	private static class MappedInput {
+
+		private final FileInputStream stream;
+		private final FileChannel channel;
+		private final long length;
+		private MappedByteBuffer window;
+		private long windowStart;
+
+		public MappedInput(final File file) throws IOException {
+
+			this.stream = new FileInputStream(file);
+			this.channel = stream.getChannel();
+			this.length = channel.size();
+			map(0);
+		}
+
+		private void map(final long position) throws IOException {
+
+			final long size = Math.min(WINDOW_SIZE, length - position);
+			this.window = channel.map(FileChannel.MapMode.READ_ONLY,
+					position, size);
+			this.windowStart = position;
+		}
+
+		/**
+		 * Makes sure the window contains the next bytes.
+		 */
+		private void require(final long bytes) throws IOException {
+
+			if (window.remaining() >= bytes) {
+				return;
+			}
+
+			final long position = windowStart + window.position();
+			if (length - position < bytes) {
+				throw new IOException("Unexpected end of cache file.");
+			}
+			map(position);
+		}
+
+		public int getInt() throws IOException {
+
+			require(4);
+			return window.getInt();
+		}
+
+		public long getLong() throws IOException {
+
+			require(8);
+			return window.getLong();
+		}
+
+		public String getString() throws IOException {
+
+			final int byteNum = getInt();
+			require(byteNum);
+
+			final byte[] bytes = new byte[byteNum];
+			window.get(bytes);
+			return new String(bytes, UTF8);
+		}
+
+		public double[] getDoubles(final int num) throws IOException {
+
+			require(8L * num);
+
+			final double[] values = new double[num];
+			window.asDoubleBuffer().get(values);
+			window.position(window.position() + 8 * num);
+			return values;
+		}
+
+		public void close() throws IOException {
+
+			window = null;
+			stream.close();
+		}
+	}
+
+	/**
+	 * Writes big endian values through a buffer to a file.
+	 */
+	private static class BufferedOutput {
+
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+
+		public BufferedOutput(final File target) throws IOException {
+
+			this.file = new RandomAccessFile(target, "rw");
+			file.setLength(0);
+			this.channel = file.getChannel();
+			this.buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+		}
+
+		private void require(final int bytes) throws IOException {
+
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		private void flush() throws IOException {
+
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		public void putInt(final int value) throws IOException {
+
+			require(4);
+			buffer.putInt(value);
+		}
+
+		public void putLong(final long value) throws IOException {
+
+			require(8);
+			buffer.putLong(value);
+		}
+
+		public void putDouble(final double value) throws IOException {
+
+			require(8);
+			buffer.putDouble(value);
+		}
+
+		public void putString(final String value) throws IOException {
+
+			final byte[] bytes = value.getBytes(UTF8);
+			putInt(bytes.length);
+
+			int offset = 0;
+			while (offset < bytes.length) {
+				require(1);
+				final int len = Math.min(buffer.remaining(), bytes.length
+						- offset);
+				buffer.put(bytes, offset, len);
+				offset += len;
+			}
+		}
+
+		public void close() throws IOException {
+
+			try {
+				flush();
+
+			} finally {
+				file.close();
+			}
+		}
+	}
+}
@@ -3,11 +3,11 @@ package model.fileImport;
 import gui.WelcomeView;
 import gui.window.TVController;
 import model.data.DataLoadInfo;
-import model.data.Helper;
 import model.data.matrix.DataModel;
 import model.data.matrix.TVModel;
 import model.fileImport.ModelLoader.LoadStatus;
 import model.fileImport.preview.PreviewLoader;
+import model.fileImport.trees.ModelTreeAdder;
 import model.fileType.FileSet;
 import util.LogBuffer;
 
@@ -88,57 +88,194 @@ public class ModelLoader extends SwingWorker<Void, LoadStatus> {
 	@Override
 	protected Void doInBackground() throws Exception {
 
-		/* 
-		 * Count row numbers to be able to initialize stringLabels[][] and set
-		 * progress bar maximum.
-		 */
-		this.nRows = Helper.countFileLines(new File(fileSet.getCdt()));
-		this.doubleData = new double[nRows - dataInfo.getDataStartRow()][];
-
-		final String[][] stringLabels = new String[nRows][];
+		final File file = new File(fileSet.getCdt());
 
+		/* Progress is measured in read characters, so the file is only read once */
 		ls.setProgress(0);
-		ls.setMaxProgress(nRows);
+		ls.setMaxProgress(toProgressUnits(file.length()));
 		ls.setStatus("Preparing...");
 
-		final File file = new File(fileSet.getCdt());
-		final BufferedReader reader = new BufferedReader(new FileReader(file));
+		// A fresh binary cache replaces all text parsing
+		final ModelCache cache = new ModelCache(fileSet, dataInfo);
+		String[][] stringLabels = null;
+		if(cache.isFresh()) {
+			stringLabels = readCache(cache);
+		}
 
-		String line;
-		int row_idx = 0;
+		final boolean isCached = (stringLabels != null);
+		if(!isCached) {
+			if(ParallelCDTReader.isApplicable(file)) {
+				stringLabels = readParallel(file);
+
+			} else {
+				stringLabels = readSequential(file);
+			}
+		}
+
+		if(stringLabels == null) {
+			return(null);
+		}
+
+		ls.setStatus("Getting ready...");
+		publish(ls);
+
+		analyzeLabels(stringLabels);
+
+		final List<String[]> gtrData;
+		final List<String[]> atrData;
+		if(isCached) {
+			gtrData = cache.getGtrData();
+			atrData = cache.getAtrData();
+		}
+		else {
+			gtrData = (hasGID) ? loadTreeSet(fileSet.getGtr()) : null;
+			atrData = (hasAID) ? loadTreeSet(fileSet.getAtr()) : null;
+
+			if(cache.shouldWrite()) {
+				writeCache(cache, stringLabels, gtrData, atrData);
+			}
+		}
+
+		// Parse tree and config files
+		assignDataToModel(stringLabels, gtrData, atrData);
+
+		controller.setLoadSuccess(true);
+
+		return(null);
+	}
+
+	/** Reads all lines and parses labels and data in one pass.
+	 * 
+	 * @param file - The data file.
+	 * @return The labels of all rows. Data rows only contain their label
+	 *         cells. */
+	private String[][] readSequential(final File file) throws IOException {
+
+		final List<String[]> labelRows = new ArrayList<String[]>();
+		final List<double[]> dataRows = new ArrayList<double[]>();
+
+		final FileReader reader = new FileReader(file);
+		final CDTTokenizer tokenizer = new CDTTokenizer(reader,
+			dataInfo.getDelimiter(), dataInfo.getDataStartRow(),
+			dataInfo.getDataStartCol());
 
 		ls.setStatus("Loading...");
 
-		// Read all lines and parse the data (creates a String matrix)
-		while((line = reader.readLine()) != null) {
+		// Read all lines and parse labels and data in one pass
+		int lastProgress = -1;
+		while(tokenizer.nextLine()) {
 
-			String[] lineAsStrings = line.split(dataInfo.getDelimiter(), -1);
+			labelRows.add(tokenizer.getLabels());
 
-			if(row_idx < dataInfo.getDataStartRow()) {
-				stringLabels[row_idx] = lineAsStrings;
+			if(tokenizer.getData() != null) {
+				dataRows.add(tokenizer.getData());
 			}
-			else {
-				String[] labels = partitionRow(lineAsStrings, row_idx);
-				stringLabels[row_idx] = labels;
+
+			final int progress = toProgressUnits(tokenizer.getCharsRead());
+			if(progress != lastProgress) {
+				lastProgress = progress;
+				ls.setProgress(progress);
+				publish(ls);
 			}
+		}
+
+		reader.close();
+
+		this.nRows = labelRows.size();
+		this.doubleData = dataRows.toArray(new double[dataRows.size()][]);
+
+		return labelRows.toArray(new String[nRows][]);
+	}
+
+	/** Reads labels, data and trees from the binary cache.
+	 * 
+	 * @param cache - A fresh cache of the data file.
+	 * @return The labels of all rows or null if the cache could not be read. */
+	private String[][] readCache(final ModelCache cache) {
 
-			ls.setProgress(row_idx++);
-			publish(ls);
+		ls.setStatus("Loading cached data...");
+		publish(ls);
+
+		try {
+			cache.read();
+		}
+		catch(final IOException e) {
+			LogBuffer.println("Could not read cache, parsing the data file.");
+			LogBuffer.logException(e);
+			return null;
 		}
 
-		ls.setStatus("Getting ready...");
+		this.doubleData = cache.getData();
+		this.nRows = cache.getLabels().length;
+
+		ls.setProgress(ls.getMaxProgress());
 		publish(ls);
 
-		analyzeLabels(stringLabels);
+		return cache.getLabels();
+	}
 
-		// Parse tree and config files
-		assignDataToModel(stringLabels);
+	/** Writes the parsed file to the binary cache, so the next load does not
+	 * need to parse text. Failing to write the cache does not affect loading.
+	 * 
+	 * @param cache - The cache of the data file.
+	 * @param stringLabels - The labels of all rows.
+	 * @param gtrData - The rows of the GTR file or null.
+	 * @param atrData - The rows of the ATR file or null. */
+	private void writeCache(final ModelCache cache,
+	                        final String[][] stringLabels,
+	                        final List<String[]> gtrData,
+	                        final List<String[]> atrData) {
+
+		ls.setStatus("Writing cache...");
+		publish(ls);
 
-		reader.close();
+		try {
+			cache.write(stringLabels, doubleData, gtrData, atrData);
+		}
+		catch(final IOException e) {
+			LogBuffer.println("Could not write cache file.");
+			LogBuffer.logException(e);
+		}
+	}
 
-		controller.setLoadSuccess(true);
+	/** Splits the file into chunks which are parsed on all cores. The label
+	 * rows are still read first, so analyzeLabels() works the same way.
+	 * 
+	 * @param file - The data file.
+	 * @return The labels of all rows or null if loading was cancelled. */
+	private String[][] readParallel(final File file) throws IOException {
 
-		return(null);
+		final ParallelCDTReader reader = new ParallelCDTReader(file,
+			dataInfo.getDelimiter(), dataInfo.getDataStartRow(),
+			dataInfo.getDataStartCol());
+
+		ls.setStatus("Loading...");
+		publish(ls);
+
+		final boolean finished = reader.read(new ParallelCDTReader.ReadProgress() {
+
+			@Override
+			public boolean isCancelled() {
+
+				return ModelLoader.this.isCancelled();
+			}
+
+			@Override
+			public void update(final long charsRead) {
+
+				ls.setProgress(toProgressUnits(charsRead));
+				publish(ls);
+			}
+		});
+
+		if(!finished) {
+			return null;
+		}
+
+		this.doubleData = reader.getData();
+		this.nRows = reader.getLabels().length;
+
+		return reader.getLabels();
 	}
 
 	@Override
@@ -201,58 +338,18 @@ public class ModelLoader extends SwingWorker<Void, LoadStatus> {
 		}
 	}
 
-	/** Splits a row into labels and data.
+	/** Converts a file position to a value for the load progress bar.
 	 * 
-	 * @param lineAsStrings - The line in the file after it has been split into a
-	 *          String array.
-	 * @param row_idx - The index of the current row.
-	 * @return An array of labels of the current row at index row_idx */
-	private String[] partitionRow(final String[] lineAsStrings,
-		final int row_idx) {
-
-		// load line as String array
-		final String[] labels = new String[dataInfo.getDataStartCol()];
-		final double[] dataValues =
-			new double[lineAsStrings.length - dataInfo.getDataStartCol()];
-
-		System.arraycopy(lineAsStrings, 0, labels, 0, dataInfo.getDataStartCol());
-
-		/*
-		 * This ensures that references to immutable String (whole line from
-		 * readline()!) do not stay in memory. This can and will screw up RAM if
-		 * not done like this.
-		 */
-		for(int i = 0; i < labels.length; i++) {
-			labels[i] += "";
-		}
-
-		for(int i = 0; i < lineAsStrings.length - dataInfo.getDataStartCol(); i++) {
-			String element = lineAsStrings[i + dataInfo.getDataStartCol()];
-
-			/* no data value should ever be a word, so ending with e is
-			 * considered as exponent value notation. If it indeed is not a data
-			 * value, then the NumberFormatException will be triggered */
-			if(element.endsWith("e") || element.endsWith("E")) {
-				element += "+00";
-			}
-
-			// Trying to parse the String. If not possible add defined NAN.
-			try {
-				double val = Double.parseDouble(element);
-				dataValues[i] = val;
-
-			}
-			catch(final NumberFormatException e) {
-				dataValues[i] = DataModel.NAN;
-			}
-		}
-
-		doubleData[row_idx - dataInfo.getDataStartRow()] = dataValues;
+	 * @param chars - The amount of characters read from the file.
+	 * @return The progress in kilo-characters. */
+	private static int toProgressUnits(final long chars) {
 
-		return labels;
+		return (int) (chars >> 10);
 	}
 
-	private void assignDataToModel(final String[][] stringLabels) {
+	private void assignDataToModel(final String[][] stringLabels,
+	                               final List<String[]> gtrData,
+	                               final List<String[]> atrData) {
 
 		// Parse the CDT File
 		/* TODO wrap in try-catch */
@@ -262,7 +359,7 @@ public class ModelLoader extends SwingWorker<Void, LoadStatus> {
 		// If present, parse ATR File
 		if(hasAID) {
 			LogBuffer.println("Parsing ATR file.");
-			parseATR();
+			parseATR(atrData);
 			LogBuffer.println("Done parsing ATR file.");
 		}
 		else {
@@ -273,7 +370,7 @@ public class ModelLoader extends SwingWorker<Void, LoadStatus> {
 		// If present, parse GTR File
 		if(hasGID) {
 			LogBuffer.println("Parsing GTR file.");
-			parseGTR();
+			parseGTR(gtrData);
 			LogBuffer.println("Done parsing GTR file.");
 		}
 		else {
@@ -512,91 +609,42 @@ public class ModelLoader extends SwingWorker<Void, LoadStatus> {
 
 		targetModel.setColumnLabels(colLabels);
 
-		targetModel.setExprData(doubleData);
+		// The parsed rows are not needed anymore once they are copied
+		targetModel.setExprData(doubleData, true);
 		targetModel.getDataMatrix().calculateBaseValues();
 	}
 
-	//TODO replace with ModelTreeAdder to reduce code
-	private void parseGTR() {
-
-		// First, load the GTR File
-		final List<String[]> gtrData = loadTreeSet(fileSet.getGtr());
+	/** Adds the parsed GTR file to the model.
+	 * 
+	 * @param gtrData - The rows of the GTR file. */
+	private void parseGTR(final List<String[]> gtrData) {
 
-		// In case an gtr file exists but is empty
-		if(gtrData.isEmpty()) {
-			LogBuffer.println("GTR file empty.");
+		final ModelTreeAdder mta = new ModelTreeAdder(targetModel);
+		if(!mta.parseGTR(gtrData)) {
 			targetModel.gidFound(false);
 			return;
 		}
 
-		final String[] firstRow = gtrData.get(0);
-		if( // decide if this is not an extended file..
-		(firstRow.length == 4)// is the length classic?
-				&& !(firstRow[0].equalsIgnoreCase("NODEID"))) {
-			// okay, need to assign label types...
-			targetModel.setGtrLabelTypes(new String[] {"NODEID","LEFT","RIGHT",
-				"CORRELATION"});
-
-			final String[][] gtrLabels = new String[gtrData.size()][];
-			for(int i = 0; i < gtrLabels.length; i++) {
-				gtrLabels[i] = gtrData.get(i);
-			}
-			targetModel.setGtrLabels(gtrLabels);
-
-		}
-		else {// first row of tempVector is actual label type names...
-			targetModel.setGtrLabelTypes(firstRow);
-
-			final String[][] gtrLabels = new String[gtrData.size() - 1][];
-			for(int i = 0; i < gtrLabels.length; i++) {
-				gtrLabels[i] = gtrData.get(i + 1);
-			}
-			targetModel.setGtrLabels(gtrLabels);
-		}
-
+		targetModel.setGtrLabelTypes(mta.getGtrLabelTypes());
+		targetModel.setGtrLabels(mta.getGtrLabels());
 		targetModel.hashGIDs();
 		targetModel.hashGTRs();
 		targetModel.gidFound(hasGID);
 	}
 
-	//TODO replace with ModelTreeAdder to reduce code
-	private void parseATR() {
-
-		// First, load the ATR File
-		final List<String[]> atrData = loadTreeSet(fileSet.getAtr());
+	/** Adds the parsed ATR file to the model.
+	 * 
+	 * @param atrData - The rows of the ATR file. */
+	private void parseATR(final List<String[]> atrData) {
 
-		/* In case an atr file exists but is empty */
-		if(atrData.isEmpty()) {
-			LogBuffer.println("ATR file empty.");
+		final ModelTreeAdder mta = new ModelTreeAdder(targetModel);
+		if(!mta.parseATR(atrData)) {
 			targetModel.aidFound(false);
 			return;
 		}
 
-		final String[] firstRow = atrData.get(0);
-		if( // decide if this is not an extended file..
-			(firstRow.length == 4)// is the length classic?
-				&& !(firstRow[0].equalsIgnoreCase("NODEID"))) {
-
-			// okay, need to assign label types...
-			targetModel.setAtrLabelTypes(new String[] {"NODEID", "LEFT",
-				"RIGHT","CORRELATION"});
-
-			final String[][] atrLabels = new String[atrData.size()][];
-			for(int i = 0; i < atrLabels.length; i++) {
-				atrLabels[i] = atrData.get(i);
-			}
-			targetModel.setAtrLabels(atrLabels);
-		}
-		else {// first row of tempVector is actual label type names...
-			targetModel.setAtrLabelTypes(firstRow);
-
-			final String[][] atrLabels = new String[atrData.size() - 1][];
-			for(int i = 0; i < atrLabels.length; i++) {
-				atrLabels[i] = atrData.get(i + 1);
-			}
-			targetModel.setAtrLabels(atrLabels);
-		}
-
+		targetModel.setAtrLabelTypes(mta.getAtrLabelTypes());
+		targetModel.setAtrLabels(mta.getAtrLabels());
 		targetModel.hashAIDs();
 		targetModel.hashATRs();
 		targetModel.aidFound(hasAID);
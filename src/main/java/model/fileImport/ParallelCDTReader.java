@@ -0,0 +1,528 @@
+package model.fileImport;
+
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a large delimited data file (e.g. CDT) with all available cores. The
+ * label rows at the top of the file are read first on the calling thread. The
+ * rest of the file is split into byte ranges which always end at a line feed.
+ * The lines of each range are counted in parallel, so every range knows the
+ * index of its first row and all rows can be preallocated. Then the ranges are
+ * parsed in parallel by separate CDTTokenizers, each writing directly into
+ * its own row slots.
+ *
+ * Splitting at line feed bytes requires a charset in which a line feed is a
+ * single byte that cannot be part of another character, such as UTF-8 or
+ * the ISO-8859 family. Use isApplicable() to check this.
+ */
+public class ParallelCDTReader {
+
+	/* Files smaller than this are read faster on a single thread */
+	public static final long MIN_PARALLEL_SIZE = 16L << 20;
+
+	/* More chunks than cores even out the load if some lines are longer */
+	private static final int CHUNKS_PER_CORE = 4;
+
+	/* Interval in which progress is reported while waiting for the chunks */
+	private static final long PROGRESS_INTERVAL_MS = 100;
+
+	private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Receives progress updates and is polled for cancellation while the
+	 * file is read.
+	 */
+	public interface ReadProgress {
+
+		boolean isCancelled();
+
+		/**
+		 * @param charsRead
+		 *            The total amount of characters which were read so far.
+		 */
+		void update(long charsRead);
+	}
+
+	private final File file;
+	private final String delimiter;
+	private final int dataStartRow;
+	private final int dataStartCol;
+	private final Charset charset;
+
+	private String[][] labels;
+	private double[][] data;
+
+	/**
+	 * @param file
+	 *            The data file.
+	 * @param delimiter
+	 *            The delimiter in the same (regex) form as stored in
+	 *            DataLoadInfo.
+	 * @param dataStartRow
+	 *            The index of the first row which contains data.
+	 * @param dataStartCol
+	 *            The index of the first column which contains data.
+	 */
+	public ParallelCDTReader(final File file, final String delimiter,
+			final int dataStartRow, final int dataStartCol) {
+
+		this.file = file;
+		this.delimiter = delimiter;
+		this.dataStartRow = dataStartRow;
+		this.dataStartCol = dataStartCol;
+		this.charset = Charset.defaultCharset();
+	}
+
+	/**
+	 * Checks whether reading a file in parallel is possible and worth it.
+	 *
+	 * @param file
+	 *            The data file.
+	 * @return True if the file is large enough, more than one core is
+	 *         available and the default charset can be split at line feed
+	 *         bytes.
+	 */
+	public static boolean isApplicable(final File file) {
+
+		if (file.length() < MIN_PARALLEL_SIZE
+				|| Runtime.getRuntime().availableProcessors() < 2) {
+			return false;
+		}
+
+		final Charset cs = Charset.defaultCharset();
+		final byte[] lf = "\n".getBytes(cs);
+
+		return lf.length == 1 && lf[0] == '\n'
+				&& ("UTF-8".equals(cs.name()) || cs.newEncoder()
+						.maxBytesPerChar() == 1);
+	}
+
+	/**
+	 * Reads the whole file.
+	 *
+	 * @param progress
+	 *            Receives progress updates and is checked for cancellation.
+	 * @return False if reading was cancelled, true otherwise.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public boolean read(final ReadProgress progress) throws IOException {
+
+		final long dataStart = readHeader();
+		final long[] bounds = findChunkBounds(dataStart);
+		final int chunkNum = bounds.length - 1;
+
+		final int cores = Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(cores);
+
+		try {
+			/* Count lines per chunk to know the row slots of each chunk */
+			final List<Future<Integer>> counts = new ArrayList<Future<Integer>>(
+					chunkNum);
+			for (int i = 0; i < chunkNum; i++) {
+				counts.add(executor.submit(new LineCounter(bounds[i],
+						bounds[i + 1], i == chunkNum - 1)));
+			}
+
+			final int[] rowStarts = new int[chunkNum + 1];
+			for (int i = 0; i < chunkNum; i++) {
+				rowStarts[i + 1] = rowStarts[i] + getResult(counts.get(i));
+			}
+
+			if (progress.isCancelled()) {
+				return false;
+			}
+
+			final String[][] headerLabels = labels;
+			this.labels = new String[headerLabels.length + rowStarts[chunkNum]][];
+			this.data = new double[rowStarts[chunkNum]][];
+			System.arraycopy(headerLabels, 0, labels, 0, headerLabels.length);
+
+			/* Parse all chunks into their preallocated rows */
+			final AtomicLong charsRead = new AtomicLong(dataStart);
+			final List<Future<Integer>> parsed = new ArrayList<Future<Integer>>(
+					chunkNum);
+			for (int i = 0; i < chunkNum; i++) {
+				parsed.add(executor.submit(new ChunkParser(bounds[i],
+						bounds[i + 1], headerLabels.length + rowStarts[i],
+						rowStarts[i], rowStarts[i + 1] - rowStarts[i],
+						charsRead, progress)));
+			}
+
+			for (final Future<Integer> chunk : parsed) {
+				while (true) {
+					try {
+						chunk.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+						break;
+
+					} catch (final TimeoutException e) {
+						if (progress.isCancelled()) {
+							return false;
+						}
+						progress.update(charsRead.get());
+
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return false;
+
+					} catch (final ExecutionException e) {
+						/* Rethrown as IOException by getResult() */
+						break;
+					}
+				}
+				getResult(chunk);
+			}
+
+			progress.update(charsRead.get());
+			return !progress.isCancelled();
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return All label rows (complete rows) followed by the label cells of
+	 *         each data row.
+	 */
+	public String[][] getLabels() {
+
+		return labels;
+	}
+
+	/**
+	 * @return The parsed values of all data rows.
+	 */
+	public double[][] getData() {
+
+		return data;
+	}
+
+	/**
+	 * Reads the label rows at the top of the file.
+	 *
+	 * @return The byte position where the data rows start.
+	 * @throws IOException
+	 */
+	private long readHeader() throws IOException {
+
+		final InputStream in = new BufferedInputStream(new FileInputStream(
+				file), SCAN_BUFFER_SIZE);
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+		long pos = 0;
+		try {
+			int lines = 0;
+			int b = in.read();
+			while (lines < dataStartRow && b != -1) {
+				header.write(b);
+				pos++;
+
+				if (b == '\n') {
+					lines++;
+					b = in.read();
+
+				} else if (b == '\r') {
+					lines++;
+					b = in.read();
+					if (b == '\n') {
+						header.write(b);
+						pos++;
+						b = in.read();
+					}
+
+				} else {
+					b = in.read();
+				}
+			}
+
+		} finally {
+			in.close();
+		}
+
+		final List<String[]> headerRows = new ArrayList<String[]>(dataStartRow);
+		final CDTTokenizer tokenizer = new CDTTokenizer(new StringReader(
+				new String(header.toByteArray(), charset)), delimiter,
+				dataStartRow, dataStartCol);
+		while (tokenizer.nextLine()) {
+			headerRows.add(tokenizer.getLabels());
+		}
+
+		this.labels = headerRows.toArray(new String[headerRows.size()][]);
+		return pos;
+	}
+
+	/**
+	 * Splits the data part of the file into ranges of about equal size. Each
+	 * range except the last one ends directly after a line feed.
+	 *
+	 * @param dataStart
+	 *            The byte position of the first data row.
+	 * @return The boundaries of all ranges, starting with dataStart and
+	 *         ending with the file length.
+	 * @throws IOException
+	 */
+	private long[] findChunkBounds(final long dataStart) throws IOException {
+
+		final long length = file.length();
+		final int chunkNum = Runtime.getRuntime().availableProcessors()
+				* CHUNKS_PER_CORE;
+		final long chunkSize = Math.max(1, (length - dataStart) / chunkNum);
+
+		final List<Long> bounds = new ArrayList<Long>(chunkNum + 1);
+		bounds.add(dataStart);
+
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		final byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+		try {
+			long target = dataStart + chunkSize;
+			while (target < length) {
+				final long bound = findNextLineStart(raf, buffer, target);
+				if (bound >= length) {
+					break;
+				}
+
+				if (bound > bounds.get(bounds.size() - 1)) {
+					bounds.add(bound);
+				}
+				target = Math.max(bound, target) + chunkSize;
+			}
+
+		} finally {
+			raf.close();
+		}
+
+		bounds.add(length);
+
+		final long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return The position after the first line feed at or after pos, or the
+	 *         file length if there is none.
+	 */
+	private static long findNextLineStart(final RandomAccessFile raf,
+			final byte[] buffer, final long pos) throws IOException {
+
+		long offset = pos;
+		raf.seek(pos);
+
+		int read;
+		while ((read = raf.read(buffer)) > 0) {
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == '\n') {
+					return offset + i + 1;
+				}
+			}
+			offset += read;
+		}
+
+		return raf.length();
+	}
+
+	/**
+	 * Opens a byte range of the file as char stream.
+	 */
+	private InputStreamReader openRange(final long start, final long end)
+			throws IOException {
+
+		final FileInputStream in = new FileInputStream(file);
+		in.getChannel().position(start);
+
+		return new InputStreamReader(new BoundedInputStream(in, end - start),
+				charset);
+	}
+
+	private static int getResult(final Future<Integer> future)
+			throws IOException {
+
+		try {
+			return future.get();
+
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Reading the file was interrupted.", e);
+
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Counts the lines of a byte range with the same rules as CDTTokenizer:
+	 * lines end with \n, \r or \r\n. Ranges end after a line feed, so a \r\n
+	 * is never split.
+	 */
+	private class LineCounter implements Callable<Integer> {
+
+		private final long start;
+		private final long end;
+		private final boolean isLast;
+
+		public LineCounter(final long start, final long end,
+				final boolean isLast) {
+
+			this.start = start;
+			this.end = end;
+			this.isLast = isLast;
+		}
+
+		@Override
+		public Integer call() throws IOException {
+
+			final FileInputStream in = new FileInputStream(file);
+			final byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+
+			int lines = 0;
+			boolean afterCR = false;
+			boolean openLine = false;
+
+			try {
+				in.getChannel().position(start);
+				long remaining = end - start;
+
+				while (remaining > 0) {
+					final int read = in.read(buffer, 0,
+							(int) Math.min(buffer.length, remaining));
+					if (read <= 0) {
+						break;
+					}
+					remaining -= read;
+
+					for (int i = 0; i < read; i++) {
+						final byte b = buffer[i];
+						if (b == '\n') {
+							if (!afterCR) {
+								lines++;
+							}
+							afterCR = false;
+							openLine = false;
+
+						} else if (b == '\r') {
+							lines++;
+							afterCR = true;
+							openLine = false;
+
+						} else {
+							afterCR = false;
+							openLine = true;
+						}
+					}
+				}
+
+			} finally {
+				in.close();
+			}
+
+			/* The last line of the file may miss its terminator */
+			if (isLast && openLine) {
+				lines++;
+			}
+
+			return lines;
+		}
+	}
+
+	/**
+	 * Parses a byte range of data rows into its preallocated row slots.
+	 */
+	private class ChunkParser implements Callable<Integer> {
+
+		/* Amount of chars after which the shared progress is updated */
+		private static final int PROGRESS_STEP = 1 << 20;
+
+		private final long start;
+		private final long end;
+		private final int labelStart;
+		private final int dataStart;
+		private final int rowNum;
+		private final AtomicLong charsRead;
+		private final ReadProgress progress;
+
+		public ChunkParser(final long start, final long end,
+				final int labelStart, final int dataStart, final int rowNum,
+				final AtomicLong charsRead, final ReadProgress progress) {
+
+			this.start = start;
+			this.end = end;
+			this.labelStart = labelStart;
+			this.dataStart = dataStart;
+			this.rowNum = rowNum;
+			this.charsRead = charsRead;
+			this.progress = progress;
+		}
+
+		@Override
+		public Integer call() throws IOException {
+
+			final InputStreamReader reader = openRange(start, end);
+			final CDTTokenizer tokenizer = new CDTTokenizer(reader, delimiter,
+					0, dataStartCol);
+
+			int row = 0;
+			long reported = 0;
+			try {
+				while (tokenizer.nextLine()) {
+					if (row == rowNum) {
+						throw new IOException("Inconsistent line count in "
+								+ "bytes " + start + " to " + end + ".");
+					}
+
+					labels[labelStart + row] = tokenizer.getLabels();
+					data[dataStart + row] = tokenizer.getData();
+					row++;
+
+					final long chars = tokenizer.getCharsRead();
+					if (chars - reported >= PROGRESS_STEP) {
+						if (progress.isCancelled()) {
+							return row;
+						}
+						charsRead.addAndGet(chars - reported);
+						reported = chars;
+					}
+				}
+
+			} finally {
+				reader.close();
+			}
+
+			charsRead.addAndGet(tokenizer.getCharsRead() - reported);
+
+			if (row != rowNum) {
+				throw new IOException("Inconsistent line count in bytes "
+						+ start + " to " + end + ".");
+			}
+
+			return row;
+		}
+	}
+}
@@ -54,6 +54,7 @@ public class FileSet {
 	public static final String DEFAULT_GTR = ".gtr";
 	public static final String DEFAULT_KGG = ".kgg";
 	public static final String DEFAULT_KAG = ".kag";
+	public static final String DEFAULT_CACHE = ".tvc";
 	
 	private static final String validStyles = "auto|classic|kmeans|linked";
 	private static final String[] validStylesArray = { "Auto", "Classic",
@@ -213,6 +214,14 @@ public class FileSet {
 		return getDir() + getRoot() + node.get("gtr", DEFAULT_GTR);
 	}
 
+	/**
+	 * @return The complete path of the binary cache file of the loaded data
+	 */
+	public String getCache() {
+
+		return getDir() + getRoot() + getExt() + DEFAULT_CACHE;
+	}
+
 	/**
 	 * @return The complete path of the jtv file
 	 */
@@ -1,6 +1,7 @@
 package model.save;
 
 import model.data.labels.IntLabelInfo;
+import model.data.matrix.DataMatrix;
 import model.data.matrix.DataModel;
 import util.LogBuffer;
 
@@ -24,7 +25,7 @@ public class ModelFileGenerator {
 	public final static String ROW_WEIGHT_ID = "GWEIGHT";
 	public final static String COL_WEIGHT_ID = "EWEIGHT";
 
-	private double[][] origMatrix;
+	private final DataMatrix origMatrix;
 	private final IntLabelInfo rowLI;
 	private final IntLabelInfo colLI;
 	private final boolean isRowClustered;
@@ -46,7 +47,7 @@ public class ModelFileGenerator {
 	 *          hierarchical. If false, clustering is k-means. */
 	public ModelFileGenerator(final DataModel model) {
 
-		this.origMatrix = model.getDataMatrix().getExprData();
+		this.origMatrix = model.getDataMatrix();
 		this.rowLI = model.getRowLabelInfo();
 		this.colLI = model.getColLabelInfo();
 		this.isHier = model.isHierarchical();
@@ -137,12 +138,14 @@ public class ModelFileGenerator {
 
 		LogBuffer.println("File Write Debug.");
 		
-		// Filling the data rows
-		for(int i = 0; i < origMatrix.length; i++) {
+		// Filling the data rows, one matrix row at a time
+		final String[][] rowLabelArray = rowLI.getLabelArray();
+		double[] rowValues = null;
+		for(int i = 0; i < origMatrix.getNumRow(); i++) {
 			// 1) adding row IDs ("ROW130X")...
 			idxTracker = 0;
 			final String[] row = new String[rowLength];
-			String[] labels = rowLI.getLabelArray()[i];
+			String[] labels = rowLabelArray[i];
 
 			// 2) adding remaining row labels
 			System.arraycopy(labels, 0, row, idxTracker, labels.length);
@@ -151,7 +154,8 @@ public class ModelFileGenerator {
 			LogBuffer.println("Iteration: " + i);
 
 			// 3) adding data values
-			String[] rowData = getStringArray(origMatrix[i]);
+			rowValues = origMatrix.getRowValues(i, rowValues);
+			String[] rowData = getStringArray(rowValues, origMatrix.getNumCol());
 			System.arraycopy(rowData, 0, row, idxTracker, rowData.length);
 
 			writeRowAndClear(row);
@@ -170,13 +174,14 @@ public class ModelFileGenerator {
 	/** Smaller helper routine. Transforms a double array to a String array.
 	 * 
 	 * @param dArray The double array.
+	 * @param length The amount of values to transform.
 	 * @return An array of Strings which represent the values of the input
 	 *         double array. */
-	private static String[] getStringArray(double[] dArray) {
+	private static String[] getStringArray(double[] dArray, int length) {
 
-		String[] sArray = new String[dArray.length];
+		String[] sArray = new String[length];
 
-		for(int i = 0; i < dArray.length; i++) {
+		for(int i = 0; i < length; i++) {
 			sArray[i] = String.valueOf(dArray[i]);
 		}
 
@@ -231,18 +236,22 @@ public class ModelFileGenerator {
 		 * Add gene names in ORF and NAME columns (0 & 1) and GWeights (2)
 		 * buffer is just the amount of rows before the data starts
 		 */
-		for(int i = 0; i < origMatrix.length; i++) {
+		final String[][] rowLabelArray = rowLI.getLabelArray();
+		final int nCols = origMatrix.getNumCol();
+		double[] rowValues = null;
+		for(int i = 0; i < origMatrix.getNumRow(); i++) {
 
 			addIndex = 0;
 			final String[] row = new String[rowLength];
 
 			for(int j = 0; j < rowLabels.length; j++) {
-				row[addIndex] = rowLI.getLabelArray()[i][j];
+				row[addIndex] = rowLabelArray[i][j];
 				addIndex++;
 			}
 
-			for(int j = 0; j < origMatrix[i].length; j++) {
-				row[addIndex] = String.valueOf(origMatrix[i][j]);
+			rowValues = origMatrix.getRowValues(i, rowValues);
+			for(int j = 0; j < nCols; j++) {
+				row[addIndex] = String.valueOf(rowValues[j]);
 				addIndex++;
 			}
 
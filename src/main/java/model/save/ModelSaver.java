@@ -205,6 +205,7 @@ public class ModelSaver {
 		 */
 		private boolean writeCDTFile() {
 			
+			// The generator writes the rows in their displayed order
 			final ModelFileGenerator modelGen =
 				new ModelFileGenerator((TVModel) model);
 			modelGen.setupWriter(matrixFile);
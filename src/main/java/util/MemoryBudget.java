@@ -0,0 +1,78 @@
+/* BEGIN_HEADER                                                   TreeView 3
+ *
+ * Please refer to our LICENSE file if you wish to make changes to this software
+ *
+ * END_HEADER
+ */
+
+package util;
+
+/**
+ * The memory policy for everything which is kept on the heap in addition to
+ * the loaded data.
+ *
+ * Data matrices are needed, so they only decide whether to store their values
+ * with reduced precision. Everything else (lookup tables, caches, render
+ * buffers) only makes things faster, so it is sized against the heap which is
+ * still left when it is created. Because the matrices and all earlier
+ * optional data are already part of the used heap at that point, the parts
+ * together cannot claim more memory than there is.
+ */
+public final class MemoryBudget {
+
+	/* Matrices whose values take more than this share of the maximum heap
+	 * are stored with reduced precision */
+	private static final int DATA_DIVISOR = 2;
+
+	/* Optional data may take this share of the heap which is left, the rest
+	 * is kept free for regular work */
+	private static final int OPTIONAL_DIVISOR = 2;
+
+	private MemoryBudget() {
+
+	}
+
+	/**
+	 * Decides whether a matrix fits into memory with full precision.
+	 *
+	 * @param bytes
+	 *            The size of the values of the matrix.
+	 * @return Whether the matrix may be stored with double values.
+	 */
+	public static boolean fitsData(final long bytes) {
+
+		return bytes <= Runtime.getRuntime().maxMemory() / DATA_DIVISOR;
+	}
+
+	/**
+	 * The heap which is not in use yet. Garbage which was not collected yet
+	 * counts as used, so this errs on the safe side.
+	 *
+	 * @return The amount of bytes which can still be allocated.
+	 */
+	public static long getAvailableBytes() {
+
+		final Runtime rt = Runtime.getRuntime();
+		return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+	}
+
+	/**
+	 * @return The amount of bytes which optional data created now may use.
+	 */
+	public static long getOptionalBytes() {
+
+		return Math.max(0, getAvailableBytes() / OPTIONAL_DIVISOR);
+	}
+
+	/**
+	 * Decides whether optional data of the given size should be created.
+	 *
+	 * @param bytes
+	 *            The size of the data.
+	 * @return Whether the data fits into the memory which is left.
+	 */
+	public static boolean fitsOptional(final long bytes) {
+
+		return bytes <= getOptionalBytes();
+	}
+}
@@ -206,6 +206,54 @@ public class StringRes {
 	public static final String clusterInfo_Avg_DisAdv = "Expensive for "
 		+ "large collections.";
 
+	/* Weighted Linkage (WPGMA / McQuitty) */
+	public static final String clusterInfo_Weighted_Similarity = "Uses the "
+		+ "average of the distances of both joined clusters, regardless of "
+		+ "how many objects each of them contains.";
+
+	public static final String clusterInfo_Weighted_Type = "Similar to "
+		+ "average link, but small clusters weigh as much as large ones.";
+
+	public static final String clusterInfo_Weighted_Time = "O(N**2).";
+
+	public static final String clusterInfo_Weighted_Adv = "Simple and fast. "
+		+ "Does not favor large clusters.";
+
+	public static final String clusterInfo_Weighted_DisAdv = "Results depend "
+		+ "on the order in which clusters are joined.";
+
+	/* Ward's Method */
+	public static final String clusterInfo_Ward_Similarity = "Joins the "
+		+ "two clusters whose fusion least increases the total "
+		+ "within-cluster variance.";
+
+	public static final String clusterInfo_Ward_Type = "Compact, spherical "
+		+ "clusters of similar size.";
+
+	public static final String clusterInfo_Ward_Time = "O(N**2).";
+
+	public static final String clusterInfo_Ward_Adv = "Often produces the "
+		+ "most balanced and interpretable trees.";
+
+	public static final String clusterInfo_Ward_DisAdv = "Intended for "
+		+ "Euclidean distances. Sensitive to outliers.";
+
+	/* Centroid Linkage */
+	public static final String clusterInfo_Centroid_Similarity = "Uses the "
+		+ "distance between the centroids (means) of both clusters.";
+
+	public static final String clusterInfo_Centroid_Type = "Clusters are "
+		+ "represented by their centers.";
+
+	public static final String clusterInfo_Centroid_Time = "O(N**3).";
+
+	public static final String clusterInfo_Centroid_Adv = "Robust against "
+		+ "outliers within a cluster.";
+
+	public static final String clusterInfo_Centroid_DisAdv = "Merge "
+		+ "distances can decrease (inversions), which makes the tree harder "
+		+ "to read.";
+
 	/* k-means */
 	public static final String clusterInfo_KMeans = "Splits the data into "
 		+ "k clusters by initially choosing k random centroids (means) "